@@ -0,0 +1,102 @@
+package app.windfarm.benchmark;
+
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks changing the production cost of a single turbine: deriving the next index from the cost tree, as done for
+ * PATCH /api/turbines/{identifier}, against rebuilding and sorting the whole index, as done before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FleetUpdateBenchmark {
+
+  private static final int CHANGES = 1 << 12;
+
+  @Param({"100000", "1000000"})
+  public int fleetSize;
+
+  @Param("10")
+  public int maxCapacity;
+
+  /** A few shared cost levels, or about one distinct cost per turbine. */
+  @Param({"20", "1000000"})
+  public int maxCost;
+
+  private FleetIndex fleet;
+  private List<Map<String, FleetEntry>> changes;
+  private int next;
+  private int marketPrice;
+  private long productionTarget;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<WindTurbine> turbines = SyntheticFleet.generate(fleetSize, SyntheticFleet.Distribution.UNIFORM, maxCapacity, maxCost, 42);
+    fleet = FleetIndex.of(1, turbines.stream().map(FleetEntry::of).toList());
+    marketPrice = maxCost / 2;
+    productionTarget = fleet.totalCapacity() / 2;
+
+    SplittableRandom random = new SplittableRandom(7);
+    changes = new ArrayList<>(CHANGES);
+    for (int i = 0; i < CHANGES; i++) {
+      WindTurbine turbine = turbines.get(random.nextInt(fleetSize));
+      changes.add(Map.of(turbine.getIdentifier(), new FleetEntry(turbine.getIdentifier(), turbine.getCapacity(), random.nextInt(maxCost))));
+    }
+
+    // Build the tree once, as the first change after startup does
+    fleet = fleet.apply(fleet.version() + 1, nextChange());
+  }
+
+  /** Change one turbine through the cost tree. */
+  @Benchmark
+  public FleetIndex patchTurbine() {
+    fleet = fleet.apply(fleet.version() + 1, nextChange());
+    return fleet;
+  }
+
+  /** Change one turbine, then run the planning queries of the next greedy plan on the new index. */
+  @Benchmark
+  public int patchTurbineAndPlan() {
+    fleet = fleet.apply(fleet.version() + 1, nextChange());
+    return fleet.countWithinCapacity(productionTarget, fleet.countCheaperThan(marketPrice));
+  }
+
+  /** Reference: copy the entries, apply the change and rebuild the sorted index. */
+  @Benchmark
+  public FleetIndex rebuildIndex() {
+    Map<String, FleetEntry> entries = new HashMap<>();
+    for (FleetEntry entry : fleet.entries()) {
+      entries.put(entry.identifier(), entry);
+    }
+    entries.putAll(nextChange());
+    return FleetIndex.of(fleet.version() + 1, entries.values());
+  }
+
+  private Map<String, FleetEntry> nextChange() {
+    return changes.get(next++ & (CHANGES - 1));
+  }
+}
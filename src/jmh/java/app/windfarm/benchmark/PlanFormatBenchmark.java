@@ -0,0 +1,82 @@
+package app.windfarm.benchmark;
+
+import app.windfarm.client.ProductionPlanDecoder;
+import app.windfarm.dtos.PlanColumnsDto;
+import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.service.PlanFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the representations of the production plan: the time to serialize each on the server and to decode it on
+ * a client. The payload size of each is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanFormatBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int fleetSize;
+
+  @Param({"JSON", "COLUMNAR", "BINARY"})
+  public PlanFormat format;
+
+  @Param({"false", "true"})
+  public boolean onlineOnly;
+
+  private ProductionPlan productionPlan;
+  private ObjectMapper objectMapper;
+  private byte[] payload;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<WindTurbine> turbines = SyntheticFleet.generate(fleetSize, SyntheticFleet.Distribution.UNIFORM, 10, 20, 42);
+    FleetIndex fleet = FleetIndex.of(1, turbines.stream().map(FleetEntry::of).toList());
+
+    // Dispatch roughly half the fleet, as in ProductionPlanBenchmark
+    productionPlan = ProductionPlanner.plan(fleet, 10, (int) (fleet.totalCapacity() / 2));
+    objectMapper = new ObjectMapper();
+    payload = format.write(productionPlan, onlineOnly);
+
+    System.out.printf("%nPayload of %d turbines as %s%s: %d bytes%n", fleetSize, format, onlineOnly ? " (online only)" : "", payload.length);
+  }
+
+  /** Server side: serialize the plan. */
+  @Benchmark
+  public byte[] serialize() {
+    return format.write(productionPlan, onlineOnly);
+  }
+
+  /** Client side: decode the payload, with Jackson for the JSON formats and the bundled decoder for the binary format. */
+  @Benchmark
+  public Object decode() throws Exception {
+    return switch (format) {
+      case JSON -> objectMapper.readValue(payload, WindTurbineOutputDto[].class);
+      case COLUMNAR -> objectMapper.readValue(payload, PlanColumnsDto.class);
+      case BINARY -> ProductionPlanDecoder.decode(payload);
+    };
+  }
+}
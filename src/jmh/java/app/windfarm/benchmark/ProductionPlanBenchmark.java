@@ -0,0 +1,178 @@
+package app.windfarm.benchmark;
+
+import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.repository.WindTurbineRepository;
+import app.windfarm.service.ParkService;
+import app.windfarm.service.ProductionPlanJsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks each stage of the production plan pipeline separately and end to end.
+ * Run with {@code -prof gc} to also report the allocation rate of each stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductionPlanBenchmark {
+
+  @Param({"10", "1000", "100000", "1000000"})
+  public int fleetSize;
+
+  @Param({"UNIFORM", "SKEWED", "CLUSTERED"})
+  public SyntheticFleet.Distribution distribution;
+
+  @Param("10")
+  public int maxCapacity;
+
+  @Param("20")
+  public int maxCost;
+
+  private List<WindTurbine> turbines;
+  private List<FleetEntry> entries;
+  private FleetIndex fleet;
+  private ParkService parkService;
+  private ObjectMapper objectMapper;
+  private List<WindTurbineOutputDto> outputDtos;
+  private ProductionPlan productionPlan;
+  private int marketPrice;
+  private int productionTarget;
+  private int profitableTurbines;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    turbines = SyntheticFleet.generate(fleetSize, distribution, maxCapacity, maxCost, 42);
+    entries = turbines.stream().map(FleetEntry::of).toList();
+
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(turbines);
+    FleetIndexManager fleetIndexManager = new FleetIndexManager(windTurbineRepository);
+    fleet = fleetIndexManager.current(WindTurbine.DEFAULT_PARK_ID);
+    parkService = new ParkService(windTurbineRepository, fleetIndexManager, new ParkMetrics(new SimpleMeterRegistry(), fleetIndexManager),
+        Duration.ofMillis(50));
+
+    // Dispatch roughly half the fleet: price at the middle of the cost range, target at half capacity
+    marketPrice = maxCost / 2;
+    productionTarget = (int) (fleet.totalCapacity() / 2);
+    parkService.setMarketPrice(WindTurbine.DEFAULT_PARK_ID, marketPrice);
+    parkService.setProductionTarget(WindTurbine.DEFAULT_PARK_ID, productionTarget);
+    profitableTurbines = fleet.countCheaperThan(marketPrice);
+
+    objectMapper = new ObjectMapper();
+    outputDtos = parkService.computeProductionPlan(WindTurbine.DEFAULT_PARK_ID);
+    productionPlan = parkService.planProduction(WindTurbine.DEFAULT_PARK_ID);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    parkService.close();
+  }
+
+  /** Load stage: build the cost-sorted fleet index. */
+  @Benchmark
+  public FleetIndex buildFleetIndex() {
+    return FleetIndex.of(1, entries);
+  }
+
+  /** Filter stage: find the price cutoff. */
+  @Benchmark
+  public int filterProfitableTurbines() {
+    return fleet.countCheaperThan(marketPrice);
+  }
+
+  /** Selection stage: find where the greedy dispatch stops. */
+  @Benchmark
+  public int selectOnlineTurbines() {
+    return fleet.countWithinCapacity(productionTarget, profitableTurbines);
+  }
+
+  /** Filter and selection stages through the service. */
+  @Benchmark
+  public ProductionPlan planProduction() {
+    return parkService.planProduction(WindTurbine.DEFAULT_PARK_ID);
+  }
+
+  /** Plan and map every turbine to a {@link WindTurbineOutputDto}. */
+  @Benchmark
+  public List<WindTurbineOutputDto> computeProductionPlan() {
+    return parkService.computeProductionPlan(WindTurbine.DEFAULT_PARK_ID);
+  }
+
+  /** Serialization stage: Jackson serialization of a precomputed DTO list. */
+  @Benchmark
+  public byte[] serializeOutputDtos() throws Exception {
+    return objectMapper.writeValueAsBytes(outputDtos);
+  }
+
+  /** Serialization stage: direct serialization of a precomputed compact plan, without DTOs. */
+  @Benchmark
+  public byte[] serializeProductionPlan() {
+    return ProductionPlanJsonWriter.write(productionPlan);
+  }
+
+  /** End to end through DTOs: plan, map and serialize with Jackson. */
+  @Benchmark
+  public byte[] endToEnd() throws Exception {
+    return objectMapper.writeValueAsBytes(parkService.computeProductionPlan(WindTurbine.DEFAULT_PARK_ID));
+  }
+
+  /** End to end: plan and serialize directly, as done for GET /api/production-plan on a cache miss. */
+  @Benchmark
+  public byte[] endToEndDirect() {
+    return ProductionPlanJsonWriter.write(parkService.planProduction(WindTurbine.DEFAULT_PARK_ID));
+  }
+
+  /** Reference: the original filter, sort and greedy selection over the turbine entities. */
+  @Benchmark
+  public List<WindTurbineOutputDto> legacyGreedy() {
+    List<WindTurbine> sortedProfitableTurbines = turbines.stream()
+        .filter(turbine -> turbine.getProductionCost() < marketPrice)
+        .sorted(Comparator.comparingInt(WindTurbine::getProductionCost))
+        .toList();
+
+    Map<String, Integer> onlineTurbines = new HashMap<>();
+    int remainingProduction = productionTarget;
+    for (WindTurbine turbine : sortedProfitableTurbines) {
+      if (remainingProduction - turbine.getCapacity() < 0) {
+        break;
+      }
+      onlineTurbines.put(turbine.getIdentifier(), turbine.getCapacity());
+      remainingProduction -= turbine.getCapacity();
+    }
+
+    return turbines.stream()
+        .map(turbine -> new WindTurbineOutputDto(turbine.getIdentifier(), onlineTurbines.getOrDefault(turbine.getIdentifier(), 0)))
+        .collect(Collectors.toList());
+  }
+}
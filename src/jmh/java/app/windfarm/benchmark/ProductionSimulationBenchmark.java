@@ -0,0 +1,64 @@
+package app.windfarm.benchmark;
+
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.AvailabilityModel;
+import app.windfarm.planning.ProductionSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Monte Carlo simulation of GET /api/production-plan/simulation, with a target of half the fleet
+ * capacity at a market price above every production cost, so each scenario draws the availability of about half
+ * the fleet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ProductionSimulationBenchmark {
+
+  @Param("10000")
+  public int fleetSize;
+
+  @Param("100000")
+  public int scenarios;
+
+  @Param({"1", "0"})
+  public int parallelism;
+
+  private FleetIndex fleet;
+  private int productionTarget;
+  private final AvailabilityModel model = new AvailabilityModel(0.8, 0.2, 0.5);
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    fleet = FleetIndex.of(1, SyntheticFleet.generate(fleetSize, SyntheticFleet.Distribution.UNIFORM, 10, 20, 42).stream()
+        .map(FleetEntry::of).toList());
+    productionTarget = (int) (fleet.totalCapacity() / 2);
+    // 0 stands for every available processor
+    pool = parallelism == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+  }
+
+  /** Simulate all scenarios. */
+  @Benchmark
+  public double[] simulate() {
+    return ProductionSimulator.simulate(fleet, 21, productionTarget, model, scenarios, 7, pool);
+  }
+}
@@ -0,0 +1,170 @@
+package app.windfarm.benchmark;
+
+import app.windfarm.ParkApplication;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetImage;
+import app.windfarm.fleet.FleetIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks startup with the fleet loaded from the database and from the memory-mapped fleet image, against a
+ * file database that keeps its turbines between starts.
+ *
+ * <p>{@code loadFleet} measures only building the fleet indexes: a plain JDBC query of every turbine followed by
+ * {@link FleetIndex#of}, which is a lower bound of the JPA query the application runs, or reading the image.
+ * {@code startApplication} measures starting the whole application until it is ready to serve.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StartupBenchmark {
+
+  public enum Source { DATABASE, IMAGE }
+
+  @Param({"100000", "1000000"})
+  public int fleetSize;
+
+  @Param({"DATABASE", "IMAGE"})
+  public Source source;
+
+  private Path directory;
+  private String databaseUrl;
+  private Path applicationImage;
+  private Path benchmarkImage;
+
+  /** The application started by an invocation. */
+  @State(Scope.Thread)
+  public static class RunningApplication {
+
+    private ConfigurableApplicationContext context;
+
+    /** Close the application after each start, which writes the fleet image for the next start in image mode. */
+    @TearDown(Level.Invocation)
+    public void stop() {
+      if (context != null) {
+        context.close();
+        context = null;
+      }
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("windfarm-startup");
+    databaseUrl = "jdbc:h2:file:" + directory.resolve("windfarm");
+    applicationImage = directory.resolve("fleet.img");
+    benchmarkImage = directory.resolve("benchmark.img");
+
+    // Let Hibernate create the schema once, then fill it without going through the application
+    SpringApplication.run(ParkApplication.class, arguments("create")).close();
+    List<WindTurbine> turbines = SyntheticFleet.generate(fleetSize, SyntheticFleet.Distribution.UNIFORM, 10, 20, 42);
+    try (Connection connection = DriverManager.getConnection(databaseUrl, "sa", "")) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement insert = connection.prepareStatement(
+          "insert into wind_turbine (park_id, identifier, capacity, production_cost, available) values (?, ?, ?, ?, true)")) {
+        for (int i = 0; i < turbines.size(); i++) {
+          WindTurbine turbine = turbines.get(i);
+          insert.setString(1, "synthetic");
+          insert.setString(2, turbine.getIdentifier());
+          insert.setInt(3, turbine.getCapacity());
+          insert.setInt(4, turbine.getProductionCost());
+          insert.addBatch();
+          if (i % 10_000 == 9_999) {
+            insert.executeBatch();
+          }
+        }
+        insert.executeBatch();
+      }
+      connection.commit();
+      FleetImage.write(loadFromDatabase(connection), benchmarkImage);
+    }
+    Files.copy(benchmarkImage, applicationImage, StandardCopyOption.REPLACE_EXISTING);
+
+    System.out.printf("%nFleet image of %d turbines: %d bytes%n", fleetSize, Files.size(benchmarkImage));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    FileSystemUtils.deleteRecursively(directory);
+  }
+
+  /** Build the fleet indexes of every park. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public Map<String, FleetIndex> loadFleet() throws Exception {
+    if (source == Source.IMAGE) {
+      return FleetImage.read(benchmarkImage);
+    }
+    try (Connection connection = DriverManager.getConnection(databaseUrl, "sa", "")) {
+      return loadFromDatabase(connection);
+    }
+  }
+
+  /** Start the application. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  public ConfigurableApplicationContext startApplication(RunningApplication application) {
+    application.context = SpringApplication.run(ParkApplication.class, arguments("none"));
+    return application.context;
+  }
+
+  private static Map<String, FleetIndex> loadFromDatabase(Connection connection) throws Exception {
+    Map<String, List<FleetEntry>> entriesByPark = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rows = statement.executeQuery("select park_id, identifier, capacity, production_cost from wind_turbine")) {
+      while (rows.next()) {
+        entriesByPark.computeIfAbsent(rows.getString(1), k -> new ArrayList<>())
+            .add(new FleetEntry(rows.getString(2), rows.getInt(3), rows.getInt(4)));
+      }
+    }
+    Map<String, FleetIndex> fleets = new HashMap<>();
+    entriesByPark.forEach((parkId, entries) -> fleets.put(parkId, FleetIndex.of(1, entries)));
+    return fleets;
+  }
+
+  private String[] arguments(String schema) {
+    return new String[] {
+        "--spring.datasource.url=" + databaseUrl,
+        "--spring.jpa.hibernate.ddl-auto=" + schema,
+        "--spring.sql.init.mode=never",
+        "--server.port=0",
+        "--windfarm.journal.enabled=false",
+        "--windfarm.fleet.image.enabled=" + (source == Source.IMAGE),
+        "--windfarm.fleet.image.path=" + applicationImage,
+        "--spring.main.banner-mode=off",
+        "--logging.level.root=WARN"
+    };
+  }
+}
@@ -0,0 +1,58 @@
+package app.windfarm.benchmark;
+
+import app.windfarm.entities.WindTurbine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/** Generates synthetic fleets of wind turbines for the benchmarks. */
+public final class SyntheticFleet {
+
+  /** Distribution of the turbine capacities and production costs. */
+  public enum Distribution {
+    /** Capacities and costs drawn uniformly from their range. */
+    UNIFORM,
+    /** Many small, cheap turbines and few large, expensive ones (squared uniform draw). */
+    SKEWED,
+    /** All turbines share a handful of cost levels, so most costs tie. */
+    CLUSTERED
+  }
+
+  private SyntheticFleet() {}
+
+  /**
+   * Generate a fleet of turbines with identifiers in ascending order.
+   *
+   * @param size the number of turbines
+   * @param distribution the distribution of capacities and costs
+   * @param maxCapacity the largest capacity
+   * @param maxCost the largest production cost
+   * @param seed the random seed
+   * @return list of turbines
+   */
+  public static List<WindTurbine> generate(int size, Distribution distribution, int maxCapacity, int maxCost, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    List<WindTurbine> turbines = new ArrayList<>(size);
+
+    for (int i = 0; i < size; i++) {
+      String identifier = String.format("T%07d", i);
+      int capacity = 1 + draw(random, distribution, maxCapacity - 1);
+      int productionCost = draw(random, distribution, maxCost);
+      turbines.add(new WindTurbine(identifier, capacity, productionCost));
+    }
+
+    return turbines;
+  }
+
+  private static int draw(SplittableRandom random, Distribution distribution, int max) {
+    return switch (distribution) {
+      case UNIFORM -> random.nextInt(max + 1);
+      case SKEWED -> {
+        double u = random.nextDouble();
+        yield (int) (u * u * max);
+      }
+      case CLUSTERED -> random.nextInt(4) * max / 3;
+    };
+  }
+}
@@ -0,0 +1,324 @@
+package app.windfarm.loadtest;
+
+import app.windfarm.ParkApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * End-to-end HTTP load test of the production plan and the endpoints that change the park, at a fixed concurrency.
+ *
+ * <p>By default the application is started in this JVM once per thread mode, a synthetic fleet is imported into the
+ * default park, and the application is driven over the loopback interface. With {@code --url} an instance that is
+ * already running is driven instead. Every worker sends its next request as soon as the previous one completes, so the
+ * number of requests in flight stays fixed, and records the latency of each request after the warmup.
+ *
+ * <p>Options, with their defaults:
+ * <pre>
+ * --modes platform,virtual   thread modes to start the application in, one run each
+ * --url http://host:port     drive a running instance instead, in whatever mode it runs
+ * --concurrency 256          requests in flight
+ * --warmup PT5S              time before latencies are recorded
+ * --duration PT15S           time latencies are recorded for
+ * --fleet-size 10000         turbines imported before the run
+ * </pre>
+ */
+public final class LoadTest {
+
+  private static final int MAX_COST = 20;
+  private static final int MAX_CAPACITY = 10;
+
+  /** The requests sent, with the share of each in the mix in percent. */
+  private enum Operation {
+    PRODUCTION_PLAN("GET /api/production-plan", 80),
+    SET_MARKET_PRICE("POST /api/set-market-price", 5),
+    UPDATE_PRODUCTION_TARGET("POST /api/update-production-target", 10),
+    UPDATE_TURBINE("PATCH /api/turbines/{identifier}", 5);
+
+    private final String label;
+    private final int share;
+
+    Operation(String label, int share) {
+      this.label = label;
+      this.share = share;
+    }
+
+    static Operation pick(SplittableRandom random) {
+      int draw = random.nextInt(100);
+      for (Operation operation : values()) {
+        draw -= operation.share;
+        if (draw < 0) {
+          return operation;
+        }
+      }
+      return PRODUCTION_PLAN;
+    }
+  }
+
+  private final HttpClient client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofSeconds(10))
+      .build();
+  private final int concurrency;
+  private final Duration warmup;
+  private final Duration duration;
+  private final int fleetSize;
+
+  private volatile boolean recording;
+  private volatile boolean stopped;
+
+  private LoadTest(int concurrency, Duration warmup, Duration duration, int fleetSize) {
+    this.concurrency = concurrency;
+    this.warmup = warmup;
+    this.duration = duration;
+    this.fleetSize = fleetSize;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>(Map.of(
+        "--modes", "platform,virtual",
+        "--concurrency", "256",
+        "--warmup", "PT5S",
+        "--duration", "PT15S",
+        "--fleet-size", "10000"
+    ));
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Expected an option but found " + args[i] + ".");
+      }
+      options.put(args[i], args[i + 1]);
+    }
+
+    LoadTest loadTest = new LoadTest(Integer.parseInt(options.get("--concurrency")), Duration.parse(options.get("--warmup")),
+        Duration.parse(options.get("--duration")), Integer.parseInt(options.get("--fleet-size")));
+    System.out.printf("%nLoad test: %d requests in flight, %ds warmup, %ds measured, %d turbines, Java %d%n",
+        loadTest.concurrency, loadTest.warmup.toSeconds(), loadTest.duration.toSeconds(), loadTest.fleetSize, Runtime.version().feature());
+
+    if (options.containsKey("--url")) {
+      loadTest.run("external", URI.create(options.get("--url")));
+      return;
+    }
+    for (String mode : options.get("--modes").split(",")) {
+      Path data = Files.createTempDirectory("windfarm-loadtest");
+      try (ConfigurableApplicationContext context = start(mode.trim(), data)) {
+        String effective = Threading.VIRTUAL.isActive(context.getEnvironment()) ? "virtual" : "platform";
+        String label = effective.equals(mode.trim()) ? effective : mode.trim() + " (unsupported, ran on " + effective + ")";
+        loadTest.run(label, URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")));
+      } finally {
+        FileSystemUtils.deleteRecursively(data);
+      }
+    }
+  }
+
+  /**
+   * Start the application on a free port in the given thread mode, with its own database, journal and audit log.
+   */
+  private static ConfigurableApplicationContext start(String mode, Path data) {
+    return SpringApplication.run(ParkApplication.class,
+        "--server.port=0",
+        "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+        "--spring.datasource.url=jdbc:h2:mem:loadtest-" + mode,
+        "--windfarm.journal.directory=" + data.resolve("journal"),
+        "--windfarm.audit.directory=" + data.resolve("audit"),
+        "--spring.main.banner-mode=off",
+        "--logging.level.root=WARN",
+        "--logging.level.app.windfarm=WARN"
+    );
+  }
+
+  /**
+   * Load the fleet, drive the instance for the warmup and the measured duration, and print the report.
+   */
+  private void run(String mode, URI baseUri) throws Exception {
+    long capacity = importFleet(baseUri);
+    send(post(baseUri, "/api/set-market-price?marketPrice=" + MAX_COST / 2));
+    send(post(baseUri, "/api/update-production-target?delta=" + capacity / 2));
+
+    recording = false;
+    stopped = false;
+    List<Worker> workers = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < concurrency; i++) {
+      Worker worker = new Worker(baseUri, i);
+      workers.add(worker);
+      threads.add(new Thread(worker, "load-" + i));
+    }
+    threads.forEach(Thread::start);
+
+    Thread.sleep(warmup.toMillis());
+    recording = true;
+    long start = System.nanoTime();
+    Thread.sleep(duration.toMillis());
+    recording = false;
+    double seconds = (System.nanoTime() - start) / 1e9;
+    stopped = true;
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    report(mode, workers, seconds);
+  }
+
+  /**
+   * Import the synthetic fleet into the default park.
+   *
+   * @return the capacity of the imported turbines
+   */
+  private long importFleet(URI baseUri) throws Exception {
+    SplittableRandom random = new SplittableRandom(42);
+    StringBuilder csv = new StringBuilder();
+    long capacity = 0;
+    for (int i = 0; i < fleetSize; i++) {
+      int turbineCapacity = 1 + random.nextInt(MAX_CAPACITY);
+      csv.append(identifier(i)).append(',').append(turbineCapacity).append(',').append(random.nextInt(MAX_COST)).append('\n');
+      capacity += turbineCapacity;
+    }
+    HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/turbines/import?chunkSize=10000"))
+        .header("Content-Type", "text/csv")
+        .POST(HttpRequest.BodyPublishers.ofString(csv.toString()))
+        .build();
+    if (!send(request)) {
+      throw new IllegalStateException("Importing the fleet into " + baseUri + " failed.");
+    }
+    return capacity;
+  }
+
+  private boolean send(HttpRequest request) {
+    try {
+      int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+      return status >= 200 && status < 300;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private static HttpRequest post(URI baseUri, String path) {
+    return HttpRequest.newBuilder(baseUri.resolve(path)).POST(HttpRequest.BodyPublishers.noBody()).build();
+  }
+
+  private static String identifier(int turbine) {
+    return String.format("T%06d", turbine);
+  }
+
+  /** Sends one request after another and records their latencies. */
+  private final class Worker implements Runnable {
+
+    private final URI baseUri;
+    private final SplittableRandom random;
+    private final long[][] latencies = new long[Operation.values().length][1024];
+    private final int[] counts = new int[Operation.values().length];
+    private final long[] errors = new long[Operation.values().length];
+    private boolean targetRaised;
+
+    Worker(URI baseUri, int index) {
+      this.baseUri = baseUri;
+      this.random = new SplittableRandom(index);
+    }
+
+    @Override
+    public void run() {
+      while (!stopped) {
+        Operation operation = Operation.pick(random);
+        boolean record = recording;
+        long start = System.nanoTime();
+        boolean success = send(request(operation));
+        long nanos = System.nanoTime() - start;
+
+        if (operation == Operation.UPDATE_PRODUCTION_TARGET && success) {
+          targetRaised = !targetRaised;
+        }
+        if (record && recording) {
+          record(operation, nanos, success);
+        }
+      }
+    }
+
+    private HttpRequest request(Operation operation) {
+      return switch (operation) {
+        case PRODUCTION_PLAN -> HttpRequest.newBuilder(baseUri.resolve("/api/production-plan")).GET().build();
+        case SET_MARKET_PRICE -> post(baseUri, "/api/set-market-price?marketPrice=" + random.nextInt(MAX_COST + 1));
+        // Each worker lowers the target only after raising it, so the target stays in range
+        case UPDATE_PRODUCTION_TARGET -> post(baseUri, "/api/update-production-target?delta=" + (targetRaised ? -1 : 1));
+        case UPDATE_TURBINE -> HttpRequest.newBuilder(baseUri.resolve("/api/turbines/" + identifier(random.nextInt(fleetSize))))
+            .header("Content-Type", "application/json")
+            .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"productionCost\":" + random.nextInt(MAX_COST) + "}"))
+            .build();
+      };
+    }
+
+    private void record(Operation operation, long nanos, boolean success) {
+      int index = operation.ordinal();
+      if (!success) {
+        errors[index]++;
+      }
+      if (counts[index] == latencies[index].length) {
+        latencies[index] = Arrays.copyOf(latencies[index], 2 * counts[index]);
+      }
+      latencies[index][counts[index]++] = nanos;
+    }
+  }
+
+  /**
+   * Print the throughput and latency percentiles of every operation and of all requests together.
+   */
+  private static void report(String mode, List<Worker> workers, double seconds) {
+    System.out.printf("%nThread mode: %s%n", mode);
+    System.out.printf("%-36s %10s %8s %12s %9s %9s %9s%n", "Endpoint", "Requests", "Errors", "Requests/s", "p50 ms", "p99 ms", "p999 ms");
+
+    List<long[]> all = new ArrayList<>();
+    long allErrors = 0;
+    for (Operation operation : Operation.values()) {
+      int count = 0;
+      long operationErrors = 0;
+      for (Worker worker : workers) {
+        count += worker.counts[operation.ordinal()];
+        operationErrors += worker.errors[operation.ordinal()];
+      }
+      long[] latencies = new long[count];
+      int offset = 0;
+      for (Worker worker : workers) {
+        int workerCount = worker.counts[operation.ordinal()];
+        System.arraycopy(worker.latencies[operation.ordinal()], 0, latencies, offset, workerCount);
+        offset += workerCount;
+      }
+      all.add(latencies);
+      allErrors += operationErrors;
+      printRow(operation.label, latencies, operationErrors, seconds);
+    }
+
+    long[] latencies = all.stream().flatMapToLong(Arrays::stream).toArray();
+    printRow("All requests", latencies, allErrors, seconds);
+  }
+
+  private static void printRow(String label, long[] latencies, long errors, double seconds) {
+    Arrays.sort(latencies);
+    System.out.printf("%-36s %10d %8d %12.0f %9.2f %9.2f %9.2f%n", label, latencies.length, errors, latencies.length / seconds,
+        percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999));
+  }
+
+  /**
+   * Get a percentile of sorted latencies in milliseconds by the nearest rank method.
+   */
+  private static double percentile(long[] sortedLatencies, double quantile) {
+    if (sortedLatencies.length == 0) {
+      return Double.NaN;
+    }
+    int rank = (int) Math.ceil(quantile * sortedLatencies.length);
+    return sortedLatencies[Math.max(0, rank - 1)] / 1e6;
+  }
+}
@@ -2,25 +2,38 @@ package app.windfarm;
 
 import app.windfarm.entities.WindTurbine;
 import app.windfarm.repository.WindTurbineRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /** Run the application. */
 @SpringBootApplication
+@EnableScheduling
 public class ParkApplication {
 
+  private static final Logger logger = LoggerFactory.getLogger(ParkApplication.class);
+
   public static void main(String[] args) {
     SpringApplication.run(ParkApplication.class, args);
   }
 
   /**
-   * Preload the database with the five wind turbines.
+   * Preload the database with the five wind turbines, unless it already holds turbines restored by the journal or
+   * kept by a persistent database.
    */
   @Bean
   CommandLineRunner initDatabase(WindTurbineRepository repository) {
     return args -> {
+      if (repository.count() > 0) {
+        return;
+      }
       repository.save(new WindTurbine("A", 2, 15));
       repository.save(new WindTurbine("B", 2, 5));
       repository.save(new WindTurbine("C", 6, 5));
@@ -28,4 +41,23 @@ public class ParkApplication {
       repository.save(new WindTurbine("E", 5, 3));
     };
   }
-}
\ No newline at end of file
+
+  /**
+   * Log the threads requests are handled on. With {@code spring.threads.virtual.enabled}, Spring Boot runs Tomcat's
+   * request handling, and with it the repository calls, as well as the scheduled tasks on virtual threads, which
+   * requires Java 21 or later.
+   */
+  @Bean
+  ApplicationRunner logThreadMode(Environment environment) {
+    return args -> {
+      if (Threading.VIRTUAL.isActive(environment)) {
+        logger.info("Handling requests on virtual threads");
+      } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+        logger.warn("Virtual threads are enabled but need Java 21+, handling requests on platform threads on Java {}",
+            Runtime.version().feature());
+      } else {
+        logger.info("Handling requests on platform threads");
+      }
+    };
+  }
+}
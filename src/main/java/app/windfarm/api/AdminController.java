@@ -0,0 +1,89 @@
+package app.windfarm.api;
+
+import app.windfarm.dtos.CapacityReconciliationDto;
+import app.windfarm.dtos.PlanProfileDto;
+import app.windfarm.dtos.ProfilerRecordingDto;
+import app.windfarm.fleet.CapacityReconciler;
+import app.windfarm.metrics.PlanProfiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/** REST API for operational tasks. */
+@RestController
+@RequestMapping("/api/admin")
+public final class AdminController {
+
+  private final CapacityReconciler capacityReconciler;
+  private final PlanProfiler planProfiler;
+  private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+  /**
+   * Constructor for the admin controller.
+   *
+   * @param capacityReconciler the capacity reconciler
+   * @param planProfiler the profiler of the production plan stages
+   */
+  public AdminController(CapacityReconciler capacityReconciler, PlanProfiler planProfiler) {
+    this.capacityReconciler = capacityReconciler;
+    this.planProfiler = planProfiler;
+  }
+
+  /**
+   * Check the in-memory capacity counters against the database on demand.
+   *
+   * @return the result of the check along with an HTTP response
+   */
+  @PostMapping("/reconcile-capacity")
+  public ResponseEntity<CapacityReconciliationDto> reconcileCapacity() {
+    CapacityReconciliationDto result = capacityReconciler.reconcile();
+
+    logger.info("POST /api/admin/reconcile-capacity - Capacity counters consistent: {}", result.consistent());
+
+    return ResponseEntity.ok(result);
+  }
+
+  /**
+   * Start a flight recording of the production plan stages, which stops on its own after the given duration.
+   *
+   * @param duration how long to record for, as an ISO-8601 duration
+   * @return the started recording along with an HTTP response, or 409 Conflict if a recording is already running
+   * @throws IllegalArgumentException if the duration is not positive or above the configured maximum
+   */
+  @PostMapping("/profiler/start")
+  public ResponseEntity<ProfilerRecordingDto> startProfiler(@RequestParam(defaultValue = "PT1M") Duration duration) {
+    Optional<ProfilerRecordingDto> recording = planProfiler.start(duration);
+    if (recording.isEmpty()) {
+      logger.info("POST /api/admin/profiler/start - A profiler recording is already running");
+      return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    logger.info("POST /api/admin/profiler/start - Recording plan stages until {}", recording.get().stopsAt());
+
+    return ResponseEntity.ok(recording.get());
+  }
+
+  /**
+   * Stop the flight recording of the production plan stages and summarize the latency of each stage.
+   *
+   * @return the latency summary along with an HTTP response
+   * @throws NoSuchElementException if no recording was started
+   */
+  @PostMapping("/profiler/stop")
+  public ResponseEntity<PlanProfileDto> stopProfiler() {
+    PlanProfileDto profile = planProfiler.stop();
+
+    logger.info("POST /api/admin/profiler/stop - Summarized {} recorded plan stages", profile.stages().size());
+
+    return ResponseEntity.ok(profile);
+  }
+}
@@ -1,13 +1,28 @@
 package app.windfarm.api;
 
+import app.windfarm.metrics.ParkMetrics;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.util.NoSuchElementException;
+
 /** Responsible for mapping service-level exceptions to HTTP responses. */
 @ControllerAdvice
 public class ControllerExceptionHandler {
 
+  private final ParkMetrics parkMetrics;
+
+  /**
+   * Constructor for the exception handler.
+   *
+   * @param parkMetrics the park metrics, counting the rejected requests
+   */
+  public ControllerExceptionHandler(ParkMetrics parkMetrics) {
+    this.parkMetrics = parkMetrics;
+  }
+
   /**
    * Converts IllegalArgumentException into a 404 Bad Request response.
    *
@@ -16,6 +31,18 @@ public class ControllerExceptionHandler {
    */
   @ExceptionHandler(IllegalArgumentException.class)
   public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+    parkMetrics.validationRejected();
     return ResponseEntity.badRequest().body(e.getMessage());
   }
+
+  /**
+   * Converts NoSuchElementException, e.g. for an unknown park, into a 404 Not Found response.
+   *
+   * @param e the exception
+   * @return 404 Not Found response with error message
+   */
+  @ExceptionHandler(NoSuchElementException.class)
+  public ResponseEntity<String> handleNoSuchElement(NoSuchElementException e) {
+    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+  }
 }
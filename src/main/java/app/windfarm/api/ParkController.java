@@ -1,84 +1,290 @@
 package app.windfarm.api;
 
-import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.audit.DispatchAuditLog;
+import app.windfarm.dtos.PlanScenarioDto;
+import app.windfarm.dtos.PriceFeedReportDto;
+import app.windfarm.dtos.PlanSummaryDto;
+import app.windfarm.dtos.ScheduleDto;
+import app.windfarm.dtos.ScheduleRequestDto;
+import app.windfarm.dtos.SimulationDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.AvailabilityModel;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.planning.ProductionPlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import app.windfarm.service.MarketPriceFeed;
 import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import app.windfarm.service.PlanFormat;
+import app.windfarm.service.ProductionPlanCache;
 
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 
-/** REST API for handling HTTP requests. */
+/**
+ * REST API for handling HTTP requests. Every endpoint is served both under {@code /api/parks/{parkId}} for a given park
+ * and under {@code /api} for the default park.
+ */
 @RestController
-@RequestMapping("/api")
+@RequestMapping({"/api", "/api/parks/{parkId}"})
 public final class ParkController {
 
+  private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+  private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
   private final ParkService parkService;
+  private final ProductionPlanCache productionPlanCache;
+  private final MarketPriceFeed marketPriceFeed;
+  private final DispatchAuditLog dispatchAuditLog;
   private static final Logger logger = LoggerFactory.getLogger(ParkController.class);
 
   /**
    * Constructor for the park controller.
    *
    * @param parkService the park service to delegate service logic to
+   * @param productionPlanCache the cache of computed production plans
+   * @param marketPriceFeed the feed to delegate market price ticks to
+   * @param dispatchAuditLog the audit log of the computed production plans
    */
-  public ParkController(ParkService parkService) {
+  public ParkController(ParkService parkService, ProductionPlanCache productionPlanCache, MarketPriceFeed marketPriceFeed,
+                        DispatchAuditLog dispatchAuditLog) {
     this.parkService = parkService;
+    this.productionPlanCache = productionPlanCache;
+    this.marketPriceFeed = marketPriceFeed;
+    this.dispatchAuditLog = dispatchAuditLog;
   }
 
   /**
    * Set the market price to the given value.
    *
+   * @param parkId the park identifier, or null for the default park
    * @param marketPrice the market price
    * @return HTTP response
    */
   @PostMapping("/set-market-price")
-  public ResponseEntity<Void> setMarketPrice(@RequestParam int marketPrice) {
-    parkService.setMarketPrice(marketPrice);
+  public ResponseEntity<Void> setMarketPrice(@PathVariable(required = false) String parkId, @RequestParam int marketPrice) {
+    String park = parkOrDefault(parkId);
+    parkService.setMarketPrice(park, marketPrice);
 
-    logger.info("POST /api/set-market-price - Successfully set market price to {}€", marketPrice);
+    logger.info("POST /api/set-market-price - Successfully set market price of park {} to {}€", park, marketPrice);
 
     return ResponseEntity.ok().build();
   }
 
+  /**
+   * Ingest market price ticks from CSV rows of {@code sequence,price}. The body is streamed, not buffered, and the
+   * latest accepted price is applied once per coalescing window while it is read.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param body the request body
+   * @return the ingestion report along with an HTTP response
+   */
+  @PostMapping(value = "/market-price/ticks", consumes = "text/csv")
+  public ResponseEntity<PriceFeedReportDto> ingestPriceTicks(@PathVariable(required = false) String parkId, InputStream body) {
+    String park = parkOrDefault(parkId);
+    PriceFeedReportDto report = marketPriceFeed.ingest(park, body);
+
+    logger.info("POST /api/market-price/ticks - Accepted {} price ticks of park {} up to sequence {}, rejected {} stale and {} malformed",
+        report.ticksAccepted(), park, report.lastSequence(), report.ticksStale(), report.ticksMalformed());
+
+    return ResponseEntity.ok(report);
+  }
+
   /**
    * Update the production target by the given value.
    *
+   * @param parkId the park identifier, or null for the default park
    * @param delta the delta increase/decrease in production target
    * @return HTTP response
    */
   @PostMapping("/update-production-target")
-  public ResponseEntity<Void> updateProductionTarget(@RequestParam int delta) {
-    parkService.updateProductionTarget(delta);
-
-    int productionTarget = parkService.getProductionTarget();
-    logger.info("POST /api/update-production-target - Successfully updated production target to {}MWh", productionTarget);
+  public ResponseEntity<Void> updateProductionTarget(@PathVariable(required = false) String parkId, @RequestParam int delta) {
+    String park = parkOrDefault(parkId);
+    int productionTarget = parkService.updateProductionTarget(park, delta);
+    logger.info("POST /api/update-production-target - Successfully updated production target of park {} to {}MWh", park, productionTarget);
 
     return ResponseEntity.ok().build();
   }
 
   /**
    * Retrieve the production plan as a list of all the turbines with their respective expected production.
+   * The {@code Accept} header selects the representation: a JSON array of turbines by default, or the columnar JSON or
+   * binary formats of {@link PlanFormat}, which can leave out the turbines without expected production.
+   * The plan is served from the cache while the market price, production target and fleet are unchanged, and its
+   * entity tag is sent as {@code ETag}. A request whose {@code If-None-Match} holds the current tag gets 304 Not Modified
+   * without the plan being computed.
    *
-   * @return the production plan along with an HTTP response
+   * @param parkId the park identifier, or null for the default park
+   * @param mode how to choose the online turbines, greedy by default
+   * @param onlineOnly true to leave out turbines without expected production, ignored by the default JSON array
+   * @param accept the {@code Accept} header, or null to accept any representation
+   * @param request the request, checked for {@code If-None-Match}
+   * @return the serialized production plan along with an HTTP response, or null if not modified
+   * @throws HttpMediaTypeNotAcceptableException if no representation is acceptable
    */
-  @GetMapping("/production-plan")
-  public ResponseEntity<List<WindTurbineOutputDto>> getProductionPlan() {
-    List<WindTurbineOutputDto> productionPlan = parkService.computeProductionPlan();
+  @GetMapping(value = "/production-plan", produces = {MediaType.APPLICATION_JSON_VALUE, PlanFormat.COLUMNAR_VALUE, PlanFormat.BINARY_VALUE})
+  public ResponseEntity<byte[]> getProductionPlan(
+      @PathVariable(required = false) String parkId, @RequestParam(defaultValue = "GREEDY") PlanMode mode,
+      @RequestParam(defaultValue = "false") boolean onlineOnly, @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+      WebRequest request) throws HttpMediaTypeNotAcceptableException {
+    PlanFormat format = PlanFormat.negotiate(accept == null ? List.of() : MediaType.parseMediaTypes(accept))
+        .orElseThrow(() -> new HttpMediaTypeNotAcceptableException(Arrays.stream(PlanFormat.values()).map(PlanFormat::mediaType).toList()));
+    String park = parkOrDefault(parkId);
+    ParkState state = parkService.getState(park);
+    if (request.checkNotModified(productionPlanCache.etag(state, mode, format, onlineOnly))) {
+      logger.info("GET /api/production-plan - Production plan of park {} not modified", park);
+      return null;
+    }
 
-    // Prints the plan in the terminal (for easier output verification)
-    String formattedProductionPlan = formatProductionPlan(productionPlan);
-    logger.info("GET /api/production-plan - Successfully retrieved the production plan \n{}", formattedProductionPlan);
+    ProductionPlanCache.CachedPlan productionPlan = productionPlanCache.get(park, state, mode, format, onlineOnly);
+    if (productionPlan.fromCache()) {
+      logger.info("GET /api/production-plan - Successfully retrieved the cached production plan of park {} as {}", park, format);
+    } else {
+      dispatchAuditLog.record(park, state, mode, productionPlan.productionPlan());
+      logger.info("GET /api/production-plan - Successfully retrieved the production plan of park {} as {}", park, format);
+      if (logger.isDebugEnabled()) {
+        // Prints the plan in the terminal (for easier output verification)
+        logger.debug("Production plan of park {}:\n{}", park, formatProductionPlan(state, productionPlan.productionPlan()));
+      }
+    }
 
-    return ResponseEntity.ok(productionPlan);
+    return ResponseEntity.ok()
+        .contentType(format.mediaType())
+        .eTag(productionPlan.etag())
+        .varyBy(HttpHeaders.ACCEPT)
+        .body(productionPlan.body());
+  }
+
+  /**
+   * Compute the summary of the production plan for each of the given scenarios, without changing the market price or production target.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param scenarios the candidate market prices and production targets
+   * @return the plan summaries along with an HTTP response
+   */
+  @PostMapping("/production-plan/what-if")
+  public ResponseEntity<List<PlanSummaryDto>> computePlanSummaries(
+      @PathVariable(required = false) String parkId, @RequestBody List<PlanScenarioDto> scenarios) {
+    List<PlanSummaryDto> summaries = parkService.computePlanSummaries(parkOrDefault(parkId), scenarios);
+
+    logger.info("POST /api/production-plan/what-if - Successfully computed {} plan summaries", summaries.size());
+
+    return ResponseEntity.ok(summaries);
+  }
+
+  /**
+   * Compute the expected production of every turbine in every interval of a schedule, e.g. a day-ahead schedule of 96 quarter hours,
+   * without changing the market price or production target.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param schedule the market price and production target of each interval
+   * @return the turbine × interval matrix of expected production along with an HTTP response
+   */
+  @PostMapping("/schedule")
+  public ResponseEntity<ScheduleDto> computeSchedule(@PathVariable(required = false) String parkId, @RequestBody ScheduleRequestDto schedule) {
+    ScheduleDto result = parkService.computeSchedule(parkOrDefault(parkId), schedule);
+
+    logger.info("POST /api/schedule - Successfully computed schedule of {} intervals for {} turbines",
+        result.intervals(), result.identifiers().length);
+
+    return ResponseEntity.ok(result);
+  }
+
+  /**
+   * Simulate the production the current production plan delivers when the wind lets each turbine produce only a share of its capacity,
+   * without changing the market price or production target.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param scenarios the number of scenarios to simulate
+   * @param meanAvailability the mean share of its capacity a turbine produces
+   * @param availabilityDeviation the standard deviation of that share
+   * @param correlation the share of the variance that is common to all turbines, i.e. the wind over the whole park
+   * @param seed the seed of the random generator, or null for a random one
+   * @return the distribution of the production and the shortfall against the target along with an HTTP response
+   * @throws IllegalArgumentException if the number of scenarios or a parameter of the availability is out of range
+   */
+  @GetMapping("/production-plan/simulation")
+  public ResponseEntity<SimulationDto> simulateProduction(
+      @PathVariable(required = false) String parkId, @RequestParam(defaultValue = "10000") int scenarios,
+      @RequestParam(defaultValue = "0.8") double meanAvailability, @RequestParam(defaultValue = "0.2") double availabilityDeviation,
+      @RequestParam(defaultValue = "0.5") double correlation, @RequestParam(required = false) Long seed) {
+    AvailabilityModel model = new AvailabilityModel(meanAvailability, availabilityDeviation, correlation);
+    SimulationDto result = parkService.simulateProduction(parkOrDefault(parkId), scenarios, model, seed);
+
+    logger.info("GET /api/production-plan/simulation - Successfully simulated {} scenarios in {}ms, median production {}MWh of {}MWh",
+        result.scenarios(), result.elapsedMillis(), result.production().p50(), result.productionTarget());
+
+    return ResponseEntity.ok(result);
+  }
+
+  /**
+   * Stream the production plan as newline-delimited JSON, one turbine per line, in pages of turbines.
+   * Each line is written as it is computed, so memory use does not grow with the fleet size.
+   * If there are more turbines after the page, the cursor of the next page is returned in the {@code X-Next-Cursor} header.
+   * The cursor holds the version of the park state the page was planned for, so the pages of a plan never mix states,
+   * and a cursor is rejected once the state changed.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param cursor the cursor returned with the previous page, or null for the first page
+   * @param limit the maximum number of turbines to return, all remaining turbines if not given
+   * @param mode how to choose the online turbines, greedy by default
+   * @return the streamed production plan along with an HTTP response, or 409 Conflict if the state changed since the cursor
+   * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive
+   */
+  @GetMapping(value = "/production-plan/stream", produces = NDJSON_MEDIA_TYPE)
+  public ResponseEntity<StreamingResponseBody> streamProductionPlan(
+      @PathVariable(required = false) String parkId, @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit, @RequestParam(defaultValue = "GREEDY") PlanMode mode) {
+    PageCursor position = cursor == null ? null : PageCursor.parse(cursor);
+    if (limit != null && limit <= 0) {
+      throw new IllegalArgumentException("Limit must be positive.");
+    }
+
+    ParkState state = parkService.getState(parkOrDefault(parkId));
+    if (position != null && position.stateVersion() != state.version()) {
+      logger.info("GET /api/production-plan/stream - Cursor of state version {} is stale, the park is at version {}",
+          position.stateVersion(), state.version());
+      return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    ProductionPlan productionPlan = parkService.planProduction(state, mode);
+    int fleetSize = productionPlan.fleet().size();
+    int from = position == null ? 0 : Math.min(position.ordinal(), fleetSize);
+    int to = limit == null ? fleetSize : (int) Math.min((long) from + limit, fleetSize);
+
+    logger.info("GET /api/production-plan/stream - Streaming production plan for turbines [{}, {}) of {}", from, to, fleetSize);
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE));
+    if (to < fleetSize) {
+      response.header(NEXT_CURSOR_HEADER, new PageCursor(state.version(), to).toString());
+    }
+    return response.body(outputStream -> ProductionPlanNdjsonWriter.write(productionPlan, from, to, outputStream));
+  }
+
+  /**
+   * Get the park of a request.
+   */
+  private static String parkOrDefault(String parkId) {
+    return parkId == null ? WindTurbine.DEFAULT_PARK_ID : parkId;
   }
 
   /**
    * Pretty-print the production plan.
    */
-  private String formatProductionPlan(List<WindTurbineOutputDto> productionPlan) {
-    int marketPrice = parkService.getMarketPrice();
-    int productionTarget = parkService.getProductionTarget();
+  private String formatProductionPlan(ParkState state, ProductionPlan productionPlan) {
+    int marketPrice = state.marketPrice();
+    int productionTarget = state.productionTarget();
     int sumProduction = 0;
 
     StringBuilder sb = new StringBuilder();
@@ -86,9 +292,11 @@ public final class ParkController {
     sb.append("| Turbine | Expected production |\n");
     sb.append("---------------------------------\n");
 
-    for (WindTurbineOutputDto turbine : productionPlan) {
-      sb.append(String.format("| %-7s | %-19d |\n", turbine.identifier(), turbine.expectedProduction()));
-      sumProduction += turbine.expectedProduction();
+    FleetIndex fleet = productionPlan.fleet();
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      int expectedProduction = productionPlan.expectedProduction(ordinal);
+      sb.append(String.format("| %-7s | %-19d |\n", fleet.identifier(ordinal), expectedProduction));
+      sumProduction += expectedProduction;
     }
 
     sb.append("---------------------------------\n");
@@ -99,4 +307,33 @@ public final class ParkController {
 
     return sb.toString();
   }
+
+  /**
+   * The position of the next page of a streamed production plan, written as {@code <state version>-<ordinal>}.
+   *
+   * @param stateVersion the version of the park state the plan was computed for
+   * @param ordinal the ordinal of the first turbine of the page
+   */
+  private record PageCursor(long stateVersion, int ordinal) {
+
+    static PageCursor parse(String cursor) {
+      int separator = cursor.indexOf('-');
+      if (separator > 0) {
+        try {
+          int ordinal = Integer.parseInt(cursor.substring(separator + 1));
+          if (ordinal >= 0) {
+            return new PageCursor(Long.parseLong(cursor.substring(0, separator)), ordinal);
+          }
+        } catch (NumberFormatException e) {
+          // Rejected below like any other malformed cursor
+        }
+      }
+      throw new IllegalArgumentException("Cursor must be the X-Next-Cursor header of a previous page.");
+    }
+
+    @Override
+    public String toString() {
+      return stateVersion + "-" + ordinal;
+    }
+  }
 }
@@ -0,0 +1,327 @@
+package app.windfarm.api;
+
+import app.windfarm.dtos.PlanDeltaDto;
+import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes the changes of the production plan of a park to server-sent event subscribers.
+ *
+ * <p>Each subscriber holds at most one pending park state. A state change replaces the pending state and schedules
+ * a send if none is running, so a burst of changes is coalesced into one event and a slow subscriber never queues more
+ * than one state. Events carry the park state version as their id.
+ *
+ * <p>The first event, and the first event after turbines were added or removed, is a {@code snapshot} of every turbine.
+ * Otherwise the plans before and after are both the cheapest turbines of fleets with the same ordinals, so a
+ * {@code delta} event only needs the changed turbines and those ranked around the two numbers of online turbines.
+ * Changes that leave the plan as it was send nothing.
+ *
+ * <p>Events are sent by a fixed number of platform threads, or by a virtual thread per send when
+ * {@code spring.threads.virtual.enabled} is set on Java 21 or later. A subscriber whose pending state has not been sent
+ * within {@code windfarm.events.max-lag} of its last successful send, e.g. because its client stopped reading, is
+ * completed and dropped when the next state arrives, so stalled clients cannot hold on to the sender threads.
+ */
+@Component
+public class PlanEventBroadcaster {
+
+  private static final Logger logger = LoggerFactory.getLogger(PlanEventBroadcaster.class);
+  private static final int DEFAULT_SENDER_THREADS = 4;
+  private static final int DEFAULT_MAX_LAG_SECONDS = 10;
+  private static final long IDLE = Long.MIN_VALUE;
+
+  private final ParkService parkService;
+  private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+  private final Executor executor;
+  private final long maxLagNanos;
+
+  /**
+   * Constructor for the plan event broadcaster with {@value #DEFAULT_SENDER_THREADS} sender threads and a maximum lag
+   * of {@value #DEFAULT_MAX_LAG_SECONDS} seconds. Registers for state changes of every park.
+   *
+   * @param parkService the park service
+   */
+  public PlanEventBroadcaster(ParkService parkService) {
+    this(parkService, false, DEFAULT_SENDER_THREADS, Duration.ofSeconds(DEFAULT_MAX_LAG_SECONDS));
+  }
+
+  /**
+   * Constructor for the plan event broadcaster. Registers for state changes of every park.
+   *
+   * @param parkService the park service
+   * @param virtualThreads whether to send on virtual threads, which is ignored before Java 21
+   * @param senderThreads the number of platform threads sending events, if not sending on virtual threads
+   * @param maxLag the time after which a subscriber that has not been sent its pending state is dropped
+   * @throws IllegalArgumentException if the number of sender threads is not positive
+   */
+  @Autowired
+  public PlanEventBroadcaster(ParkService parkService, @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                              @Value("${windfarm.events.sender-threads:" + DEFAULT_SENDER_THREADS + "}") int senderThreads,
+                              @Value("${windfarm.events.max-lag:PT" + DEFAULT_MAX_LAG_SECONDS + "S}") Duration maxLag) {
+    if (senderThreads < 1) {
+      throw new IllegalArgumentException("At least one plan event sender thread is required.");
+    }
+    this.parkService = parkService;
+    this.maxLagNanos = maxLag.toNanos();
+    if (virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+      this.executor = new VirtualThreadTaskExecutor("plan-events-");
+    } else {
+      this.executor = Executors.newFixedThreadPool(senderThreads, new SenderThreadFactory());
+    }
+    parkService.addStateListener(this::stateChanged);
+  }
+
+  /**
+   * Subscribe the given emitter to the plan changes of a park, starting with a snapshot of the current plan.
+   *
+   * @param parkId the park identifier
+   * @param emitter the emitter to send the events to
+   * @throws java.util.NoSuchElementException if the park does not exist
+   */
+  public void subscribe(String parkId, SseEmitter emitter) {
+    ParkState current = parkService.getState(parkId);
+    Set<Subscription> parkSubscriptions = subscriptions.computeIfAbsent(parkId, k -> ConcurrentHashMap.newKeySet());
+    Subscription subscription = new Subscription(emitter, parkSubscriptions);
+    parkSubscriptions.add(subscription);
+
+    emitter.onCompletion(subscription::close);
+    emitter.onTimeout(subscription::close);
+    emitter.onError(error -> subscription.close());
+
+    subscription.offer(current);
+  }
+
+  /**
+   * Get the number of subscribers to a park.
+   *
+   * @param parkId the park identifier
+   * @return the number of subscribers
+   */
+  public int subscriberCount(String parkId) {
+    Set<Subscription> parkSubscriptions = subscriptions.get(parkId);
+    return parkSubscriptions == null ? 0 : parkSubscriptions.size();
+  }
+
+  /**
+   * Stop sending and complete all event streams.
+   */
+  @PreDestroy
+  public void shutdown() {
+    if (executor instanceof ExecutorService executorService) {
+      executorService.shutdownNow();
+    }
+    subscriptions.values().forEach(parkSubscriptions -> parkSubscriptions.forEach(subscription -> subscription.emitter.complete()));
+  }
+
+  /**
+   * Hand the new state of a park to its subscribers.
+   *
+   * @param parkId the park identifier
+   * @param state the new park state
+   */
+  private void stateChanged(String parkId, ParkState state) {
+    Set<Subscription> parkSubscriptions = subscriptions.get(parkId);
+    if (parkSubscriptions != null) {
+      parkSubscriptions.forEach(subscription -> subscription.offer(state));
+    }
+  }
+
+  /**
+   * Get the ordinals, in identifier order, of the turbines whose expected production differs between two greedy plans,
+   * or null if the fleets of the plans do not hold the same turbines.
+   */
+  private static int[] changedOrdinals(ProductionPlan before, ProductionPlan after) {
+    FleetIndex fleetBefore = before.fleet();
+    FleetIndex fleetAfter = after.fleet();
+    int[] changed = fleetAfter == fleetBefore ? new int[0] : fleetAfter.changedOrdinals(fleetBefore);
+    if (changed == null) {
+      return null;
+    }
+
+    // Each changed turbine moves the ranks of the others by at most one, so in both fleets an unchanged turbine that
+    // went online or offline is ranked below the higher number of online turbines, and at most that many below the lower
+    int from = Math.max(0, Math.min(before.onlineTurbines(), after.onlineTurbines()) - changed.length);
+    int to = Math.max(before.onlineTurbines(), after.onlineTurbines());
+    int[] candidates = Arrays.copyOf(changed, changed.length + 2 * (to - from));
+    int count = changed.length;
+    for (int rank = from; rank < to; rank++) {
+      candidates[count++] = fleetBefore.ordinalAt(rank);
+      candidates[count++] = fleetAfter.ordinalAt(rank);
+    }
+    Arrays.sort(candidates);
+
+    int[] ordinals = new int[count];
+    int changedCount = 0;
+    for (int i = 0; i < count; i++) {
+      int ordinal = candidates[i];
+      if ((i == 0 || candidates[i - 1] != ordinal) && before.expectedProduction(ordinal) != after.expectedProduction(ordinal)) {
+        ordinals[changedCount++] = ordinal;
+      }
+    }
+    return Arrays.copyOf(ordinals, changedCount);
+  }
+
+  /** A single event stream, with the plan it has sent so far. */
+  private final class Subscription {
+
+    private final SseEmitter emitter;
+    private final Set<Subscription> parkSubscriptions;
+    private final AtomicReference<ParkState> pending = new AtomicReference<>();
+    // When the queued send task was scheduled or the running one last sent, or IDLE if there is none
+    private final AtomicLong sendingSince = new AtomicLong(IDLE);
+    private volatile boolean closed;
+
+    // Only accessed by the running send task
+    private long sentVersion = -1;
+    private ProductionPlan sentPlan;
+
+    Subscription(SseEmitter emitter, Set<Subscription> parkSubscriptions) {
+      this.emitter = emitter;
+      this.parkSubscriptions = parkSubscriptions;
+    }
+
+    /**
+     * Stop sending to this subscriber.
+     */
+    void close() {
+      closed = true;
+      parkSubscriptions.remove(this);
+    }
+
+    /**
+     * Replace the pending state with the given one if it is newer, and make sure a send task will pick it up.
+     * Drops the subscriber instead if its send task has been queued, or running without sending, for longer than the maximum lag.
+     */
+    void offer(ParkState state) {
+      if (closed) {
+        return;
+      }
+      long since = sendingSince.get();
+      if (since != IDLE && System.nanoTime() - since > maxLagNanos) {
+        logger.debug("Plan event subscriber fell behind by more than {}ms, completing its stream", maxLagNanos / 1_000_000);
+        close();
+        emitter.complete();
+        return;
+      }
+      pending.accumulateAndGet(state, (current, offered) -> current == null || offered.version() > current.version() ? offered : current);
+      schedule();
+    }
+
+    /**
+     * Start a send task unless one is queued or running.
+     */
+    private void schedule() {
+      if (sendingSince.compareAndSet(IDLE, timestamp())) {
+        executor.execute(this::drain);
+      }
+    }
+
+    /**
+     * Send the pending state until there is none left. A state offered while the flag is being cleared is picked up by rescheduling.
+     */
+    private void drain() {
+      try {
+        ParkState state;
+        while (!closed && (state = pending.getAndSet(null)) != null) {
+          send(state);
+          sendingSince.set(timestamp());
+        }
+      } catch (IOException | IllegalStateException e) {
+        logger.debug("Plan event stream closed: {}", e.getMessage());
+        close();
+        emitter.completeWithError(e);
+        return;
+      } finally {
+        sendingSince.set(IDLE);
+      }
+
+      if (!closed && pending.get() != null) {
+        schedule();
+      }
+    }
+
+    /**
+     * Send the changes of the plan for the given state since the last sent plan.
+     */
+    private void send(ParkState state) throws IOException {
+      if (state.version() <= sentVersion) {
+        return;
+      }
+
+      FleetIndex fleet = state.fleet();
+      ProductionPlan plan = ProductionPlanner.plan(fleet, state.marketPrice(), state.productionTarget());
+      int[] ordinals = sentPlan == null ? null : changedOrdinals(sentPlan, plan);
+      boolean snapshot = ordinals == null;
+      if (snapshot) {
+        ordinals = new int[fleet.size()];
+        Arrays.setAll(ordinals, ordinal -> ordinal);
+      }
+
+      sentVersion = state.version();
+      sentPlan = plan;
+      if (!snapshot && ordinals.length == 0) {
+        return;
+      }
+
+      List<WindTurbineOutputDto> turbines = new ArrayList<>(ordinals.length);
+      for (int ordinal : ordinals) {
+        turbines.add(new WindTurbineOutputDto(fleet.identifier(ordinal), plan.expectedProduction(ordinal)));
+      }
+
+      emitter.send(SseEmitter.event()
+          .id(Long.toString(state.version()))
+          .name(snapshot ? "snapshot" : "delta")
+          .data(new PlanDeltaDto(state.version(), fleet.version(), snapshot, turbines), MediaType.APPLICATION_JSON));
+    }
+  }
+
+  /**
+   * Read the clock for {@code sendingSince}, avoiding the value that marks an idle subscription.
+   */
+  private static long timestamp() {
+    long now = System.nanoTime();
+    return now == IDLE ? now + 1 : now;
+  }
+
+  /** Names the daemon threads that send the events. */
+  private static final class SenderThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "plan-events-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
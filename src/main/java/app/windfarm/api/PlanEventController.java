@@ -0,0 +1,54 @@
+package app.windfarm.api;
+
+import app.windfarm.entities.WindTurbine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+/** REST API for subscribing to production plan changes. Paths without a park refer to the default park. */
+@RestController
+@RequestMapping({"/api", "/api/parks/{parkId}"})
+public final class PlanEventController {
+
+  private final PlanEventBroadcaster planEventBroadcaster;
+  private final long timeoutMillis;
+  private static final Logger logger = LoggerFactory.getLogger(PlanEventController.class);
+
+  /**
+   * Constructor for the plan event controller.
+   *
+   * @param planEventBroadcaster the broadcaster of plan changes
+   * @param timeout the time after which an event stream is closed, and the client is expected to reconnect
+   */
+  public PlanEventController(PlanEventBroadcaster planEventBroadcaster, @Value("${windfarm.events.timeout:PT1H}") Duration timeout) {
+    this.planEventBroadcaster = planEventBroadcaster;
+    this.timeoutMillis = timeout.toMillis();
+  }
+
+  /**
+   * Subscribe to the changes of the production plan as server-sent events. The first event is a {@code snapshot} of
+   * every turbine, and each later {@code delta} event lists only the turbines whose expected production changed.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @return the event stream
+   */
+  @GetMapping(value = "/production-plan/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter subscribeToProductionPlan(@PathVariable(required = false) String parkId) {
+    String park = parkId == null ? WindTurbine.DEFAULT_PARK_ID : parkId;
+    SseEmitter emitter = new SseEmitter(timeoutMillis);
+    planEventBroadcaster.subscribe(park, emitter);
+
+    logger.info("GET /api/production-plan/events - Subscribed to production plan of park {}, {} subscribers",
+        park, planEventBroadcaster.subscriberCount(park));
+
+    return emitter;
+  }
+}
@@ -0,0 +1,89 @@
+package app.windfarm.api;
+
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.service.JsonStringEscaper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a production plan as newline-delimited JSON, one turbine per line, straight from the plan
+ * without building a list of DTOs. Memory use is a fixed-size buffer regardless of the fleet size.
+ * Identifiers are escaped by {@link JsonStringEscaper}, as in every other JSON representation of the plan.
+ */
+final class ProductionPlanNdjsonWriter {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final byte[] TURBINE_PREFIX = "{\"identifier\":\"".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] PRODUCTION_PREFIX = "\",\"expectedProduction\":".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] TURBINE_SUFFIX = "}\n".getBytes(StandardCharsets.UTF_8);
+  /** The longest a line gets besides its identifier, with an expected production of 10 digits and a sign. */
+  private static final int MAX_LINE_OVERHEAD = TURBINE_PREFIX.length + PRODUCTION_PREFIX.length + 11 + TURBINE_SUFFIX.length;
+
+  private ProductionPlanNdjsonWriter() {}
+
+  /**
+   * Write the turbines with ordinals in {@code [from, to)} to the given stream.
+   *
+   * @param productionPlan the production plan
+   * @param from the first ordinal to write
+   * @param to the ordinal to stop at (exclusive)
+   * @param outputStream the stream to write to, left open
+   * @throws IOException if writing fails
+   */
+  static void write(ProductionPlan productionPlan, int from, int to, OutputStream outputStream) throws IOException {
+    FleetIndex fleet = productionPlan.fleet();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int length = 0;
+
+    for (int ordinal = from; ordinal < to; ordinal++) {
+      String identifier = fleet.identifier(ordinal);
+      int lineLength = JsonStringEscaper.escapedLength(identifier) + MAX_LINE_OVERHEAD;
+      if (length + lineLength > buffer.length) {
+        outputStream.write(buffer, 0, length);
+        length = 0;
+        // Only an identifier longer than the buffer needs a larger one
+        if (lineLength > buffer.length) {
+          buffer = new byte[lineLength];
+        }
+      }
+
+      length = append(TURBINE_PREFIX, buffer, length);
+      length = JsonStringEscaper.write(identifier, buffer, length);
+      length = append(PRODUCTION_PREFIX, buffer, length);
+      length = appendInt(productionPlan.expectedProduction(ordinal), buffer, length);
+      length = append(TURBINE_SUFFIX, buffer, length);
+    }
+
+    outputStream.write(buffer, 0, length);
+    outputStream.flush();
+  }
+
+  private static int append(byte[] bytes, byte[] buffer, int offset) {
+    System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+    return offset + bytes.length;
+  }
+
+  /**
+   * Write the decimal digits of the given value, without allocating a string.
+   */
+  private static int appendInt(int value, byte[] buffer, int offset) {
+    long remaining = value;
+    if (remaining < 0) {
+      buffer[offset++] = '-';
+      remaining = -remaining;
+    }
+
+    int digits = 1;
+    for (long bound = 10; bound <= remaining; bound *= 10) {
+      digits++;
+    }
+    for (int position = offset + digits - 1; position >= offset; position--) {
+      buffer[position] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    return offset + digits;
+  }
+}
@@ -0,0 +1,98 @@
+package app.windfarm.api;
+
+import app.windfarm.dtos.ImportReportDto;
+import app.windfarm.dtos.WindTurbineDto;
+import app.windfarm.dtos.WindTurbinePatchDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.service.ParkService;
+import app.windfarm.service.TurbineImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+/** REST API for managing the turbines of a park. Paths without a park refer to the default park. */
+@RestController
+@RequestMapping({"/api/turbines", "/api/parks/{parkId}/turbines"})
+public final class TurbineController {
+
+  private final TurbineImportService turbineImportService;
+  private final ParkService parkService;
+  private static final Logger logger = LoggerFactory.getLogger(TurbineController.class);
+
+  /**
+   * Constructor for the turbine controller.
+   *
+   * @param turbineImportService the service to delegate imports to
+   * @param parkService the service to delegate turbine changes to
+   */
+  public TurbineController(TurbineImportService turbineImportService, ParkService parkService) {
+    this.turbineImportService = turbineImportService;
+    this.parkService = parkService;
+  }
+
+  /**
+   * Change the capacity, production cost or availability of a turbine. Fields missing from the body are kept.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param identifier the turbine identifier
+   * @param patch the values to change
+   * @return the changed turbine along with an HTTP response
+   */
+  @PatchMapping("/{identifier}")
+  public ResponseEntity<WindTurbineDto> updateTurbine(
+      @PathVariable(required = false) String parkId, @PathVariable String identifier, @RequestBody WindTurbinePatchDto patch) {
+    String park = parkId == null ? WindTurbine.DEFAULT_PARK_ID : parkId;
+    WindTurbineDto turbine = parkService.updateTurbine(park, identifier, patch);
+
+    logger.info("PATCH /api/turbines/{} - Updated turbine in park {} to {}", identifier, park, turbine);
+
+    return ResponseEntity.ok(turbine);
+  }
+
+  /**
+   * Import turbines from CSV rows of {@code identifier,capacity,productionCost}. The body is streamed, not buffered.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param body the request body
+   * @param chunkSize the number of rows per chunk, or the configured default if not given
+   * @return the import report along with an HTTP response
+   */
+  @PostMapping(value = "/import", consumes = "text/csv")
+  public ResponseEntity<ImportReportDto> importCsv(
+      @PathVariable(required = false) String parkId, InputStream body, @RequestParam(required = false) Integer chunkSize) {
+    return importTurbines(parkId, body, TurbineImportService.Format.CSV, chunkSize);
+  }
+
+  /**
+   * Import turbines from newline-delimited JSON objects. The body is streamed, not buffered.
+   *
+   * @param parkId the park identifier, or null for the default park
+   * @param body the request body
+   * @param chunkSize the number of rows per chunk, or the configured default if not given
+   * @return the import report along with an HTTP response
+   */
+  @PostMapping(value = "/import", consumes = "application/x-ndjson")
+  public ResponseEntity<ImportReportDto> importNdjson(
+      @PathVariable(required = false) String parkId, InputStream body, @RequestParam(required = false) Integer chunkSize) {
+    return importTurbines(parkId, body, TurbineImportService.Format.NDJSON, chunkSize);
+  }
+
+  private ResponseEntity<ImportReportDto> importTurbines(
+      String parkId, InputStream body, TurbineImportService.Format format, Integer chunkSize) {
+    String park = parkId == null ? WindTurbine.DEFAULT_PARK_ID : parkId;
+    ImportReportDto report = turbineImportService.importTurbines(park, body, format, chunkSize);
+
+    logger.info("POST /api/turbines/import - Imported {} turbines into park {}, rejected {}", report.rowsImported(), park, report.rowsRejected());
+
+    return ResponseEntity.ok(report);
+  }
+}
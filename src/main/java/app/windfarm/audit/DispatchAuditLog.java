@@ -0,0 +1,212 @@
+package app.windfarm.audit;
+
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.service.ParkState;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail of the dispatch decisions, i.e. which turbines a production plan runs at which market price and
+ * production target.
+ *
+ * <p>Recording a decision only publishes the plan, which is already compact, to a {@link DispatchRingBuffer}. A single
+ * writer thread takes the decisions off the buffer, lists the dispatched turbines and appends one line per decision to
+ * {@link RollingAuditFile}s, so neither formatting nor I/O happens on the request thread. Decisions are sampled at the
+ * configured rate, and when the buffer is full they are either dropped and counted, or the request waits for the writer.
+ * Lines are flushed to the operating system whenever the buffer runs empty, but not forced to disk.
+ */
+@Component
+public class DispatchAuditLog {
+
+  private static final Logger logger = LoggerFactory.getLogger(DispatchAuditLog.class);
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /** What a request does when the buffer is full. */
+  public enum Backpressure {
+    /** Drop the decision and count it in the {@code windfarm.audit.records} metric. */
+    DROP,
+    /** Wait until the writer has made room, so no decision is lost. */
+    WAIT
+  }
+
+  /** A dispatch decision as published to the buffer. */
+  private record DispatchRecord(long timeMillis, String parkId, ParkState state, PlanMode mode, ProductionPlan productionPlan) {}
+
+  private final ParkMetrics parkMetrics;
+  private final double sampleRate;
+  private final Backpressure backpressure;
+  private final DispatchRingBuffer<DispatchRecord> buffer;
+  private final RollingAuditFile file;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  /**
+   * Constructor for the dispatch audit log. Creates the first audit file and starts the writer thread if it is enabled.
+   *
+   * @param parkMetrics the park metrics
+   * @param enabled whether dispatch decisions are audited
+   * @param directory the directory of the audit files
+   * @param sampleRate the fraction of dispatch decisions to audit, between 0 and 1
+   * @param bufferSize the number of decisions the buffer holds, a power of two
+   * @param backpressure what a request does when the buffer is full
+   * @param maxFileSize the size after which the next audit file is started
+   * @param maxFiles the number of audit files to keep
+   * @throws IllegalArgumentException if a setting is out of range
+   * @throws UncheckedIOException if the audit file cannot be created
+   */
+  public DispatchAuditLog(ParkMetrics parkMetrics, @Value("${windfarm.audit.enabled:true}") boolean enabled,
+                          @Value("${windfarm.audit.directory:data/audit}") Path directory,
+                          @Value("${windfarm.audit.sample-rate:1.0}") double sampleRate,
+                          @Value("${windfarm.audit.buffer-size:4096}") int bufferSize,
+                          @Value("${windfarm.audit.backpressure:DROP}") Backpressure backpressure,
+                          @Value("${windfarm.audit.max-file-size:64MB}") DataSize maxFileSize,
+                          @Value("${windfarm.audit.max-files:10}") int maxFiles) {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("Audit sample rate must be between 0 and 1.");
+    }
+    if (maxFiles < 1) {
+      throw new IllegalArgumentException("At least one audit file must be kept.");
+    }
+    this.parkMetrics = parkMetrics;
+    this.sampleRate = sampleRate;
+    this.backpressure = backpressure;
+    if (!enabled || sampleRate == 0) {
+      this.buffer = null;
+      this.file = null;
+      this.writer = null;
+      return;
+    }
+
+    this.buffer = new DispatchRingBuffer<>(bufferSize);
+    try {
+      this.file = new RollingAuditFile(directory, maxFileSize.toBytes(), maxFiles);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Creating the dispatch audit log in " + directory + " failed", e);
+    }
+    this.writer = new Thread(this::writeLoop, "audit-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Audit a dispatch decision, if it is sampled.
+   *
+   * @param parkId the park identifier
+   * @param state the park state the plan was computed for
+   * @param mode how the online turbines were chosen
+   * @param productionPlan the production plan
+   */
+  public void record(String parkId, ParkState state, PlanMode mode, ProductionPlan productionPlan) {
+    if (buffer == null || closed || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return;
+    }
+
+    DispatchRecord record = new DispatchRecord(System.currentTimeMillis(), parkId, state, mode, productionPlan);
+    if (buffer.offer(record)) {
+      return;
+    }
+    // Only a full buffer wakes the writer, which otherwise polls between idle pauses
+    LockSupport.unpark(writer);
+    if (backpressure == Backpressure.WAIT) {
+      while (!closed) {
+        LockSupport.parkNanos(FULL_PARK_NANOS);
+        LockSupport.unpark(writer);
+        if (buffer.offer(record)) {
+          return;
+        }
+      }
+    }
+    parkMetrics.auditRecordDropped();
+  }
+
+  /**
+   * Write the decisions still in the buffer, close the audit file and stop the writer thread.
+   */
+  @PreDestroy
+  public void close() {
+    if (writer == null || closed) {
+      return;
+    }
+
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeLoop() {
+    try (file) {
+      while (true) {
+        DispatchRecord record = buffer.poll();
+        if (record != null) {
+          file.append(format(record));
+          parkMetrics.auditRecordWritten();
+          continue;
+        }
+
+        file.flush();
+        // Whatever was published before closing has been written once the buffer is seen empty after it
+        if (closed && buffer.isEmpty()) {
+          return;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    } catch (IOException e) {
+      closed = true;
+      logger.error("Writing the dispatch audit log failed, no further dispatch decisions will be audited", e);
+    }
+  }
+
+  /**
+   * Format a decision as one line of space separated fields, ending in the dispatched turbines in cost order with their
+   * expected production.
+   */
+  private static String format(DispatchRecord record) {
+    ParkState state = record.state();
+    ProductionPlan productionPlan = record.productionPlan();
+    FleetIndex fleet = productionPlan.fleet();
+    StringBuilder line = new StringBuilder(128 + 16 * productionPlan.onlineTurbines())
+        .append(Instant.ofEpochMilli(record.timeMillis()))
+        .append(" park=").append(record.parkId())
+        .append(" version=").append(state.version())
+        .append(" price=").append(state.marketPrice())
+        .append(" target=").append(state.productionTarget())
+        .append(" mode=").append(record.mode().name().toLowerCase())
+        .append(" online=").append(productionPlan.onlineTurbines())
+        .append(" production=").append(productionPlan.totalProduction())
+        .append(" dispatched=");
+
+    // A greedy plan runs a prefix of the ranks, any other plan is scanned in full
+    int end = productionPlan.selection() == null ? productionPlan.onlineTurbines() : fleet.size();
+    boolean first = true;
+    for (int rank = 0; rank < end; rank++) {
+      if (productionPlan.isOnlineAt(rank)) {
+        if (!first) {
+          line.append(',');
+        }
+        line.append(fleet.identifier(fleet.ordinalAt(rank))).append(':').append(fleet.capacityAt(rank));
+        first = false;
+      }
+    }
+    return line.toString();
+  }
+}
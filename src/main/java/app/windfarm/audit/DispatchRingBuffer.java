@@ -0,0 +1,90 @@
+package app.windfarm.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many publishing threads and a single consumer.
+ *
+ * <p>Each slot carries a sequence number that says whose turn it is: a publisher may fill slot {@code p & mask} once its
+ * sequence is {@code p}, and the consumer may take it once its sequence is {@code p + 1}. Publishers claim positions with
+ * a CAS on the tail, so a publish is one CAS and two stores, and a full buffer is detected without waiting.
+ *
+ * @param <T> the type of the elements
+ */
+final class DispatchRingBuffer<T> {
+
+  private final int mask;
+  private final AtomicReferenceArray<T> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private long head; // only accessed by the consumer
+
+  /**
+   * Constructor for the ring buffer.
+   *
+   * @param capacity the number of slots, a power of two
+   * @throws IllegalArgumentException if the capacity is not a positive power of two
+   */
+  DispatchRingBuffer(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Audit buffer size must be a positive power of two.");
+    }
+    this.mask = capacity - 1;
+    this.elements = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int slot = 0; slot < capacity; slot++) {
+      sequences.set(slot, slot);
+    }
+  }
+
+  /**
+   * Publish an element unless the buffer is full. Safe to call from any thread.
+   *
+   * @param element the element, not null
+   * @return true if the element was published, false if the buffer is full
+   */
+  boolean offer(T element) {
+    while (true) {
+      long position = tail.get();
+      int slot = (int) position & mask;
+      long sequence = sequences.get(slot);
+      if (sequence < position) {
+        // The consumer has not taken the element published here one lap ago
+        return false;
+      }
+      if (sequence == position && tail.compareAndSet(position, position + 1)) {
+        elements.lazySet(slot, element);
+        sequences.set(slot, position + 1);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Take the oldest published element. Must only be called from the consumer thread.
+   *
+   * @return the element, or null if none is published
+   */
+  T poll() {
+    int slot = (int) head & mask;
+    if (sequences.get(slot) != head + 1) {
+      return null;
+    }
+    T element = elements.get(slot);
+    elements.lazySet(slot, null);
+    sequences.lazySet(slot, head + mask + 1);
+    head++;
+    return element;
+  }
+
+  /**
+   * Check whether no published element is waiting. Must only be called from the consumer thread.
+   *
+   * @return true if {@link #poll()} would return null
+   */
+  boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+}
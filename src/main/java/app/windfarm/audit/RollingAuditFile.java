@@ -0,0 +1,127 @@
+package app.windfarm.audit;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * UTF-8 text file of audit lines in numbered files that rolls over to the next file at a size limit, keeping only the newest
+ * files. Each run starts a new file after the highest numbered one, so earlier runs are never appended to.
+ * Not thread-safe, it is only used by the writer thread of {@link DispatchAuditLog}.
+ */
+final class RollingAuditFile implements AutoCloseable {
+
+  private static final String FILE_PREFIX = "audit-";
+  private static final String FILE_SUFFIX = ".log";
+
+  private final Path directory;
+  private final long maxFileSize;
+  private final int maxFiles;
+  private OutputStream output;
+  private long number;
+  private long size;
+
+  /**
+   * Constructor for the rolling file. Creates the directory and the first file.
+   *
+   * @param directory the directory of the audit files
+   * @param maxFileSize the number of bytes after which the next file is started
+   * @param maxFiles the number of files to keep, including the current one
+   * @throws IOException if the directory or the file cannot be created
+   */
+  RollingAuditFile(Path directory, long maxFileSize, int maxFiles) throws IOException {
+    this.directory = directory;
+    this.maxFileSize = maxFileSize;
+    this.maxFiles = maxFiles;
+    Files.createDirectories(directory);
+    List<Long> numbers = numbers(directory);
+    this.number = numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1);
+    roll();
+  }
+
+  /**
+   * Append a line, starting the next file first if the current one is full.
+   *
+   * @param line the line, without a line separator
+   * @throws IOException if writing fails
+   */
+  void append(String line) throws IOException {
+    if (size >= maxFileSize) {
+      roll();
+    }
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    output.write(bytes);
+    output.write('\n');
+    size += bytes.length + 1;
+  }
+
+  /**
+   * Hand the buffered lines to the operating system.
+   *
+   * @throws IOException if writing fails
+   */
+  void flush() throws IOException {
+    output.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    output.close();
+  }
+
+  /**
+   * Get the path of an audit file.
+   *
+   * @param directory the directory of the audit files
+   * @param number the number of the file
+   * @return the path
+   */
+  static Path file(Path directory, long number) {
+    return directory.resolve(String.format("%s%016d%s", FILE_PREFIX, number, FILE_SUFFIX));
+  }
+
+  /**
+   * Get the numbers of the audit files in a directory.
+   *
+   * @param directory the directory of the audit files
+   * @return the file numbers, in ascending order
+   * @throws IOException if listing the directory fails
+   */
+  static List<Long> numbers(Path directory) throws IOException {
+    List<Long> numbers = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+          .map(name -> name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()))
+          .filter(number -> !number.isEmpty() && number.chars().allMatch(Character::isDigit))
+          .forEach(number -> numbers.add(Long.parseLong(number)));
+    }
+    Collections.sort(numbers);
+    return numbers;
+  }
+
+  /**
+   * Close the current file, start the next one and delete the oldest files beyond the limit.
+   */
+  private void roll() throws IOException {
+    if (output != null) {
+      output.close();
+    }
+    number++;
+    output = new BufferedOutputStream(Files.newOutputStream(file(directory, number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    size = 0;
+
+    List<Long> numbers = numbers(directory);
+    for (int i = 0; i < numbers.size() - maxFiles; i++) {
+      Files.deleteIfExists(file(directory, numbers.get(i)));
+    }
+  }
+}
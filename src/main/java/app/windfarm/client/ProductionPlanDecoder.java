@@ -0,0 +1,108 @@
+package app.windfarm.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client-side decoder of the binary production plan, served by {@code GET /api/production-plan} for
+ * {@code Accept: application/vnd.windfarm.plan.binary}. Uses only the JDK, so it can be copied into client code as is.
+ *
+ * <p>The layout is a header of big-endian numbers followed by one record per turbine, in identifier order. The numbers
+ * in the records are unsigned LEB128 varints: seven bits per byte, least significant first, with the high bit set on
+ * every byte but the last.
+ * <pre>
+ * magic "WFPL" | version u8 | flags u8 | fleet size i32 | turbines i32
+ * turbines × (identifier length varint | identifier UTF-8 | expected production varint)
+ * </pre>
+ * Bit 0 of the flags is set if turbines without expected production were left out.
+ */
+public final class ProductionPlanDecoder {
+
+  private static final int MAGIC = 0x5746504C;
+  private static final int VERSION = 1;
+
+  private ProductionPlanDecoder() {}
+
+  /**
+   * The expected production of the turbines in the plan as two arrays in the same order.
+   *
+   * @param fleetSize the number of turbines in the park, including any left out
+   * @param identifiers the identifiers of the turbines, in identifier order
+   * @param expectedProduction the expected production of each turbine in {@code identifiers}, in MWh
+   */
+  public record DecodedPlan(int fleetSize, String[] identifiers, int[] expectedProduction) {}
+
+  /**
+   * Decode a binary production plan.
+   *
+   * @param bytes the serialized plan
+   * @return the {@link DecodedPlan}
+   * @throws IllegalArgumentException if the bytes are not a complete binary production plan of a supported version
+   */
+  public static DecodedPlan decode(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IllegalArgumentException("Not a binary production plan.");
+      }
+      int version = buffer.get() & 0xFF;
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported binary production plan version " + version + ".");
+      }
+      buffer.get(); // Flags, not needed to decode
+
+      int fleetSize = buffer.getInt();
+      int turbines = buffer.getInt();
+      // Every turbine takes at least 2 bytes, which bounds the arrays by the input size
+      if (turbines < 0 || turbines > buffer.remaining() / 2) {
+        throw new IllegalArgumentException("Binary production plan is truncated.");
+      }
+
+      String[] identifiers = new String[turbines];
+      int[] expectedProduction = new int[turbines];
+      for (int i = 0; i < turbines; i++) {
+        int length = getVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+          throw new BufferUnderflowException();
+        }
+        identifiers[i] = new String(bytes, buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        expectedProduction[i] = getVarint(buffer);
+      }
+
+      return new DecodedPlan(fleetSize, identifiers, expectedProduction);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Binary production plan is truncated.", e);
+    }
+  }
+
+  /**
+   * Read an unsigned varint of up to 32 bits.
+   */
+  private static int getVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Binary production plan has a malformed number.");
+  }
+
+  /**
+   * Read and decode a binary production plan.
+   *
+   * @param input the stream of the serialized plan, read until the end but not closed
+   * @return the {@link DecodedPlan}
+   * @throws IOException if reading the stream fails
+   * @throws IllegalArgumentException if the stream does not hold a complete binary production plan of a supported version
+   */
+  public static DecodedPlan decode(InputStream input) throws IOException {
+    return decode(input.readAllBytes());
+  }
+}
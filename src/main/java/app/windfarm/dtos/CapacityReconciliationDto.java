@@ -0,0 +1,15 @@
+package app.windfarm.dtos;
+
+import java.util.List;
+
+/**
+ * Result of comparing the in-memory capacity counters with the turbines in the database.
+ *
+ * @param consistent whether the counters matched the database
+ * @param indexCapacity the total capacity of all parks according to the in-memory counters in MWh
+ * @param databaseCapacity the total capacity of all parks according to the database in MWh
+ * @param mismatchedParks the parks whose capacity differed
+ * @param mismatchedProductionCosts the production cost levels whose capacity differed in any park
+ */
+public record CapacityReconciliationDto(
+    boolean consistent, long indexCapacity, long databaseCapacity, List<String> mismatchedParks, List<Integer> mismatchedProductionCosts) {}
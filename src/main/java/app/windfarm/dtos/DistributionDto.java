@@ -0,0 +1,13 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the mean and percentiles of a quantity over the scenarios of a simulation.
+ *
+ * @param mean the mean over all scenarios
+ * @param p1 the 1st percentile
+ * @param p5 the 5th percentile
+ * @param p50 the median
+ * @param p95 the 95th percentile
+ * @param p99 the 99th percentile
+ */
+public record DistributionDto(double mean, double p1, double p5, double p50, double p95, double p99) {}
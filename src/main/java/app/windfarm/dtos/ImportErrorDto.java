@@ -0,0 +1,12 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents rows of a bulk import that were rejected.
+ * A row that cannot be parsed is reported on its own; a chunk that cannot be written is reported with its full line range.
+ *
+ * @param chunk the number of the chunk the rows belong to, starting at 1
+ * @param firstLine the first rejected line, starting at 1
+ * @param lastLine the last rejected line
+ * @param message the reason the rows were rejected
+ */
+public record ImportErrorDto(int chunk, long firstLine, long lastLine, String message) {}
@@ -0,0 +1,17 @@
+package app.windfarm.dtos;
+
+import java.util.List;
+
+/**
+ * Represents the outcome of a bulk import.
+ * Encapsulates the data sent by the API in response to import requests.
+ *
+ * @param rowsImported the number of turbines written to the database
+ * @param rowsRejected the number of rows that were not written
+ * @param chunks the number of chunks the rows were written in
+ * @param elapsedMillis the duration of the import in milliseconds
+ * @param rowsPerSecond the number of rows processed per second
+ * @param errors the rejected rows and chunks, truncated if there are many
+ */
+public record ImportReportDto(
+    long rowsImported, long rowsRejected, int chunks, long elapsedMillis, double rowsPerSecond, List<ImportErrorDto> errors) {}
@@ -0,0 +1,11 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the expected production of the turbines as two arrays in the same order.
+ * Encapsulates the data sent by the API in response to GET requests for the production plan in the columnar format.
+ *
+ * @param fleetSize the number of turbines in the park, including any left out
+ * @param identifiers the identifiers of the turbines, in identifier order
+ * @param expectedProduction the expected production of each turbine in {@code identifiers}, in MWh
+ */
+public record PlanColumnsDto(int fleetSize, String[] identifiers, int[] expectedProduction) {}
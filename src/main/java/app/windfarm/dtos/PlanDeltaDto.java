@@ -0,0 +1,13 @@
+package app.windfarm.dtos;
+
+import java.util.List;
+
+/**
+ * Change of the production plan of a park, sent to event stream subscribers.
+ *
+ * @param version the version of the park state the plan was computed for
+ * @param fleetVersion the version of the fleet the plan was computed for
+ * @param snapshot true if the event lists every turbine, false if it lists only the turbines whose expected production changed
+ * @param turbines the turbines with their new expected production
+ */
+public record PlanDeltaDto(long version, long fleetVersion, boolean snapshot, List<WindTurbineOutputDto> turbines) {}
@@ -0,0 +1,14 @@
+package app.windfarm.dtos;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Represents the latency summary of a profiler recording of the production plan stages.
+ * Encapsulates the data sent by the API in response to stopping the profiler.
+ *
+ * @param startedAt when the recording started
+ * @param stoppedAt when the recording stopped
+ * @param stages the summary of each stage that was recorded, in pipeline order
+ */
+public record PlanProfileDto(Instant startedAt, Instant stoppedAt, List<PlanStageProfileDto> stages) {}
@@ -0,0 +1,10 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents a candidate market price and production target to compute a production plan for.
+ * Encapsulates the data received by the API in what-if requests.
+ *
+ * @param marketPrice the candidate market price
+ * @param productionTarget the candidate production target in MWh
+ */
+public record PlanScenarioDto(int marketPrice, int productionTarget) {}
@@ -0,0 +1,18 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the latencies recorded for one stage of computing the production plan.
+ *
+ * @param stage the name of the stage
+ * @param count the number of times the stage ran
+ * @param totalMillis the time spent in the stage in milliseconds
+ * @param meanMicros the mean latency in microseconds
+ * @param p50Micros the median latency in microseconds
+ * @param p99Micros the 99th percentile latency in microseconds
+ * @param maxMicros the highest latency in microseconds
+ * @param maxFleetSize the largest fleet the stage ran for
+ * @param lastStateVersion the highest park state version the stage ran for
+ */
+public record PlanStageProfileDto(
+    String stage, long count, double totalMillis, double meanMicros, double p50Micros, double p99Micros, double maxMicros,
+    int maxFleetSize, long lastStateVersion) {}
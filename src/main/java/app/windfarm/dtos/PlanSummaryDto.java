@@ -0,0 +1,14 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the summary of the production plan for a candidate market price and production target.
+ * Encapsulates the data sent by the API in response to what-if requests.
+ *
+ * @param marketPrice the candidate market price
+ * @param productionTarget the candidate production target in MWh
+ * @param onlineTurbines the number of turbines that would run
+ * @param totalProduction the expected production of the park in MWh
+ * @param marginalTurbine the identifier of the most expensive turbine that would run, or null if none would
+ */
+public record PlanSummaryDto(
+    int marketPrice, int productionTarget, int onlineTurbines, long totalProduction, String marginalTurbine) {}
@@ -0,0 +1,15 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the outcome of ingesting a stream of market price ticks.
+ * Encapsulates the data sent by the API in response to price feed requests.
+ *
+ * @param ticksAccepted the number of ticks that became the pending price
+ * @param ticksStale the number of ticks rejected because their sequence number was not above the last accepted one
+ * @param ticksMalformed the number of lines that were not a valid tick
+ * @param lastSequence the sequence number of the last accepted tick, or -1 if none was accepted
+ * @param elapsedMillis the duration of the ingestion in milliseconds
+ * @param ticksPerSecond the number of ticks processed per second
+ */
+public record PriceFeedReportDto(
+    long ticksAccepted, long ticksStale, long ticksMalformed, long lastSequence, long elapsedMillis, double ticksPerSecond) {}
@@ -0,0 +1,11 @@
+package app.windfarm.dtos;
+
+import java.time.Instant;
+
+/**
+ * Represents a running profiler recording of the production plan stages.
+ *
+ * @param startedAt when the recording started
+ * @param stopsAt when the recording stops on its own unless it is stopped before
+ */
+public record ProfilerRecordingDto(Instant startedAt, Instant stopsAt) {}
@@ -0,0 +1,11 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the expected production of every turbine in every interval of a schedule.
+ * Encapsulates the data sent by the API in response to schedule requests.
+ *
+ * @param identifiers the identifiers of the turbines, in the order of the matrix rows
+ * @param intervals the number of intervals, i.e., the length of each matrix row
+ * @param expectedProduction matrix with a row per turbine and a column per interval, in MWh
+ */
+public record ScheduleDto(String[] identifiers, int intervals, int[][] expectedProduction) {}
@@ -0,0 +1,10 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the market price and production target of each interval of a schedule, e.g. the 96 quarter hours of a day.
+ * Encapsulates the data received by the API in schedule requests.
+ *
+ * @param marketPrices the market price of each interval
+ * @param productionTargets the production target of each interval in MWh
+ */
+public record ScheduleRequestDto(int[] marketPrices, int[] productionTargets) {}
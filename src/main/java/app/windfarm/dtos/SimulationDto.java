@@ -0,0 +1,18 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents the distribution of the production delivered by the production plan when the wind varies.
+ * Encapsulates the data sent by the API in response to simulation requests.
+ *
+ * @param scenarios the number of simulated scenarios
+ * @param seed the seed of the random generator, which reproduces the result when sent again
+ * @param marketPrice the market price the turbines were dispatched at
+ * @param productionTarget the production target in MWh
+ * @param plannedProduction the production of the plan at full capacity in MWh
+ * @param production the distribution of the delivered production in MWh
+ * @param shortfall the distribution of the production missing to reach the target in MWh
+ * @param elapsedMillis the duration of the simulation in milliseconds
+ */
+public record SimulationDto(
+    int scenarios, long seed, int marketPrice, int productionTarget, long plannedProduction,
+    DistributionDto production, DistributionDto shortfall, long elapsedMillis) {}
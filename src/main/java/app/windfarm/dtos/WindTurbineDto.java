@@ -0,0 +1,24 @@
+package app.windfarm.dtos;
+
+import app.windfarm.entities.WindTurbine;
+
+/**
+ * Represents the stored values of a wind turbine.
+ *
+ * @param identifier the unique identifier of the turbine
+ * @param capacity the capacity of the turbine in MWh
+ * @param productionCost the production cost of the turbine in €/MWh
+ * @param available whether the turbine can be dispatched
+ */
+public record WindTurbineDto(String identifier, int capacity, int productionCost, boolean available) {
+
+  /**
+   * Copy the values of the given turbine entity.
+   *
+   * @param turbine the turbine entity
+   * @return the turbine values
+   */
+  public static WindTurbineDto of(WindTurbine turbine) {
+    return new WindTurbineDto(turbine.getIdentifier(), turbine.getCapacity(), turbine.getProductionCost(), turbine.isAvailable());
+  }
+}
@@ -0,0 +1,11 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents a wind turbine to add to the park.
+ * Encapsulates the data received by the API in each row of a bulk import.
+ *
+ * @param identifier the unique identifier of the turbine
+ * @param capacity the capacity of the turbine in MWh
+ * @param productionCost the production cost of the turbine in €/MWh
+ */
+public record WindTurbineInputDto(String identifier, int capacity, int productionCost) {}
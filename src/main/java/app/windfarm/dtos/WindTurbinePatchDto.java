@@ -0,0 +1,11 @@
+package app.windfarm.dtos;
+
+/**
+ * Represents a partial update of a wind turbine.
+ * Fields that are not given keep their current value.
+ *
+ * @param capacity the new capacity of the turbine in MWh, or null
+ * @param productionCost the new production cost of the turbine in €/MWh, or null
+ * @param available whether the turbine can be dispatched, or null
+ */
+public record WindTurbinePatchDto(Integer capacity, Integer productionCost, Boolean available) {}
@@ -1,32 +1,64 @@
 package app.windfarm.entities;
 
+import app.windfarm.fleet.WindTurbineIndexListener;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
 
 /** Object representing a wind turbine. */
 @Entity
+@IdClass(WindTurbineId.class)
+@EntityListeners(WindTurbineIndexListener.class)
 public class WindTurbine {
 
+  /** The park of turbines created without one, and of the endpoints without a park in their path. */
+  public static final String DEFAULT_PARK_ID = "default";
+
+  private @Id String parkId;
   private @Id String identifier;
   private int capacity;
   private int productionCost;
+  private boolean available = true;
 
   // no-arg constructor for Spring Boot
   protected WindTurbine() {}
 
   /**
-   * Constructor for a wind turbine.
+   * Constructor for a wind turbine in the default park.
    *
    * @param identifier the unique identifier of the turbine
    * @param capacity the capacity of the turbine
    * @param productionCost the production cost of the turbine
    */
   public WindTurbine(String identifier, int capacity, int productionCost) {
+    this(DEFAULT_PARK_ID, identifier, capacity, productionCost);
+  }
+
+  /**
+   * Constructor for a wind turbine.
+   *
+   * @param parkId the identifier of the park the turbine belongs to
+   * @param identifier the identifier of the turbine, unique within the park
+   * @param capacity the capacity of the turbine
+   * @param productionCost the production cost of the turbine
+   */
+  public WindTurbine(String parkId, String identifier, int capacity, int productionCost) {
+    this.parkId = parkId;
     this.identifier = identifier;
     this.capacity = capacity;
     this.productionCost = productionCost;
   }
 
+  /**
+   * Get the identifier of the park the turbine belongs to.
+   *
+   * @return the park identifier
+   */
+  public String getParkId() {
+    return parkId;
+  }
+
   /**
    * Get the identifier of the turbine.
    *
@@ -53,4 +85,41 @@ public class WindTurbine {
   public int getProductionCost() {
     return productionCost;
   }
+
+  /**
+   * Check whether the turbine is available for dispatch. Unavailable turbines, e.g. under maintenance, stay in the park
+   * but are never planned to produce.
+   *
+   * @return true if the turbine can be dispatched
+   */
+  public boolean isAvailable() {
+    return available;
+  }
+
+  /**
+   * Set the capacity of the turbine.
+   *
+   * @param capacity the capacity measured in MWh
+   */
+  public void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Set the production cost of the turbine.
+   *
+   * @param productionCost the production cost measured in €/MWh
+   */
+  public void setProductionCost(int productionCost) {
+    this.productionCost = productionCost;
+  }
+
+  /**
+   * Set whether the turbine is available for dispatch.
+   *
+   * @param available true if the turbine can be dispatched
+   */
+  public void setAvailable(boolean available) {
+    this.available = available;
+  }
 }
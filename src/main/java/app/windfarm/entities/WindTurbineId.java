@@ -0,0 +1,53 @@
+package app.windfarm.entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/** Primary key of a {@link WindTurbine}: identifiers are unique within a park. */
+public class WindTurbineId implements Serializable {
+
+  private String parkId;
+  private String identifier;
+
+  // no-arg constructor for Spring Boot
+  protected WindTurbineId() {}
+
+  /**
+   * Constructor for a wind turbine key.
+   *
+   * @param parkId the identifier of the park
+   * @param identifier the identifier of the turbine within the park
+   */
+  public WindTurbineId(String parkId, String identifier) {
+    this.parkId = parkId;
+    this.identifier = identifier;
+  }
+
+  /**
+   * Get the identifier of the park.
+   *
+   * @return the park identifier
+   */
+  public String getParkId() {
+    return parkId;
+  }
+
+  /**
+   * Get the identifier of the turbine within the park.
+   *
+   * @return the turbine identifier
+   */
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof WindTurbineId other && Objects.equals(parkId, other.parkId) && Objects.equals(identifier, other.identifier);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(parkId, identifier);
+  }
+}
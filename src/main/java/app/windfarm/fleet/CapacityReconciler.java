@@ -0,0 +1,118 @@
+package app.windfarm.fleet;
+
+import app.windfarm.dtos.CapacityReconciliationDto;
+import app.windfarm.repository.CostLevelCapacity;
+import app.windfarm.repository.WindTurbineRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Periodically checks the incrementally maintained capacity counters against the database.
+ * If they have drifted, the fleet indexes are rebuilt from the database.
+ */
+@Component
+public class CapacityReconciler {
+
+  private static final Logger logger = LoggerFactory.getLogger(CapacityReconciler.class);
+
+  private final WindTurbineRepository windTurbineRepository;
+  private final FleetIndexManager fleetIndexManager;
+
+  /**
+   * Constructor for the capacity reconciler.
+   *
+   * @param windTurbineRepository the wind turbine repository
+   * @param fleetIndexManager the manager of the in-memory fleet index
+   */
+  public CapacityReconciler(WindTurbineRepository windTurbineRepository, FleetIndexManager fleetIndexManager) {
+    this.windTurbineRepository = windTurbineRepository;
+    this.fleetIndexManager = fleetIndexManager;
+  }
+
+  /**
+   * Run the check on the configured interval.
+   */
+  @Scheduled(
+      initialDelayString = "${windfarm.capacity.reconcile-interval:PT5M}",
+      fixedDelayString = "${windfarm.capacity.reconcile-interval:PT5M}"
+  )
+  public void scheduledReconcile() {
+    reconcile();
+  }
+
+  /**
+   * Compare the capacity counters of the current fleet index of every park with the database, and rebuild the indexes
+   * of the parks that differ.
+   *
+   * <p>The counters and the database are read one after the other, so a write that commits in between looks like drift
+   * until it is published. The parks that differ are therefore checked again under the lock of each park, and only
+   * those whose turbines still differ from the database are rebuilt and reported.
+   *
+   * @return the result of the comparison
+   */
+  public CapacityReconciliationDto reconcile() {
+    Map<String, FleetCapacity> indexCapacities = new TreeMap<>();
+    for (String parkId : fleetIndexManager.parkIds()) {
+      indexCapacities.put(parkId, fleetIndexManager.current(parkId).capacity());
+    }
+
+    Map<String, FleetCapacity.Builder> builders = new TreeMap<>();
+    for (CostLevelCapacity level : windTurbineRepository.sumCapacityByProductionCost()) {
+      builders.computeIfAbsent(level.getParkId(), k -> FleetCapacity.empty().toBuilder()).add(level.getProductionCost(), level.getCapacity());
+    }
+
+    Set<String> parkIds = new TreeSet<>(indexCapacities.keySet());
+    parkIds.addAll(builders.keySet());
+    Map<String, List<Integer>> suspectedParks = new TreeMap<>();
+    long indexTotal = 0;
+    long databaseTotal = 0;
+
+    for (String parkId : parkIds) {
+      FleetCapacity indexCapacity = indexCapacities.getOrDefault(parkId, FleetCapacity.empty());
+      FleetCapacity.Builder builder = builders.get(parkId);
+      FleetCapacity databaseCapacity = builder == null ? FleetCapacity.empty() : builder.build();
+      indexTotal += indexCapacity.total();
+      databaseTotal += databaseCapacity.total();
+
+      List<Integer> mismatches = findMismatches(indexCapacity.byProductionCost(), databaseCapacity.byProductionCost());
+      if (!mismatches.isEmpty() || indexCapacity.total() != databaseCapacity.total()) {
+        suspectedParks.put(parkId, mismatches);
+      }
+    }
+
+    Set<String> reloadedParks = suspectedParks.isEmpty() ? Set.of() : fleetIndexManager.reload(suspectedParks.keySet());
+    List<String> mismatchedParks = List.copyOf(reloadedParks);
+    Set<Integer> mismatchedProductionCosts = new TreeSet<>();
+    reloadedParks.forEach(parkId -> mismatchedProductionCosts.addAll(suspectedParks.get(parkId)));
+
+    boolean consistent = mismatchedParks.isEmpty();
+    if (consistent) {
+      logger.debug("Capacity counters of {} parks match the database: {}MWh, {} parks rechecked after concurrent writes",
+          parkIds.size(), indexTotal, suspectedParks.size());
+    } else {
+      logger.warn("Capacity counters drifted from the database ({}MWh in memory, {}MWh in database, parks {}, cost levels {}). Rebuilt their fleet indexes.",
+          indexTotal, databaseTotal, mismatchedParks, mismatchedProductionCosts);
+    }
+
+    return new CapacityReconciliationDto(consistent, indexTotal, databaseTotal, mismatchedParks, List.copyOf(mismatchedProductionCosts));
+  }
+
+  /**
+   * Get the production cost levels whose capacity differs between the two maps.
+   */
+  private static List<Integer> findMismatches(Map<Integer, Long> expected, Map<Integer, Long> actual) {
+    TreeSet<Integer> productionCosts = new TreeSet<>(expected.keySet());
+    productionCosts.addAll(actual.keySet());
+    return productionCosts.stream()
+        .filter(productionCost -> !expected.getOrDefault(productionCost, 0L).equals(actual.getOrDefault(productionCost, 0L)))
+        .toList();
+  }
+}
@@ -0,0 +1,413 @@
+package app.windfarm.fleet;
+
+import java.util.Arrays;
+
+/**
+ * Persistent treap of a fleet in dispatch order: available turbines before unavailable ones, each by production cost
+ * with ties broken by ordinal. Every node holds the turbine count and the capacity of its subtree, so ranks and
+ * cumulative capacities are found in O(log n) without the arrays of {@link FleetIndex}.
+ *
+ * <p>Changing a turbine copies only the nodes on its path and one chunk of the table of values by ordinal, so each
+ * version shares almost all of its structure with the previous one, which stays valid for the readers still holding it.
+ * The priority of a node is a hash of its ordinal, so the shape of the tree does not depend on the order of changes.
+ */
+final class CostTree {
+
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+  private static final long UNAVAILABLE = Long.MIN_VALUE;
+
+  private final Node root;
+  private final long[][] values; // ordinal -> packed capacity, production cost and availability, in chunks
+
+  /** A turbine and the totals of the subtree it is the root of. */
+  private static final class Node {
+    final int ordinal;
+    final int capacity;
+    final int productionCost;
+    final boolean available;
+    final Node left;
+    final Node right;
+    final int count;
+    final long capacitySum;
+
+    Node(int ordinal, int capacity, int productionCost, boolean available, Node left, Node right) {
+      this.ordinal = ordinal;
+      this.capacity = capacity;
+      this.productionCost = productionCost;
+      this.available = available;
+      this.left = left;
+      this.right = right;
+      this.count = 1 + count(left) + count(right);
+      this.capacitySum = capacity + capacitySum(left) + capacitySum(right);
+    }
+
+    Node with(Node left, Node right) {
+      return new Node(ordinal, capacity, productionCost, available, left, right);
+    }
+  }
+
+  private CostTree(Node root, long[][] values) {
+    this.root = root;
+    this.values = values;
+  }
+
+  /**
+   * Build the tree from columns in dispatch order in O(n).
+   *
+   * @param capacities the capacities by rank, not negative
+   * @param productionCosts the production costs by rank
+   * @param ordinals the ordinal of each rank
+   * @param availableCount the number of available turbines, which take the lowest ranks
+   * @return the tree
+   * @throws IllegalArgumentException if a capacity is negative
+   */
+  static CostTree build(int[] capacities, int[] productionCosts, int[] ordinals, int availableCount) {
+    int size = ordinals.length;
+    long[][] values = new long[(size + CHUNK_MASK) >>> CHUNK_BITS][];
+    for (int chunk = 0; chunk < values.length; chunk++) {
+      values[chunk] = new long[Math.min(CHUNK_MASK + 1, size - (chunk << CHUNK_BITS))];
+    }
+    for (int rank = 0; rank < size; rank++) {
+      int ordinal = ordinals[rank];
+      values[ordinal >>> CHUNK_BITS][ordinal & CHUNK_MASK] = pack(capacities[rank], productionCosts[rank], rank < availableCount);
+    }
+
+    // The ranks are already in key order, so the treap is their Cartesian tree by priority, built along its right spine
+    int[] left = new int[size];
+    int[] right = new int[size];
+    int[] stack = new int[size];
+    Arrays.fill(right, -1);
+    int depth = 0;
+    for (int rank = 0; rank < size; rank++) {
+      int last = -1;
+      while (depth > 0 && priority(ordinals[rank]) > priority(ordinals[stack[depth - 1]])) {
+        last = stack[--depth];
+      }
+      left[rank] = last;
+      if (depth > 0) {
+        right[stack[depth - 1]] = rank;
+      }
+      stack[depth++] = rank;
+    }
+    if (depth == 0) {
+      return new CostTree(null, values);
+    }
+
+    // Create the nodes children first, marking a rank whose children are done by its complement
+    int rootRank = stack[0];
+    Node[] nodes = new Node[size];
+    int top = 0;
+    stack[top++] = rootRank;
+    while (top > 0) {
+      int item = stack[--top];
+      if (item < 0) {
+        int rank = ~item;
+        nodes[rank] = new Node(ordinals[rank], capacities[rank], productionCosts[rank], rank < availableCount,
+            left[rank] < 0 ? null : nodes[left[rank]], right[rank] < 0 ? null : nodes[right[rank]]);
+      } else {
+        stack[top++] = ~item;
+        if (right[item] >= 0) {
+          stack[top++] = right[item];
+        }
+        if (left[item] >= 0) {
+          stack[top++] = left[item];
+        }
+      }
+    }
+    return new CostTree(nodes[rootRank], values);
+  }
+
+  /**
+   * Change the values of a turbine in O(log n).
+   *
+   * @param ordinal the ordinal of the turbine
+   * @param capacity the new capacity, not negative
+   * @param productionCost the new production cost
+   * @param available whether the turbine can be dispatched
+   * @return the changed tree, this tree is left as it was
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  CostTree update(int ordinal, int capacity, int productionCost, boolean available) {
+    long packed = pack(capacity, productionCost, available);
+    Node root = remove(this.root, ordinal, productionCost(ordinal), available(ordinal));
+    root = insert(root, new Node(ordinal, capacity, productionCost, available, null, null));
+
+    long[][] values = this.values.clone();
+    int chunk = ordinal >>> CHUNK_BITS;
+    values[chunk] = values[chunk].clone();
+    values[chunk][ordinal & CHUNK_MASK] = packed;
+    return new CostTree(root, values);
+  }
+
+  /**
+   * Get the capacity of a turbine.
+   *
+   * @param ordinal the ordinal of the turbine
+   * @return the capacity measured in MWh
+   */
+  int capacity(int ordinal) {
+    return (int) (value(ordinal) >>> 32) & Integer.MAX_VALUE;
+  }
+
+  /**
+   * Get the production cost of a turbine.
+   *
+   * @param ordinal the ordinal of the turbine
+   * @return the production cost measured in €/MWh
+   */
+  int productionCost(int ordinal) {
+    return (int) value(ordinal);
+  }
+
+  /**
+   * Check whether a turbine can be dispatched.
+   *
+   * @param ordinal the ordinal of the turbine
+   * @return true if the turbine is available
+   */
+  boolean available(int ordinal) {
+    return (value(ordinal) & UNAVAILABLE) == 0;
+  }
+
+  /**
+   * Find the turbines whose values differ from those in an earlier tree of the same turbines. Chunks of the table of
+   * values that are shared with the earlier tree are skipped, so a tree derived by a few updates is compared in
+   * O(n / 1024) plus the size of the copied chunks.
+   *
+   * @param previous the earlier tree, with the same number of turbines
+   * @return the ordinals of the changed turbines in ascending order
+   */
+  int[] changedOrdinals(CostTree previous) {
+    int[] changed = new int[16];
+    int count = 0;
+    for (int chunk = 0; chunk < values.length; chunk++) {
+      long[] current = values[chunk];
+      long[] before = previous.values[chunk];
+      if (current == before) {
+        continue;
+      }
+      for (int index = 0; index < current.length; index++) {
+        if (current[index] != before[index]) {
+          if (count == changed.length) {
+            changed = Arrays.copyOf(changed, 2 * count);
+          }
+          changed[count++] = chunk << CHUNK_BITS | index;
+        }
+      }
+    }
+    return Arrays.copyOf(changed, count);
+  }
+
+  /**
+   * Count the available turbines with a production cost strictly below the given price.
+   *
+   * @param price the price limit
+   * @return the number of turbines
+   */
+  int countCheaperThan(int price) {
+    int count = 0;
+    Node node = root;
+    while (node != null) {
+      if (node.available && node.productionCost < price) {
+        count += count(node.left) + 1;
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Get the combined capacity of all turbines.
+   *
+   * @return the total capacity measured in MWh
+   */
+  long totalCapacity() {
+    return capacitySum(root);
+  }
+
+  /**
+   * Get the combined capacity of the turbines ranked below the given rank.
+   *
+   * @param rank the rank to sum up to (exclusive)
+   * @return the cumulative capacity measured in MWh
+   */
+  long cumulativeCapacity(int rank) {
+    long sum = 0;
+    int remaining = rank;
+    Node node = root;
+    while (node != null && remaining > 0) {
+      int leftCount = count(node.left);
+      if (remaining <= leftCount) {
+        node = node.left;
+      } else {
+        sum += capacitySum(node.left) + node.capacity;
+        remaining -= leftCount + 1;
+        node = node.right;
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Find the longest run of cheapest turbines whose combined capacity does not exceed the given limit.
+   *
+   * @param capacityLimit the capacity limit
+   * @param maxRank the highest number of turbines to consider
+   * @return the largest rank between 0 and maxRank whose cumulative capacity is at most the limit
+   */
+  int countWithinCapacity(long capacityLimit, int maxRank) {
+    // Capacities are not negative, so the cumulative capacity only grows with the rank
+    int rank = 0;
+    long sum = 0;
+    Node node = root;
+    while (node != null) {
+      long leftSum = sum + capacitySum(node.left);
+      if (leftSum > capacityLimit) {
+        node = node.left;
+      } else if (leftSum + node.capacity > capacityLimit) {
+        rank += count(node.left);
+        break;
+      } else {
+        rank += count(node.left) + 1;
+        sum = leftSum + node.capacity;
+        node = node.right;
+      }
+    }
+    return Math.min(rank, maxRank);
+  }
+
+  /**
+   * Copy the turbines into columns by rank with an in-order walk, which needs no sorting.
+   *
+   * @param capacities the array to fill with the capacities by rank
+   * @param productionCosts the array to fill with the production costs by rank
+   * @param ordinals the array to fill with the ordinal of each rank
+   */
+  void fill(int[] capacities, int[] productionCosts, int[] ordinals) {
+    Node[] stack = new Node[64];
+    int depth = 0;
+    int rank = 0;
+    Node node = root;
+    while (node != null || depth > 0) {
+      while (node != null) {
+        if (depth == stack.length) {
+          stack = Arrays.copyOf(stack, 2 * depth);
+        }
+        stack[depth++] = node;
+        node = node.left;
+      }
+      node = stack[--depth];
+      capacities[rank] = node.capacity;
+      productionCosts[rank] = node.productionCost;
+      ordinals[rank] = node.ordinal;
+      rank++;
+      node = node.right;
+    }
+  }
+
+  private long value(int ordinal) {
+    return values[ordinal >>> CHUNK_BITS][ordinal & CHUNK_MASK];
+  }
+
+  private static long pack(int capacity, int productionCost, boolean available) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Turbine capacity must not be negative.");
+    }
+    return (available ? 0 : UNAVAILABLE) | (long) capacity << 32 | productionCost & 0xFFFFFFFFL;
+  }
+
+  private static Node insert(Node node, Node added) {
+    if (node == null) {
+      return added;
+    }
+    if (priority(added.ordinal) > priority(node.ordinal)) {
+      Node[] parts = split(node, added);
+      return added.with(parts[0], parts[1]);
+    }
+    return compare(added, node) < 0
+        ? node.with(insert(node.left, added), node.right)
+        : node.with(node.left, insert(node.right, added));
+  }
+
+  private static Node remove(Node node, int ordinal, int productionCost, boolean available) {
+    if (node == null) {
+      throw new IllegalStateException("Turbine " + ordinal + " is missing from the cost tree.");
+    }
+    if (node.ordinal == ordinal) {
+      return merge(node.left, node.right);
+    }
+    int order = available != node.available ? (available ? -1 : 1)
+        : productionCost != node.productionCost ? Integer.compare(productionCost, node.productionCost)
+        : Integer.compare(ordinal, node.ordinal);
+    return order < 0
+        ? node.with(remove(node.left, ordinal, productionCost, available), node.right)
+        : node.with(node.left, remove(node.right, ordinal, productionCost, available));
+  }
+
+  /**
+   * Split a subtree into the nodes before and after the given key, which is not in it.
+   */
+  private static Node[] split(Node node, Node key) {
+    if (node == null) {
+      return new Node[2];
+    }
+    if (compare(node, key) < 0) {
+      Node[] parts = split(node.right, key);
+      parts[0] = node.with(node.left, parts[0]);
+      return parts;
+    }
+    Node[] parts = split(node.left, key);
+    parts[1] = node.with(parts[1], node.right);
+    return parts;
+  }
+
+  /**
+   * Join two subtrees where every node of the first comes before every node of the second.
+   */
+  private static Node merge(Node first, Node second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (priority(first.ordinal) > priority(second.ordinal)) {
+      return first.with(first.left, merge(first.right, second));
+    }
+    return second.with(merge(first, second.left), second.right);
+  }
+
+  private static int compare(Node a, Node b) {
+    if (a.available != b.available) {
+      return a.available ? -1 : 1;
+    }
+    if (a.productionCost != b.productionCost) {
+      return Integer.compare(a.productionCost, b.productionCost);
+    }
+    return Integer.compare(a.ordinal, b.ordinal);
+  }
+
+  /**
+   * Hash an ordinal to its priority with the MurmurHash3 finalizer, which is a bijection, so no two nodes tie.
+   */
+  private static int priority(int ordinal) {
+    int hash = ordinal;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  private static int count(Node node) {
+    return node == null ? 0 : node.count;
+  }
+
+  private static long capacitySum(Node node) {
+    return node == null ? 0 : node.capacitySum;
+  }
+}
@@ -0,0 +1,121 @@
+package app.windfarm.fleet;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Immutable capacity counters of a fleet: the total capacity and the capacity per production cost level.
+ * They are summed up from a fleet index or from the database, one turbine or cost level at a time.
+ */
+public final class FleetCapacity {
+
+  private static final FleetCapacity EMPTY = new FleetCapacity(0, Collections.emptyNavigableMap());
+
+  private final long total;
+  private final NavigableMap<Integer, Long> byProductionCost;
+
+  private FleetCapacity(long total, NavigableMap<Integer, Long> byProductionCost) {
+    this.total = total;
+    this.byProductionCost = byProductionCost;
+  }
+
+  /**
+   * Get counters for an empty fleet.
+   *
+   * @return the empty counters
+   */
+  public static FleetCapacity empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Get the total capacity.
+   *
+   * @return the sum of all turbine capacities measured in MWh
+   */
+  public long total() {
+    return total;
+  }
+
+  /**
+   * Get the capacity per production cost level.
+   *
+   * @return unmodifiable map from production cost to the combined capacity of the turbines with that cost, without empty levels
+   */
+  public NavigableMap<Integer, Long> byProductionCost() {
+    return byProductionCost;
+  }
+
+  /**
+   * Start deriving new counters from these ones.
+   *
+   * @return a builder holding a copy of these counters
+   */
+  public Builder toBuilder() {
+    return new Builder(total, byProductionCost);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof FleetCapacity other && total == other.total && byProductionCost.equals(other.byProductionCost);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(total, byProductionCost);
+  }
+
+  @Override
+  public String toString() {
+    return "FleetCapacity[total=" + total + ", byProductionCost=" + byProductionCost + "]";
+  }
+
+  /** Mutable builder adjusting the counters one turbine at a time. */
+  public static final class Builder {
+
+    private long total;
+    private final TreeMap<Integer, Long> byProductionCost;
+
+    private Builder(long total, NavigableMap<Integer, Long> byProductionCost) {
+      this.total = total;
+      this.byProductionCost = new TreeMap<>(byProductionCost);
+    }
+
+    /**
+     * Add the given capacity at the given production cost level.
+     *
+     * @param productionCost the production cost
+     * @param capacity the capacity to add, negative to remove
+     * @return this builder
+     */
+    public Builder add(int productionCost, long capacity) {
+      if (capacity == 0) {
+        return this;
+      }
+      total += capacity;
+      byProductionCost.merge(productionCost, capacity, (a, b) -> a + b == 0 ? null : a + b);
+      return this;
+    }
+
+    /**
+     * Add the capacity of the given turbine.
+     *
+     * @param entry the turbine, ignored if null
+     * @return this builder
+     */
+    public Builder add(FleetEntry entry) {
+      return entry == null ? this : add(entry.productionCost(), entry.capacity());
+    }
+
+    /**
+     * Build the counters.
+     *
+     * @return the immutable counters
+     */
+    public FleetCapacity build() {
+      return new FleetCapacity(total, Collections.unmodifiableNavigableMap(new TreeMap<>(byProductionCost)));
+    }
+  }
+}
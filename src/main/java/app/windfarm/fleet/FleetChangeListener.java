@@ -0,0 +1,22 @@
+package app.windfarm.fleet;
+
+import java.util.Map;
+
+/** Receives the committed turbine changes of every park from the {@link FleetIndexManager}, before they are published. */
+public interface FleetChangeListener {
+
+  /**
+   * Called with the changes to a park that are about to be published. Calls for the same park are made in publication
+   * order while its index is locked, so the listener must not block.
+   *
+   * @param parkId the park identifier
+   * @param changes unmodifiable map from turbine identifier to new values, or to null for removed turbines
+   */
+  void changed(String parkId, Map<String, FleetEntry> changes);
+
+  /**
+   * Called on the committing thread once its changes have been published and no index is locked any more.
+   * Does nothing by default.
+   */
+  default void changesPublished() {}
+}
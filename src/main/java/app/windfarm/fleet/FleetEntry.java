@@ -0,0 +1,35 @@
+package app.windfarm.fleet;
+
+import app.windfarm.entities.WindTurbine;
+
+/**
+ * Plain value copy of a wind turbine used to build a {@link FleetIndex}.
+ *
+ * @param identifier the unique identifier of the turbine
+ * @param capacity the capacity of the turbine measured in MWh
+ * @param productionCost the production cost of the turbine measured in €/MWh
+ * @param available whether the turbine can be dispatched
+ */
+public record FleetEntry(String identifier, int capacity, int productionCost, boolean available) {
+
+  /**
+   * Create an entry of an available turbine.
+   *
+   * @param identifier the unique identifier of the turbine
+   * @param capacity the capacity of the turbine measured in MWh
+   * @param productionCost the production cost of the turbine measured in €/MWh
+   */
+  public FleetEntry(String identifier, int capacity, int productionCost) {
+    this(identifier, capacity, productionCost, true);
+  }
+
+  /**
+   * Copy the values of the given turbine entity.
+   *
+   * @param turbine the turbine entity
+   * @return the fleet entry
+   */
+  public static FleetEntry of(WindTurbine turbine) {
+    return new FleetEntry(turbine.getIdentifier(), turbine.getCapacity(), turbine.getProductionCost(), turbine.isAvailable());
+  }
+}
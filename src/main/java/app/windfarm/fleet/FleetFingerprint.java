@@ -0,0 +1,69 @@
+package app.windfarm.fleet;
+
+import app.windfarm.repository.CostLevelSummary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Number of turbines and combined capacity per park, production cost and availability. Comparing the fingerprint of
+ * loaded fleet indexes with the one the database aggregates in a single query catches turbines that were added or
+ * removed, and capacities, costs or availabilities that were changed behind the back of this instance, unless the
+ * changes cancel out within a level.
+ *
+ * @param levels map from level to the number of turbines and their combined capacity, without empty levels
+ */
+record FleetFingerprint(Map<Level, Totals> levels) {
+
+  /** A park, production cost and availability. */
+  record Level(String parkId, int productionCost, boolean available) {}
+
+  /** The number of turbines of a level and their combined capacity in MWh. */
+  record Totals(long turbines, long capacity) {
+
+    Totals plus(Totals other) {
+      return new Totals(turbines + other.turbines, capacity + other.capacity);
+    }
+  }
+
+  /**
+   * Compute the fingerprint of the given fleet indexes.
+   *
+   * @param fleets map from park identifier to its fleet index
+   * @return the fingerprint
+   */
+  static FleetFingerprint of(Map<String, FleetIndex> fleets) {
+    Map<Level, Totals> levels = new HashMap<>();
+    fleets.forEach((parkId, fleet) -> {
+      for (int rank = 0; rank < fleet.size(); rank++) {
+        Level level = new Level(parkId, fleet.productionCostAt(rank), rank < fleet.availableCount());
+        levels.merge(level, new Totals(1, fleet.capacityAt(rank)), Totals::plus);
+      }
+    });
+    return new FleetFingerprint(levels);
+  }
+
+  /**
+   * Collect the fingerprint aggregated by the database.
+   *
+   * @param summaries the turbine count and capacity per park, production cost and availability
+   * @return the fingerprint
+   */
+  static FleetFingerprint of(Iterable<CostLevelSummary> summaries) {
+    Map<Level, Totals> levels = new HashMap<>();
+    for (CostLevelSummary summary : summaries) {
+      Level level = new Level(summary.getParkId(), summary.getProductionCost(), summary.isAvailable());
+      levels.merge(level, new Totals(summary.getTurbines(), summary.getCapacity()), Totals::plus);
+    }
+    return new FleetFingerprint(levels);
+  }
+
+  /**
+   * Get the number of turbines of all levels.
+   *
+   * @return the number of turbines
+   */
+  long turbines() {
+    return levels.values().stream().mapToLong(Totals::turbines).sum();
+  }
+}
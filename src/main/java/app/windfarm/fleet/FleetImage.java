@@ -0,0 +1,246 @@
+package app.windfarm.fleet;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file holding the fleet index of every park in the layout of {@link FleetIndex}, so it can be loaded at startup
+ * without querying the database or sorting.
+ *
+ * <p>The file is memory-mapped. After a header with a CRC32 of the rest of the file, each park holds its identifier,
+ * its fleet version, its number of available turbines and its turbines as fixed-width little-endian columns: capacities, production costs and ordinals
+ * by rank, then an offset table and the UTF-8 bytes of the identifiers by ordinal. Loading a column is a single bulk
+ * copy from the mapping into the array the index uses, so no object is created per turbine apart from its identifier.
+ */
+public final class FleetImage {
+
+  private static final int MAGIC = 0x57464649;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 32;
+  private static final int ALIGNMENT = 8;
+
+  private FleetImage() {
+  }
+
+  /**
+   * Write the fleet indexes durably. The image is written to a temporary file, forced to disk and then moved into
+   * place, so the file either holds the complete image or is left as it was.
+   *
+   * @param fleets map from park identifier to its fleet index
+   * @param file the image file
+   * @throws IOException if writing fails or the image would exceed 2 GB
+   */
+  public static void write(Map<String, FleetIndex> fleets, Path file) throws IOException {
+    Map<String, byte[][]> identifiersByPark = new LinkedHashMap<>();
+    long size = HEADER_SIZE;
+    long turbines = 0;
+    for (Map.Entry<String, FleetIndex> park : fleets.entrySet()) {
+      FleetIndex fleet = park.getValue();
+      byte[][] identifiers = new byte[fleet.size()][];
+      long identifierBytes = 0;
+      for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+        identifiers[ordinal] = fleet.identifier(ordinal).getBytes(StandardCharsets.UTF_8);
+        identifierBytes += identifiers[ordinal].length;
+      }
+      identifiersByPark.put(park.getKey(), identifiers);
+      size += parkSize(park.getKey().getBytes(StandardCharsets.UTF_8).length, fleet.size(), identifierBytes);
+      turbines += fleet.size();
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Fleet image of " + turbines + " turbines exceeds 2 GB.");
+    }
+
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.position(HEADER_SIZE);
+      for (Map.Entry<String, FleetIndex> park : fleets.entrySet()) {
+        writePark(buffer, park.getKey(), park.getValue(), identifiersByPark.get(park.getKey()));
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(buffer.slice(HEADER_SIZE, (int) size - HEADER_SIZE));
+      buffer.putInt(0, MAGIC)
+          .putInt(4, VERSION)
+          .putInt(8, fleets.size())
+          .putInt(12, 0)
+          .putLong(16, turbines)
+          .putLong(24, crc.getValue());
+      buffer.force();
+    }
+
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    forceDirectory(file.getParent());
+  }
+
+  /**
+   * Read the fleet indexes from an image.
+   *
+   * @param file the image file
+   * @return map from park identifier to its fleet index
+   * @throws IOException if reading fails or the file is not a complete image of a supported version
+   */
+  public static Map<String, FleetIndex> read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("Not a fleet image: " + file);
+      }
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException("Not a fleet image of a supported version: " + file);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(buffer.slice(HEADER_SIZE, (int) size - HEADER_SIZE));
+      if (buffer.getLong(24) != crc.getValue()) {
+        throw new IOException("Fleet image checksum mismatch: " + file);
+      }
+
+      int parkCount = buffer.getInt(8);
+      Map<String, FleetIndex> fleets = new LinkedHashMap<>();
+      buffer.position(HEADER_SIZE);
+      try {
+        for (int park = 0; park < parkCount; park++) {
+          readPark(buffer, fleets);
+        }
+      } catch (BufferUnderflowException | IllegalArgumentException e) {
+        throw new IOException("Corrupt fleet image: " + file, e);
+      }
+      return fleets;
+    }
+  }
+
+  /**
+   * Count the bytes of a park in the image.
+   */
+  private static long parkSize(int parkIdBytes, int turbines, long identifierBytes) {
+    // Park identifier, then version, size, identifier byte count and available count, three columns, the offsets and the identifiers
+    return align(2L + parkIdBytes) + align(24 + 4L * (4L * turbines + 1) + identifierBytes);
+  }
+
+  private static void writePark(ByteBuffer buffer, String parkId, FleetIndex fleet, byte[][] identifiers) {
+    byte[] parkIdBytes = parkId.getBytes(StandardCharsets.UTF_8);
+    buffer.putShort((short) parkIdBytes.length).put(parkIdBytes);
+    pad(buffer);
+
+    int identifierBytes = 0;
+    for (byte[] identifier : identifiers) {
+      identifierBytes += identifier.length;
+    }
+    buffer.putLong(fleet.version()).putInt(fleet.size()).putInt(identifierBytes).putInt(fleet.availableCount()).putInt(0);
+
+    for (int rank = 0; rank < fleet.size(); rank++) {
+      buffer.putInt(fleet.capacityAt(rank));
+    }
+    for (int rank = 0; rank < fleet.size(); rank++) {
+      buffer.putInt(fleet.productionCostAt(rank));
+    }
+    for (int rank = 0; rank < fleet.size(); rank++) {
+      buffer.putInt(fleet.ordinalAt(rank));
+    }
+    int offset = 0;
+    buffer.putInt(offset);
+    for (byte[] identifier : identifiers) {
+      offset += identifier.length;
+      buffer.putInt(offset);
+    }
+    for (byte[] identifier : identifiers) {
+      buffer.put(identifier);
+    }
+    pad(buffer);
+  }
+
+  private static void readPark(ByteBuffer buffer, Map<String, FleetIndex> fleets) {
+    byte[] parkIdBytes = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(parkIdBytes);
+    skipPadding(buffer);
+
+    long version = buffer.getLong();
+    int size = buffer.getInt();
+    int identifierBytes = buffer.getInt();
+    int availableCount = buffer.getInt();
+    buffer.getInt();
+    if (size < 0 || identifierBytes < 0) {
+      throw new IllegalArgumentException("Negative fleet size.");
+    }
+
+    int[] capacities = readInts(buffer, size);
+    int[] productionCosts = readInts(buffer, size);
+    int[] ordinals = readInts(buffer, size);
+    int[] offsets = readInts(buffer, size + 1);
+    if (identifierBytes > buffer.remaining()) {
+      throw new IllegalArgumentException("Identifier table exceeds the image.");
+    }
+    byte[] identifierTable = new byte[identifierBytes];
+    buffer.get(identifierTable);
+    skipPadding(buffer);
+
+    String[] identifiers = new String[size];
+    for (int ordinal = 0; ordinal < size; ordinal++) {
+      int start = offsets[ordinal];
+      int end = offsets[ordinal + 1];
+      if (start < 0 || end < start || end > identifierBytes) {
+        throw new IllegalArgumentException("Identifier offsets out of range.");
+      }
+      identifiers[ordinal] = new String(identifierTable, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    fleets.put(new String(parkIdBytes, StandardCharsets.UTF_8), FleetIndex.fromColumns(version, identifiers, capacities, productionCosts, ordinals, availableCount));
+  }
+
+  /**
+   * Copy a column of ints out of the mapping in one bulk operation.
+   */
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    if (4L * count > buffer.remaining()) {
+      throw new IllegalArgumentException("Column exceeds the image.");
+    }
+    int[] values = new int[count];
+    IntBuffer ints = buffer.asIntBuffer();
+    ints.get(values);
+    buffer.position(buffer.position() + 4 * count);
+    return values;
+  }
+
+  private static long align(long size) {
+    return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+
+  private static void pad(ByteBuffer buffer) {
+    while (buffer.position() % ALIGNMENT != 0) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  private static void skipPadding(ByteBuffer buffer) {
+    buffer.position((int) align(buffer.position()));
+  }
+
+  /**
+   * Force the entries of a directory to disk, so the renamed image survives a crash. Not every platform supports this.
+   */
+  private static void forceDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // The image is still complete, only its rename may not survive a crash
+    }
+  }
+}
@@ -0,0 +1,474 @@
+package app.windfarm.fleet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, in-memory view of the park's wind turbines stored in parallel primitive arrays.
+ *
+ * <p>Turbines are addressed in two orders. The <i>ordinal</i> of a turbine is its position when
+ * the fleet is sorted by identifier, which is the order the production plan is reported in. The
+ * <i>rank</i> of a turbine is its position when the fleet is sorted by production cost (ties broken
+ * by ordinal), which is the order turbines are dispatched in. Unavailable turbines are ranked after
+ * all available ones, so they are never dispatched.
+ *
+ * <p>Changing existing turbines derives the next index from a persistent {@link CostTree} in O(log n)
+ * per turbine instead of sorting again. The arrays and the tree are each built from the other the first
+ * time they are needed: planning queries run on whichever exists, the per-rank accessors on the arrays.
+ */
+public final class FleetIndex {
+
+  private static final FleetIndex EMPTY = new FleetIndex(0, new String[0], 0,
+      new Columns(new int[0], new int[0], new int[0], new int[0]), null);
+
+  private final long version;
+  private final String[] identifiers;   // by ordinal
+  private final int availableCount;     // available turbines take the ranks below
+  // At least one of the two is set. Both only hold final fields, so a racy first build is safe and at worst repeated.
+  private Columns columns;
+  private CostTree tree;
+  // Summed up on first use, likewise
+  private FleetCapacity capacity;
+
+  /** The cost order as parallel arrays by rank. */
+  private static final class Columns {
+    final int[] capacities;       // by rank
+    final int[] productionCosts;  // by rank
+    final int[] ordinals;         // rank -> ordinal
+    final int[] ranks;            // ordinal -> rank
+    final long[] cumulativeCapacities; // rank -> sum of capacities of all lower ranks
+
+    Columns(int[] capacities, int[] productionCosts, int[] ordinals, int[] ranks) {
+      this.capacities = capacities;
+      this.productionCosts = productionCosts;
+      this.ordinals = ordinals;
+      this.ranks = ranks;
+      this.cumulativeCapacities = new long[capacities.length + 1];
+      for (int rank = 0; rank < capacities.length; rank++) {
+        cumulativeCapacities[rank + 1] = cumulativeCapacities[rank] + capacities[rank];
+      }
+    }
+  }
+
+  private FleetIndex(long version, String[] identifiers, int availableCount, Columns columns, CostTree tree) {
+    this.version = version;
+    this.identifiers = identifiers;
+    this.availableCount = availableCount;
+    this.columns = columns;
+    this.tree = tree;
+  }
+
+  /**
+   * Get an empty fleet index.
+   *
+   * @return the empty index with version 0
+   */
+  public static FleetIndex empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Build an index over the given turbines.
+   *
+   * @param version the version of the fleet
+   * @param entries the turbines of the fleet, identifiers must be unique
+   * @return the fleet index
+   */
+  public static FleetIndex of(long version, Collection<FleetEntry> entries) {
+    FleetEntry[] byIdentifier = entries.toArray(new FleetEntry[0]);
+    Arrays.sort(byIdentifier, Comparator.comparing(FleetEntry::identifier));
+    int size = byIdentifier.length;
+
+    // Sort available and unavailable turbines apart, each by cost with the ordinal packed into the low bits, so ties keep identifier order
+    long[] sortKeys = new long[size];
+    int availableCount = 0;
+    for (int ordinal = 0; ordinal < size; ordinal++) {
+      if (byIdentifier[ordinal].available()) {
+        sortKeys[availableCount++] = ((long) byIdentifier[ordinal].productionCost() << 32) | ordinal;
+      }
+    }
+    int unavailableRank = availableCount;
+    for (int ordinal = 0; ordinal < size; ordinal++) {
+      if (!byIdentifier[ordinal].available()) {
+        sortKeys[unavailableRank++] = ((long) byIdentifier[ordinal].productionCost() << 32) | ordinal;
+      }
+    }
+    Arrays.sort(sortKeys, 0, availableCount);
+    Arrays.sort(sortKeys, availableCount, size);
+
+    String[] identifiers = new String[size];
+    int[] capacities = new int[size];
+    int[] productionCosts = new int[size];
+    int[] ordinals = new int[size];
+    int[] ranks = new int[size];
+
+    for (int ordinal = 0; ordinal < size; ordinal++) {
+      identifiers[ordinal] = byIdentifier[ordinal].identifier();
+    }
+    for (int rank = 0; rank < size; rank++) {
+      int ordinal = (int) sortKeys[rank];
+      FleetEntry entry = byIdentifier[ordinal];
+      capacities[rank] = entry.capacity();
+      productionCosts[rank] = entry.productionCost();
+      ordinals[rank] = ordinal;
+      ranks[ordinal] = rank;
+    }
+
+    return new FleetIndex(version, identifiers, availableCount, new Columns(capacities, productionCosts, ordinals, ranks), null);
+  }
+
+  /**
+   * Wrap columns that are already in index order, as written by {@link FleetImage}, without sorting them again.
+   * The columns are checked in a single pass and used as they are, so they must not be modified afterwards.
+   *
+   * @param version the version of the fleet
+   * @param identifiers the identifiers by ordinal, in ascending order
+   * @param capacities the capacities by rank
+   * @param productionCosts the production costs by rank, in ascending order among the available and among the unavailable turbines
+   * @param ordinals the ordinal of each rank, ascending among equal production costs
+   * @param availableCount the number of available turbines, which take the lowest ranks
+   * @return the fleet index
+   * @throws IllegalArgumentException if the columns are not in index order
+   */
+  public static FleetIndex fromColumns(long version, String[] identifiers, int[] capacities, int[] productionCosts, int[] ordinals,
+                                       int availableCount) {
+    int size = identifiers.length;
+    if (capacities.length != size || productionCosts.length != size || ordinals.length != size) {
+      throw new IllegalArgumentException("Fleet columns must all have the same length.");
+    }
+    if (availableCount < 0 || availableCount > size) {
+      throw new IllegalArgumentException("Available turbine count out of range.");
+    }
+    for (int ordinal = 1; ordinal < size; ordinal++) {
+      if (identifiers[ordinal - 1].compareTo(identifiers[ordinal]) >= 0) {
+        throw new IllegalArgumentException("Fleet identifiers must be unique and sorted.");
+      }
+    }
+
+    int[] ranks = new int[size];
+    Arrays.fill(ranks, -1);
+    for (int rank = 0; rank < size; rank++) {
+      int ordinal = ordinals[rank];
+      if (ordinal < 0 || ordinal >= size || ranks[ordinal] != -1) {
+        throw new IllegalArgumentException("Fleet ordinals must be a permutation.");
+      }
+      if (rank > 0 && rank != availableCount && productionCosts[rank - 1] != productionCosts[rank]) {
+        if (productionCosts[rank - 1] > productionCosts[rank]) {
+          throw new IllegalArgumentException("Fleet ranks must be sorted by production cost.");
+        }
+      } else if (rank > 0 && rank != availableCount && ordinals[rank - 1] > ordinal) {
+        throw new IllegalArgumentException("Fleet ranks of equal production cost must be sorted by ordinal.");
+      }
+      ranks[ordinal] = rank;
+    }
+
+    return new FleetIndex(version, identifiers, availableCount, new Columns(capacities, productionCosts, ordinals, ranks), null);
+  }
+
+  /**
+   * Derive the index of the next fleet version from changed turbines. If every change updates a turbine that is
+   * already in the fleet, the cost order is updated in O(log n) per turbine and the identifiers are shared with this
+   * index. Adding or removing turbines moves the ordinals, so the index is rebuilt instead.
+   *
+   * @param version the version of the new fleet
+   * @param changes map from turbine identifier to new values, or to null for removed turbines
+   * @return the new fleet index, this index is left as it was
+   */
+  public FleetIndex apply(long version, Map<String, FleetEntry> changes) {
+    int[] changedOrdinals = new int[changes.size()];
+    int changed = 0;
+    for (Map.Entry<String, FleetEntry> change : changes.entrySet()) {
+      int ordinal = change.getValue() == null ? -1 : Arrays.binarySearch(identifiers, change.getKey());
+      if (ordinal < 0) {
+        return rebuild(version, changes);
+      }
+      changedOrdinals[changed++] = ordinal;
+    }
+
+    CostTree tree = tree();
+    int availableCount = this.availableCount;
+    changed = 0;
+    for (FleetEntry entry : changes.values()) {
+      int ordinal = changedOrdinals[changed++];
+      availableCount += (entry.available() ? 1 : 0) - (tree.available(ordinal) ? 1 : 0);
+      tree = tree.update(ordinal, entry.capacity(), entry.productionCost(), entry.available());
+    }
+    return new FleetIndex(version, identifiers, availableCount, null, tree);
+  }
+
+  /**
+   * Build the index of the next fleet version from the entries of this one with the changes applied.
+   */
+  private FleetIndex rebuild(long version, Map<String, FleetEntry> changes) {
+    Map<String, FleetEntry> entries = new HashMap<>();
+    for (FleetEntry entry : entries()) {
+      entries.put(entry.identifier(), entry);
+    }
+    changes.forEach((identifier, entry) -> {
+      if (entry == null) {
+        entries.remove(identifier);
+      } else {
+        entries.put(identifier, entry);
+      }
+    });
+    return of(version, entries.values());
+  }
+
+  /**
+   * Get the version of the fleet. The version increases with every change to the fleet.
+   *
+   * @return the fleet version
+   */
+  public long version() {
+    return version;
+  }
+
+  /**
+   * Get the number of turbines in the fleet.
+   *
+   * @return the fleet size
+   */
+  public int size() {
+    return identifiers.length;
+  }
+
+  /**
+   * Get the total capacity of the fleet.
+   *
+   * @return the sum of all turbine capacities measured in MWh
+   */
+  public long totalCapacity() {
+    Columns columns = this.columns;
+    return columns != null ? columns.cumulativeCapacities[size()] : tree.totalCapacity();
+  }
+
+  /**
+   * Get the number of turbines that can be dispatched. They take the ranks below this number.
+   *
+   * @return the number of available turbines
+   */
+  public int availableCount() {
+    return availableCount;
+  }
+
+  /**
+   * Get the capacity counters of the fleet, summing them up in O(n) the first time. They are only needed to check the
+   * fleet against the database, so changing a turbine does not pay for maintaining them.
+   *
+   * @return the total capacity and the capacity per production cost level, of available and unavailable turbines alike
+   */
+  public FleetCapacity capacity() {
+    FleetCapacity capacity = this.capacity;
+    if (capacity == null) {
+      FleetCapacity.Builder builder = FleetCapacity.empty().toBuilder();
+      for (FleetEntry entry : entries()) {
+        builder.add(entry);
+      }
+      capacity = builder.build();
+      this.capacity = capacity;
+    }
+    return capacity;
+  }
+
+  /**
+   * Get the combined capacity of the turbines ranked below the given rank.
+   *
+   * @param rank the rank to sum up to (exclusive), between 0 and the fleet size
+   * @return the cumulative capacity measured in MWh
+   */
+  public long cumulativeCapacity(int rank) {
+    Columns columns = this.columns;
+    return columns != null ? columns.cumulativeCapacities[rank] : tree.cumulativeCapacity(rank);
+  }
+
+  /**
+   * Count the available turbines with a production cost strictly below the given price using binary search.
+   *
+   * @param price the price limit
+   * @return number of available turbines cheaper than the price, i.e., the rank of the first turbine that is not
+   */
+  public int countCheaperThan(int price) {
+    Columns columns = this.columns;
+    if (columns == null) {
+      return tree.countCheaperThan(price);
+    }
+    int low = 0;
+    int high = availableCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (columns.productionCosts[mid] < price) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Find the longest run of cheapest turbines whose combined capacity does not exceed the given limit using binary search.
+   *
+   * @param capacityLimit the capacity limit
+   * @param maxRank the highest number of turbines to consider
+   * @return the largest rank between 0 and maxRank whose cumulative capacity is at most the limit
+   */
+  public int countWithinCapacity(long capacityLimit, int maxRank) {
+    Columns columns = this.columns;
+    if (columns == null) {
+      return tree.countWithinCapacity(capacityLimit, maxRank);
+    }
+    int low = 0;
+    int high = maxRank;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (columns.cumulativeCapacities[mid] <= capacityLimit) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Get the identifier of the turbine with the given ordinal.
+   *
+   * @param ordinal the position of the turbine in identifier order
+   * @return the identifier
+   */
+  public String identifier(int ordinal) {
+    return identifiers[ordinal];
+  }
+
+  /**
+   * Get the rank of the turbine with the given ordinal.
+   *
+   * @param ordinal the position of the turbine in identifier order
+   * @return the position of the turbine in cost order
+   */
+  public int rank(int ordinal) {
+    return columns().ranks[ordinal];
+  }
+
+  /**
+   * Get the ordinal of the turbine with the given rank.
+   *
+   * @param rank the position of the turbine in cost order
+   * @return the position of the turbine in identifier order
+   */
+  public int ordinalAt(int rank) {
+    return columns().ordinals[rank];
+  }
+
+  /**
+   * Get the capacity of the turbine with the given rank.
+   *
+   * @param rank the position of the turbine in cost order
+   * @return the capacity measured in MWh
+   */
+  public int capacityAt(int rank) {
+    return columns().capacities[rank];
+  }
+
+  /**
+   * Get the production cost of the turbine with the given rank.
+   *
+   * @param rank the position of the turbine in cost order
+   * @return the production cost measured in €/MWh
+   */
+  public int productionCostAt(int rank) {
+    return columns().productionCosts[rank];
+  }
+
+  /**
+   * Find the turbines whose capacity, production cost or availability differ from an earlier index of the same turbines.
+   * An index derived by {@link #apply} shares the unchanged parts of its cost tree with the one it was derived from,
+   * so comparing the two takes time in the number of changes rather than the fleet size.
+   *
+   * @param previous the earlier index
+   * @return the ordinals of the changed turbines in ascending order, or null if the two indexes do not hold the same
+   *     turbines, so their ordinals do not address the same ones
+   */
+  public int[] changedOrdinals(FleetIndex previous) {
+    if (identifiers != previous.identifiers && !Arrays.equals(identifiers, previous.identifiers)) {
+      return null;
+    }
+    CostTree tree = this.tree;
+    CostTree previousTree = previous.tree;
+    if (tree != null && previousTree != null) {
+      return tree.changedOrdinals(previousTree);
+    }
+
+    Columns columns = columns();
+    Columns previousColumns = previous.columns();
+    int[] changed = new int[size()];
+    int count = 0;
+    for (int ordinal = 0; ordinal < size(); ordinal++) {
+      int rank = columns.ranks[ordinal];
+      int previousRank = previousColumns.ranks[ordinal];
+      if (columns.capacities[rank] != previousColumns.capacities[previousRank]
+          || columns.productionCosts[rank] != previousColumns.productionCosts[previousRank]
+          || (rank < availableCount) != (previousRank < previous.availableCount)) {
+        changed[count++] = ordinal;
+      }
+    }
+    return Arrays.copyOf(changed, count);
+  }
+
+  /**
+   * Copy the turbines back into plain entries, in identifier order.
+   *
+   * @return array of fleet entries
+   */
+  public FleetEntry[] entries() {
+    FleetEntry[] entries = new FleetEntry[size()];
+    Columns columns = this.columns;
+    if (columns == null) {
+      for (int ordinal = 0; ordinal < size(); ordinal++) {
+        entries[ordinal] = new FleetEntry(identifiers[ordinal], tree.capacity(ordinal), tree.productionCost(ordinal), tree.available(ordinal));
+      }
+      return entries;
+    }
+    for (int rank = 0; rank < size(); rank++) {
+      int ordinal = columns.ordinals[rank];
+      entries[ordinal] = new FleetEntry(identifiers[ordinal], columns.capacities[rank], columns.productionCosts[rank], rank < availableCount);
+    }
+    return entries;
+  }
+
+  /**
+   * Get the cost order as arrays, walking the tree into them in O(n) the first time.
+   */
+  private Columns columns() {
+    Columns columns = this.columns;
+    if (columns == null) {
+      int size = size();
+      int[] capacities = new int[size];
+      int[] productionCosts = new int[size];
+      int[] ordinals = new int[size];
+      int[] ranks = new int[size];
+      tree.fill(capacities, productionCosts, ordinals);
+      for (int rank = 0; rank < size; rank++) {
+        ranks[ordinals[rank]] = rank;
+      }
+      columns = new Columns(capacities, productionCosts, ordinals, ranks);
+      this.columns = columns;
+    }
+    return columns;
+  }
+
+  /**
+   * Get the cost order as a tree, building it from the arrays in O(n) the first time.
+   */
+  private CostTree tree() {
+    CostTree tree = this.tree;
+    if (tree == null) {
+      tree = CostTree.build(columns.capacities, columns.productionCosts, columns.ordinals, availableCount);
+      this.tree = tree;
+    }
+    return tree;
+  }
+}
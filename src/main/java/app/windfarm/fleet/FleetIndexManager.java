@@ -0,0 +1,465 @@
+package app.windfarm.fleet;
+
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.repository.WindTurbineRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps an in-memory {@link FleetIndex} per park in step with the turbines in the database.
+ *
+ * <p>The indexes are loaded once at startup, from the database or from the {@link FleetImage} written at the last
+ * shutdown. Afterwards every turbine write is staged by
+ * {@link WindTurbineIndexListener} and applied when its transaction commits, so readers never see
+ * uncommitted or rolled back changes and the plan path never has to touch JPA.
+ *
+ * <p>Reading an index is a lock-free map lookup. Publishing a new index for a park takes one of
+ * {@link #LOCK_STRIPES} locks chosen by the park identifier, so writes to different parks rarely contend.
+ */
+@Component
+public class FleetIndexManager {
+
+  /** The number of locks the parks are spread across. */
+  public static final int LOCK_STRIPES = 64;
+
+  private static final Logger logger = LoggerFactory.getLogger(FleetIndexManager.class);
+
+  private final WindTurbineRepository windTurbineRepository;
+  private final Map<String, FleetIndex> indexes = new ConcurrentHashMap<>();
+  private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+  private final List<BiConsumer<String, FleetIndex>> listeners = new CopyOnWriteArrayList<>();
+  private final List<FleetChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<Map<String, Map<String, FleetEntry>>> batch = new ThreadLocal<>();
+  private final Path fleetImage;
+
+  /**
+   * Constructor for the fleet index manager. Loads the initial indexes from the repository.
+   * The default park always has an index, even if it has no turbines.
+   *
+   * @param windTurbineRepository the wind turbine repository
+   */
+  public FleetIndexManager(WindTurbineRepository windTurbineRepository) {
+    this(windTurbineRepository, false, null);
+  }
+
+  /**
+   * Constructor for the fleet index manager. Loads the initial indexes from the fleet image if one was written at the
+   * last shutdown and it matches the repository, and from the repository otherwise.
+   * The default park always has an index, even if it has no turbines.
+   *
+   * @param windTurbineRepository the wind turbine repository
+   * @param fleetImageEnabled whether the fleet image is loaded at startup and written at shutdown
+   * @param fleetImage the fleet image file
+   */
+  @Autowired
+  public FleetIndexManager(WindTurbineRepository windTurbineRepository, @Value("${windfarm.fleet.image.enabled:false}") boolean fleetImageEnabled,
+                           @Value("${windfarm.fleet.image.path:data/fleet.img}") Path fleetImage) {
+    this.windTurbineRepository = windTurbineRepository;
+    this.fleetImage = fleetImageEnabled ? fleetImage : null;
+    for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+      stripes[stripe] = new ReentrantLock();
+    }
+
+    indexes.put(WindTurbine.DEFAULT_PARK_ID, FleetIndex.empty());
+    Map<String, FleetIndex> loaded = this.fleetImage == null ? null : loadImage(this.fleetImage);
+    if (loaded != null) {
+      indexes.putAll(loaded);
+    } else {
+      loadEntries().forEach((parkId, entries) -> indexes.put(parkId, FleetIndex.of(1, entries)));
+    }
+  }
+
+  /**
+   * Get the current fleet index of the given park.
+   *
+   * @param parkId the park identifier
+   * @return the most recently committed fleet index, or null if the park has never had any turbines
+   */
+  public FleetIndex current(String parkId) {
+    return indexes.get(parkId);
+  }
+
+  /**
+   * Get the identifiers of all parks with a fleet index.
+   *
+   * @return unmodifiable view of the park identifiers
+   */
+  public Set<String> parkIds() {
+    return Collections.unmodifiableSet(indexes.keySet());
+  }
+
+  /**
+   * Register a listener that is called with every newly published index, in publication order per park.
+   * The listener is called straight away with the current index of every park.
+   *
+   * @param listener the listener, called with the park identifier and its new index
+   */
+  public void addListener(BiConsumer<String, FleetIndex> listener) {
+    lockAll();
+    try {
+      listeners.add(listener);
+      indexes.forEach(listener);
+    } finally {
+      unlockAll();
+    }
+  }
+
+  /**
+   * Register a listener that is called with the turbine changes of every park before they are published.
+   *
+   * @param listener the listener
+   */
+  public void addChangeListener(FleetChangeListener listener) {
+    changeListeners.add(listener);
+  }
+
+  /**
+   * Get the current fleet indexes of all parks at a single point in time, with no change to any park half applied.
+   *
+   * @return map from park identifier to its most recently committed fleet index
+   */
+  public Map<String, FleetIndex> snapshot() {
+    lockAll();
+    try {
+      return Map.copyOf(indexes);
+    } finally {
+      unlockAll();
+    }
+  }
+
+  /**
+   * Rebuild the indexes of the given parks from the repository, discarding the incrementally maintained state.
+   * Each park is read and rebuilt under the lock of its park, so no committed write to it is published meanwhile and
+   * writes to other parks go on. A park is only published again if its turbines differ from its current index, and the
+   * change listeners are told about every difference.
+   *
+   * @param parkIds the identifiers of the parks to rebuild
+   * @return the identifiers of the parks whose index differed from the repository
+   */
+  public Set<String> reload(Collection<String> parkIds) {
+    Set<String> reloaded = new TreeSet<>();
+    try {
+      for (String parkId : parkIds) {
+        ReentrantLock lock = stripe(parkId);
+        lock.lock();
+        try {
+          FleetIndex current = indexes.get(parkId);
+          List<FleetEntry> entries = windTurbineRepository.findByParkId(parkId).stream().map(FleetEntry::of).toList();
+          Map<String, FleetEntry> changes = differences(current == null ? FleetIndex.empty() : current, entries);
+          if (changes.isEmpty()) {
+            continue;
+          }
+          reloaded.add(parkId);
+          notifyChanged(parkId, changes);
+          publish(parkId, FleetIndex.of(current == null ? 1 : current.version() + 1, entries));
+        } finally {
+          lock.unlock();
+        }
+      }
+    } finally {
+      notifyPublished();
+    }
+    return reloaded;
+  }
+
+  /**
+   * Run the given work with publication deferred. Changes committed by the work on the calling thread are
+   * collected and published as a single new index per park when it returns, so a bulk write of many
+   * transactions rebuilds each index only once.
+   *
+   * @param work the work to run
+   * @param <T> the result type of the work
+   * @return the result of the work
+   */
+  public <T> T runBatch(Supplier<T> work) {
+    if (batch.get() != null) {
+      return work.get();
+    }
+
+    Map<String, Map<String, FleetEntry>> changes = new LinkedHashMap<>();
+    batch.set(changes);
+    try {
+      return work.get();
+    } finally {
+      batch.remove();
+      changes.forEach(this::apply);
+      notifyPublished();
+    }
+  }
+
+  /**
+   * Record that the given turbine was inserted or updated.
+   *
+   * @param turbine the saved turbine
+   */
+  public void turbineSaved(WindTurbine turbine) {
+    stage(turbine.getParkId(), turbine.getIdentifier(), FleetEntry.of(turbine));
+  }
+
+  /**
+   * Record that the given turbine was deleted.
+   *
+   * @param turbine the deleted turbine
+   */
+  public void turbineRemoved(WindTurbine turbine) {
+    stage(turbine.getParkId(), turbine.getIdentifier(), null);
+  }
+
+  /**
+   * Stage a change until the surrounding transaction commits, or apply it straight away outside a transaction.
+   *
+   * @param parkId the identifier of the park of the changed turbine
+   * @param identifier the identifier of the changed turbine
+   * @param entry the new values of the turbine, or null if it was removed
+   */
+  private void stage(String parkId, String identifier, FleetEntry entry) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      Map<String, Map<String, FleetEntry>> changes = new HashMap<>();
+      addChange(changes, parkId, identifier, entry);
+      commit(changes);
+      return;
+    }
+
+    PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+    if (pending == null) {
+      pending = new PendingChanges();
+      TransactionSynchronizationManager.bindResource(this, pending);
+      TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+    addChange(pending.changes, parkId, identifier, entry);
+  }
+
+  /**
+   * Publish committed changes, or collect them if a batch is running on this thread.
+   *
+   * @param changes map from park identifier to a map from turbine identifier to new values, or to null for removed turbines
+   */
+  private void commit(Map<String, Map<String, FleetEntry>> changes) {
+    Map<String, Map<String, FleetEntry>> batchChanges = batch.get();
+    if (batchChanges != null) {
+      changes.forEach((parkId, parkChanges) -> batchChanges.computeIfAbsent(parkId, k -> new LinkedHashMap<>()).putAll(parkChanges));
+    } else {
+      changes.forEach(this::apply);
+      notifyPublished();
+    }
+  }
+
+  /**
+   * Publish a new index for the park with the given changes applied to its current one.
+   *
+   * @param parkId the park identifier
+   * @param changes map from turbine identifier to new values, or to null for removed turbines
+   */
+  private void apply(String parkId, Map<String, FleetEntry> changes) {
+    ReentrantLock lock = stripe(parkId);
+    lock.lock();
+    try {
+      FleetIndex current = indexes.getOrDefault(parkId, FleetIndex.empty());
+      notifyChanged(parkId, changes);
+      publish(parkId, current.apply(current.version() + 1, changes));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Make the given index current for the park and notify the listeners. Must be called with the stripe of the park locked.
+   *
+   * @param parkId the park identifier
+   * @param fleet the new fleet index
+   */
+  private void publish(String parkId, FleetIndex fleet) {
+    indexes.put(parkId, fleet);
+    listeners.forEach(listener -> listener.accept(parkId, fleet));
+  }
+
+  /**
+   * Tell the change listeners about changes to a park. Must be called with the stripe of the park locked.
+   *
+   * @param parkId the park identifier
+   * @param changes map from turbine identifier to new values, or to null for removed turbines
+   */
+  private void notifyChanged(String parkId, Map<String, FleetEntry> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    Map<String, FleetEntry> unmodifiableChanges = Collections.unmodifiableMap(changes);
+    changeListeners.forEach(listener -> listener.changed(parkId, unmodifiableChanges));
+  }
+
+  /**
+   * Tell the change listeners that the changes of the calling thread have been published. Must be called with no stripe locked.
+   */
+  private void notifyPublished() {
+    changeListeners.forEach(FleetChangeListener::changesPublished);
+  }
+
+  /**
+   * Compute the changes that turn an index into the given entries.
+   *
+   * @param current the current index
+   * @param entries the new entries
+   * @return map from turbine identifier to new values, or to null for removed turbines
+   */
+  private static Map<String, FleetEntry> differences(FleetIndex current, List<FleetEntry> entries) {
+    Map<String, FleetEntry> changes = new LinkedHashMap<>();
+    Map<String, FleetEntry> removed = new HashMap<>();
+    for (FleetEntry entry : current.entries()) {
+      removed.put(entry.identifier(), entry);
+    }
+    for (FleetEntry entry : entries) {
+      if (!entry.equals(removed.remove(entry.identifier()))) {
+        changes.put(entry.identifier(), entry);
+      }
+    }
+    removed.keySet().forEach(identifier -> changes.put(identifier, null));
+    return changes;
+  }
+
+  /**
+   * Get the lock guarding the index of the given park.
+   *
+   * @param parkId the park identifier
+   * @return the lock
+   */
+  private ReentrantLock stripe(String parkId) {
+    return stripes[Math.floorMod(parkId.hashCode(), LOCK_STRIPES)];
+  }
+
+  /**
+   * Lock every stripe, always in the same order.
+   */
+  private void lockAll() {
+    for (ReentrantLock stripe : stripes) {
+      stripe.lock();
+    }
+  }
+
+  /**
+   * Unlock every stripe.
+   */
+  private void unlockAll() {
+    for (int stripe = LOCK_STRIPES - 1; stripe >= 0; stripe--) {
+      stripes[stripe].unlock();
+    }
+  }
+
+  /**
+   * Write the fleet image on shutdown, if enabled, so the next startup can load the indexes from it.
+   */
+  @PreDestroy
+  public void writeImage() {
+    if (fleetImage == null) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      Files.createDirectories(fleetImage.toAbsolutePath().getParent());
+      Map<String, FleetIndex> fleets = snapshot();
+      FleetImage.write(fleets, fleetImage);
+      logger.info("Wrote fleet image of {} parks to {} in {}ms", fleets.size(), fleetImage, (System.nanoTime() - start) / 1_000_000);
+    } catch (IOException e) {
+      logger.warn("Writing the fleet image to {} failed, the next startup loads the fleet from the database", fleetImage, e);
+    }
+  }
+
+  /**
+   * Load the indexes from the fleet image and delete it, so an image is only ever loaded right after the shutdown that
+   * wrote it. The image is only used if its {@link FleetFingerprint} matches the one aggregated by the repository, so
+   * turbines changed in a shared database since the shutdown, e.g. by another instance, are loaded from the database.
+   *
+   * @param file the fleet image file
+   * @return map from park identifier to its fleet index, or null if there is no usable image
+   */
+  private Map<String, FleetIndex> loadImage(Path file) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+
+    long start = System.nanoTime();
+    try {
+      Map<String, FleetIndex> fleets = FleetImage.read(file);
+      FleetFingerprint image = FleetFingerprint.of(fleets);
+      FleetFingerprint stored = FleetFingerprint.of(windTurbineRepository.summarizeByProductionCost());
+      long turbines = image.turbines();
+      if (!image.equals(stored)) {
+        logger.warn("Fleet image {} with {} turbines differs from the {} turbines in the database, loading the fleet from the database",
+            file, turbines, stored.turbines());
+        return null;
+      }
+      logger.info("Loaded {} turbines of {} parks from fleet image {} in {}ms", turbines, fleets.size(), file, (System.nanoTime() - start) / 1_000_000);
+      return fleets;
+    } catch (IOException e) {
+      logger.warn("Fleet image {} is unreadable, loading the fleet from the database", file, e);
+      return null;
+    } finally {
+      deleteImage(file);
+    }
+  }
+
+  private static void deleteImage(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      logger.warn("Could not delete fleet image {}, it may be loaded although the fleet changed", file, e);
+    }
+  }
+
+  /**
+   * Load all turbines from the repository.
+   *
+   * @return map from park identifier to its fleet entries
+   */
+  private Map<String, List<FleetEntry>> loadEntries() {
+    return windTurbineRepository.findAll().stream()
+        .collect(Collectors.groupingBy(WindTurbine::getParkId, Collectors.mapping(FleetEntry::of, Collectors.toList())));
+  }
+
+  /**
+   * Add a change to a map of changes by park.
+   */
+  private static void addChange(Map<String, Map<String, FleetEntry>> changes, String parkId, String identifier, FleetEntry entry) {
+    changes.computeIfAbsent(parkId, k -> new LinkedHashMap<>()).put(identifier, entry);
+  }
+
+  /** Changes staged by a single transaction, applied all at once after commit. */
+  private final class PendingChanges implements TransactionSynchronization {
+
+    private final Map<String, Map<String, FleetEntry>> changes = new LinkedHashMap<>();
+
+    @Override
+    public void afterCommit() {
+      commit(changes);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+      TransactionSynchronizationManager.unbindResourceIfPossible(FleetIndexManager.this);
+    }
+  }
+}
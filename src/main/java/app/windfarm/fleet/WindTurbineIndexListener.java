@@ -0,0 +1,36 @@
+package app.windfarm.fleet;
+
+import app.windfarm.entities.WindTurbine;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * JPA entity listener forwarding every turbine write to the {@link FleetIndexManager}.
+ * Instantiated by Hibernate through Spring, so the manager is resolved lazily to avoid a cycle with the entity manager factory.
+ */
+public class WindTurbineIndexListener {
+
+  private final ObjectProvider<FleetIndexManager> fleetIndexManager;
+
+  /**
+   * Constructor for the listener.
+   *
+   * @param fleetIndexManager provider of the fleet index manager
+   */
+  public WindTurbineIndexListener(ObjectProvider<FleetIndexManager> fleetIndexManager) {
+    this.fleetIndexManager = fleetIndexManager;
+  }
+
+  @PostPersist
+  @PostUpdate
+  void onSave(WindTurbine turbine) {
+    fleetIndexManager.getObject().turbineSaved(turbine);
+  }
+
+  @PostRemove
+  void onRemove(WindTurbine turbine) {
+    fleetIndexManager.getObject().turbineRemoved(turbine);
+  }
+}
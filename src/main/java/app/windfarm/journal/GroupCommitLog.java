@@ -0,0 +1,308 @@
+package app.windfarm.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records in numbered segment files, written by a single thread with group commit.
+ *
+ * <p>Appending only queues a record. The writer thread takes every record queued so far, writes them with one
+ * gathering write and forces them to disk with a single fsync, then completes their futures. Under load many records
+ * share one fsync, so each waits for about one fsync regardless of how many are appended concurrently.
+ *
+ * <p>Each record is framed by its length and a CRC32 of its bytes, so a record torn by a crash is detected on reading.
+ */
+final class GroupCommitLog implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(GroupCommitLog.class);
+
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int FRAME_HEADER_SIZE = 8;
+  private static final int MAX_RECORD_SIZE = 1 << 30;
+  private static final int MAX_BATCH = 4096;
+
+  private enum Kind { APPEND, ROTATE, CLOSE }
+
+  private record Entry(Kind kind, ByteBuffer frame, CompletableFuture<Long> done) {}
+
+  private final Path directory;
+  private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private FileChannel channel;
+  private long segment;
+  private volatile IOException failure;
+
+  /**
+   * Constructor for the log. Creates the first segment and starts the writer thread.
+   *
+   * @param directory the directory of the segment files
+   * @param segment the number of the first segment, which must not exist yet
+   * @throws IOException if the segment cannot be created
+   */
+  GroupCommitLog(Path directory, long segment) throws IOException {
+    this.directory = directory;
+    this.segment = segment;
+    this.channel = openSegment(segment);
+    this.writer = new Thread(this::writeLoop, "journal-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Queue a record to be written.
+   *
+   * @param record the record
+   * @return future completed with the number of the segment once the record is on disk, or completed exceptionally if writing fails
+   */
+  CompletableFuture<Long> append(byte[] record) {
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + record.length)
+        .putInt(record.length)
+        .putInt((int) crc.getValue())
+        .put(record)
+        .flip();
+    return enqueue(Kind.APPEND, frame);
+  }
+
+  /**
+   * Get the error that stopped the writer, after which every append fails.
+   *
+   * @return the error, or null if writing has not failed
+   */
+  IOException failure() {
+    return failure;
+  }
+
+  /**
+   * Finish the current segment and continue in the next one. Every record appended before has been written to the
+   * finished segment when this returns.
+   *
+   * @return the number of the finished segment
+   * @throws IOException if writing fails
+   */
+  long rotate() throws IOException {
+    return await(enqueue(Kind.ROTATE, null));
+  }
+
+  /**
+   * Write all queued records, close the current segment and stop the writer thread.
+   *
+   * @throws IOException if writing fails
+   */
+  @Override
+  public void close() throws IOException {
+    await(enqueue(Kind.CLOSE, null));
+  }
+
+  /**
+   * Wait for a future returned by this log.
+   *
+   * @param done the future
+   * @return the number of the segment
+   * @throws IOException if writing failed
+   */
+  static long await(CompletableFuture<Long> done) throws IOException {
+    try {
+      return done.join();
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Read the records of a segment in order, stopping at the first record that is incomplete or corrupt.
+   *
+   * @param file the segment file
+   * @param consumer receives each record
+   * @return true if the whole segment was read, false if it ended in an incomplete or corrupt record
+   * @throws IOException if reading fails
+   */
+  static boolean read(Path file, Consumer<byte[]> consumer) throws IOException {
+    CRC32 crc = new CRC32();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      while (true) {
+        int length;
+        try {
+          length = input.readInt();
+        } catch (EOFException e) {
+          return true;
+        }
+
+        try {
+          int expectedCrc = input.readInt();
+          if (length < 0 || length > MAX_RECORD_SIZE) {
+            return false;
+          }
+          byte[] record = new byte[length];
+          input.readFully(record);
+          crc.reset();
+          crc.update(record);
+          if ((int) crc.getValue() != expectedCrc) {
+            return false;
+          }
+          consumer.accept(record);
+        } catch (EOFException e) {
+          return false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the path of a segment file.
+   *
+   * @param directory the directory of the segment files
+   * @param segment the number of the segment
+   * @return the path
+   */
+  static Path segmentFile(Path directory, long segment) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * Get the numbers of the segment files in a directory.
+   *
+   * @param directory the directory of the segment files
+   * @return the segment numbers, in ascending order
+   * @throws IOException if listing the directory fails
+   */
+  static List<Long> segments(Path directory) throws IOException {
+    return JournalFiles.numbers(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+  }
+
+  /**
+   * Force the entries of a directory to disk, so files created or renamed in it survive a crash.
+   * Not every platform supports this, in which case it does nothing.
+   *
+   * @param directory the directory
+   */
+  static void forceDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      logger.debug("Could not force directory {}", directory, e);
+    }
+  }
+
+  private CompletableFuture<Long> enqueue(Kind kind, ByteBuffer frame) {
+    CompletableFuture<Long> done = new CompletableFuture<>();
+    IOException failed = failure;
+    if (failed != null) {
+      done.completeExceptionally(failed);
+    } else {
+      queue.add(new Entry(kind, frame, done));
+    }
+    return done;
+  }
+
+  private FileChannel openSegment(long number) throws IOException {
+    FileChannel opened = FileChannel.open(segmentFile(directory, number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    forceDirectory(directory);
+    return opened;
+  }
+
+  private void writeLoop() {
+    List<Entry> batch = new ArrayList<>();
+    List<Entry> written = new ArrayList<>();
+    while (true) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      queue.drainTo(batch, MAX_BATCH - 1);
+
+      for (Entry entry : batch) {
+        if (failure != null) {
+          entry.done().completeExceptionally(failure);
+          if (entry.kind() == Kind.CLOSE) {
+            return;
+          }
+          continue;
+        }
+
+        try {
+          switch (entry.kind()) {
+            case APPEND -> written.add(entry);
+            case ROTATE -> {
+              commit(written);
+              channel.close();
+              long finished = segment;
+              channel = openSegment(++segment);
+              entry.done().complete(finished);
+            }
+            case CLOSE -> {
+              commit(written);
+              channel.close();
+              entry.done().complete(segment);
+              return;
+            }
+          }
+        } catch (IOException e) {
+          fail(e, written);
+          entry.done().completeExceptionally(e);
+        }
+      }
+
+      try {
+        commit(written);
+      } catch (IOException e) {
+        fail(e, written);
+      }
+      batch.clear();
+    }
+  }
+
+  /**
+   * Write the given records with one gathering write, force them to disk and complete their futures.
+   */
+  private void commit(List<Entry> entries) throws IOException {
+    if (entries.isEmpty()) {
+      return;
+    }
+
+    ByteBuffer[] frames = new ByteBuffer[entries.size()];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = entries.get(i).frame();
+    }
+    while (frames[frames.length - 1].hasRemaining()) {
+      channel.write(frames);
+    }
+    channel.force(false);
+
+    for (Entry entry : entries) {
+      entry.done().complete(segment);
+    }
+    entries.clear();
+  }
+
+  private void fail(IOException e, List<Entry> entries) {
+    logger.error("Writing the journal failed, no further changes will be journaled", e);
+    failure = e;
+    entries.forEach(entry -> entry.done().completeExceptionally(e));
+    entries.clear();
+  }
+}
@@ -0,0 +1,83 @@
+package app.windfarm.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Naming of the numbered segment and snapshot files in the journal directory. */
+final class JournalFiles {
+
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SNAPSHOT_SUFFIX = ".snap";
+
+  private JournalFiles() {
+  }
+
+  /**
+   * Get the path of a snapshot file.
+   *
+   * @param directory the journal directory
+   * @param number the number of the last segment the snapshot includes
+   * @return the path
+   */
+  static Path snapshotFile(Path directory, long number) {
+    return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+  }
+
+  /**
+   * Get the numbers of the snapshot files in a directory.
+   *
+   * @param directory the journal directory
+   * @return the snapshot numbers, in ascending order
+   * @throws IOException if listing the directory fails
+   */
+  static List<Long> snapshots(Path directory) throws IOException {
+    return numbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+  }
+
+  /**
+   * Delete the segments up to and including the given number and the snapshots before it.
+   *
+   * @param directory the journal directory
+   * @param number the number of the latest snapshot
+   * @throws IOException if deleting fails
+   */
+  static void deleteObsolete(Path directory, long number) throws IOException {
+    for (long segment : GroupCommitLog.segments(directory)) {
+      if (segment <= number) {
+        Files.deleteIfExists(GroupCommitLog.segmentFile(directory, segment));
+      }
+    }
+    for (long snapshot : snapshots(directory)) {
+      if (snapshot < number) {
+        Files.deleteIfExists(snapshotFile(directory, snapshot));
+      }
+    }
+  }
+
+  /**
+   * Get the numbers of the files in a directory named by the given prefix, a number and the given suffix.
+   *
+   * @param directory the directory
+   * @param prefix the file name prefix
+   * @param suffix the file name suffix
+   * @return the numbers, in ascending order
+   * @throws IOException if listing the directory fails
+   */
+  static List<Long> numbers(Path directory, String prefix, String suffix) throws IOException {
+    List<Long> numbers = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+          .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+          .filter(number -> !number.isEmpty() && number.chars().allMatch(Character::isDigit))
+          .forEach(number -> numbers.add(Long.parseLong(number)));
+    }
+    Collections.sort(numbers);
+    return numbers;
+  }
+}
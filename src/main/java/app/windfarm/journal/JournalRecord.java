@@ -0,0 +1,129 @@
+package app.windfarm.journal;
+
+import app.windfarm.fleet.FleetEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A change to a park, as written to the journal. Every record holds absolute values, so replaying it twice is harmless. */
+sealed interface JournalRecord {
+
+  byte CONTROL_CHANGED = 1;
+  /** Fleet change written before turbines could be unavailable, still read from older journals. */
+  byte FLEET_CHANGED_ALL_AVAILABLE = 2;
+  byte FLEET_CHANGED = 3;
+
+  /**
+   * Get the identifier of the changed park.
+   *
+   * @return the park identifier
+   */
+  String parkId();
+
+  /**
+   * Encode the record.
+   *
+   * @return the encoded record
+   */
+  byte[] encode();
+
+  /**
+   * Decode a record encoded by {@link #encode()}.
+   *
+   * @param bytes the encoded record
+   * @return the record
+   * @throws IllegalArgumentException if the bytes are not a record
+   */
+  static JournalRecord decode(byte[] bytes) {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      byte type = input.readByte();
+      String parkId = input.readUTF();
+      return switch (type) {
+        case CONTROL_CHANGED -> new ControlChanged(parkId, input.readInt(), input.readInt());
+        case FLEET_CHANGED, FLEET_CHANGED_ALL_AVAILABLE -> {
+          int count = input.readInt();
+          Map<String, FleetEntry> changes = new LinkedHashMap<>();
+          for (int i = 0; i < count; i++) {
+            String identifier = input.readUTF();
+            changes.put(identifier, input.readBoolean()
+                ? new FleetEntry(identifier, input.readInt(), input.readInt(), type == FLEET_CHANGED_ALL_AVAILABLE || input.readBoolean())
+                : null);
+          }
+          yield new FleetChanged(parkId, Collections.unmodifiableMap(changes));
+        }
+        default -> throw new IllegalArgumentException("Unknown journal record type " + type + ".");
+      };
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Truncated journal record.", e);
+    }
+  }
+
+  /**
+   * The market price or production target of a park changed.
+   *
+   * @param parkId the park identifier
+   * @param marketPrice the new market price
+   * @param productionTarget the new production target
+   */
+  record ControlChanged(String parkId, int marketPrice, int productionTarget) implements JournalRecord {
+
+    @Override
+    public byte[] encode() {
+      return JournalRecord.encode(CONTROL_CHANGED, parkId, output -> {
+        output.writeInt(marketPrice);
+        output.writeInt(productionTarget);
+      });
+    }
+  }
+
+  /**
+   * Turbines of a park were saved or removed in one commit.
+   *
+   * @param parkId the park identifier
+   * @param changes map from turbine identifier to new values, or to null for removed turbines
+   */
+  record FleetChanged(String parkId, Map<String, FleetEntry> changes) implements JournalRecord {
+
+    @Override
+    public byte[] encode() {
+      return JournalRecord.encode(FLEET_CHANGED, parkId, output -> {
+        output.writeInt(changes.size());
+        for (Map.Entry<String, FleetEntry> change : changes.entrySet()) {
+          FleetEntry entry = change.getValue();
+          output.writeUTF(change.getKey());
+          output.writeBoolean(entry != null);
+          if (entry != null) {
+            output.writeInt(entry.capacity());
+            output.writeInt(entry.productionCost());
+            output.writeBoolean(entry.available());
+          }
+        }
+      });
+    }
+  }
+
+  /** Writes the fields of a record after its type and park. */
+  @FunctionalInterface
+  interface FieldWriter {
+    void write(DataOutputStream output) throws IOException;
+  }
+
+  private static byte[] encode(byte type, String parkId, FieldWriter fields) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeByte(type);
+      output.writeUTF(parkId);
+      fields.write(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+}
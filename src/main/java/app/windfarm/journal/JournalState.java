@@ -0,0 +1,161 @@
+package app.windfarm.journal;
+
+import app.windfarm.fleet.FleetEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The state of every park as far as the journal knows it: market price, production target and turbines.
+ * Built from a snapshot and the journal records after it, and written as the next snapshot.
+ *
+ * <p>A snapshot file holds a header, every park with its turbines, and a CRC32 of everything before it.
+ */
+final class JournalState {
+
+  private static final int SNAPSHOT_MAGIC = 0x5746534E;
+  private static final int SNAPSHOT_VERSION = 2;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Map<String, Park> parks = new LinkedHashMap<>();
+
+  /**
+   * The market price, production target and turbines of a park.
+   *
+   * @param marketPrice the market price
+   * @param productionTarget the production target
+   * @param turbines the turbines
+   */
+  record ParkImage(int marketPrice, int productionTarget, Collection<FleetEntry> turbines) {}
+
+  private static final class Park {
+    private int marketPrice;
+    private int productionTarget;
+    private final Map<String, FleetEntry> turbines = new HashMap<>();
+  }
+
+  /**
+   * Apply a journal record.
+   *
+   * @param record the record
+   */
+  void apply(JournalRecord record) {
+    Park park = parks.computeIfAbsent(record.parkId(), k -> new Park());
+    if (record instanceof JournalRecord.ControlChanged control) {
+      park.marketPrice = control.marketPrice();
+      park.productionTarget = control.productionTarget();
+    } else if (record instanceof JournalRecord.FleetChanged fleet) {
+      fleet.changes().forEach((identifier, entry) -> {
+        if (entry == null) {
+          park.turbines.remove(identifier);
+        } else {
+          park.turbines.put(identifier, entry);
+        }
+      });
+    }
+  }
+
+  /**
+   * Get the state of every park.
+   *
+   * @return map from park identifier to its state, valid until the next record is applied
+   */
+  Map<String, ParkImage> parks() {
+    Map<String, ParkImage> images = new LinkedHashMap<>();
+    parks.forEach((parkId, park) -> images.put(parkId, new ParkImage(park.marketPrice, park.productionTarget, park.turbines.values())));
+    return images;
+  }
+
+  /**
+   * Read a snapshot.
+   *
+   * @param file the snapshot file
+   * @return the state held by the snapshot
+   * @throws IOException if reading fails or the file is not a complete snapshot
+   */
+  static JournalState read(Path file) throws IOException {
+    JournalState state = new JournalState();
+    CRC32 crc = new CRC32();
+    try (DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE), crc))) {
+      int version = input.readInt() == SNAPSHOT_MAGIC ? input.readInt() : -1;
+      if (version != 1 && version != SNAPSHOT_VERSION) {
+        throw new IOException("Not a snapshot of a supported version: " + file);
+      }
+
+      int parkCount = input.readInt();
+      for (int p = 0; p < parkCount; p++) {
+        Park park = new Park();
+        state.parks.put(input.readUTF(), park);
+        park.marketPrice = input.readInt();
+        park.productionTarget = input.readInt();
+        int turbineCount = input.readInt();
+        for (int t = 0; t < turbineCount; t++) {
+          // Version 1 predates unavailable turbines
+          FleetEntry entry = new FleetEntry(input.readUTF(), input.readInt(), input.readInt(), version == 1 || input.readBoolean());
+          park.turbines.put(entry.identifier(), entry);
+        }
+      }
+
+      long expectedCrc = crc.getValue();
+      if (input.readLong() != expectedCrc) {
+        throw new IOException("Snapshot checksum mismatch: " + file);
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Write a snapshot durably. The snapshot is written to a temporary file, forced to disk and then moved into place,
+   * so the file either holds the complete snapshot or does not exist.
+   *
+   * @param parks map from park identifier to its state
+   * @param file the snapshot file
+   * @throws IOException if writing fails
+   */
+  static void write(Map<String, ParkImage> parks, Path file) throws IOException {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      CRC32 crc = new CRC32();
+      DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), crc));
+      output.writeInt(SNAPSHOT_MAGIC);
+      output.writeInt(SNAPSHOT_VERSION);
+      output.writeInt(parks.size());
+      for (Map.Entry<String, ParkImage> park : parks.entrySet()) {
+        ParkImage image = park.getValue();
+        output.writeUTF(park.getKey());
+        output.writeInt(image.marketPrice());
+        output.writeInt(image.productionTarget());
+        output.writeInt(image.turbines().size());
+        for (FleetEntry entry : image.turbines()) {
+          output.writeUTF(entry.identifier());
+          output.writeInt(entry.capacity());
+          output.writeInt(entry.productionCost());
+          output.writeBoolean(entry.available());
+        }
+      }
+      output.flush();
+      output.writeLong(crc.getValue());
+      output.flush();
+      channel.force(true);
+    }
+
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    GroupCommitLog.forceDirectory(file.getParent());
+  }
+}
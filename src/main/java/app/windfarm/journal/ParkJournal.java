@@ -0,0 +1,357 @@
+package app.windfarm.journal;
+
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetChangeListener;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Journals every change to the market price, production target and turbines of each park, and restores them at startup.
+ *
+ * <p>Changes are appended to a {@link GroupCommitLog}, and the request that made a change returns only once its record
+ * is on disk. The log is periodically rotated and the state written as a snapshot, after which the older segments are
+ * deleted, so recovery reads one snapshot and the few records after it.
+ *
+ * <p>At startup the turbines are restored into the database only if it holds none, since a persistent database already
+ * has them. Market prices and production targets are always restored.
+ */
+@Component
+public class ParkJournal implements SmartInitializingSingleton, FleetChangeListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(ParkJournal.class);
+  private static final int RESTORE_CHUNK_SIZE = 1000;
+
+  private final ParkService parkService;
+  private final FleetIndexManager fleetIndexManager;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final Path directory;
+  private final Map<String, Control> controls = new ConcurrentHashMap<>();
+  private final ThreadLocal<CompletableFuture<?>> pendingFleetChange = new ThreadLocal<>();
+  private volatile GroupCommitLog log;
+
+  /**
+   * The last journaled market price and production target of a park, the state version they were taken from, and the
+   * append of their record, or null if they were not appended by this instance.
+   */
+  private record Control(long version, int marketPrice, int productionTarget, CompletableFuture<?> appended) {}
+
+  /**
+   * Constructor for the park journal.
+   *
+   * @param parkService the park service
+   * @param fleetIndexManager the manager of the in-memory fleet index
+   * @param entityManager the entity manager for restoring turbines
+   * @param transactionTemplate the template for restoring turbines in chunks
+   * @param enabled whether changes are journaled and restored
+   * @param directory the directory of the segment and snapshot files
+   */
+  public ParkJournal(ParkService parkService, FleetIndexManager fleetIndexManager, EntityManager entityManager,
+                     TransactionTemplate transactionTemplate, @Value("${windfarm.journal.enabled:true}") boolean enabled,
+                     @Value("${windfarm.journal.directory:data/journal}") Path directory) {
+    this.parkService = parkService;
+    this.fleetIndexManager = fleetIndexManager;
+    this.entityManager = entityManager;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+    this.directory = directory;
+  }
+
+  /**
+   * Register for changes to every park, restore the parks from the latest snapshot and the records after it, then
+   * start journaling. Changes to the market price or production target are rejected once writing the journal failed.
+   *
+   * @throws UncheckedIOException if the journal cannot be read or written
+   * @throws IllegalStateException if the latest snapshot is corrupt
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (!enabled) {
+      return;
+    }
+
+    fleetIndexManager.addChangeListener(this);
+    parkService.addStateListener(this::stateChanged);
+    parkService.addControlGuard(this::checkWritable);
+    try {
+      recover();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Recovering the park journal from " + directory + " failed", e);
+    }
+  }
+
+  /**
+   * Write a snapshot on the configured interval.
+   */
+  @Scheduled(
+      initialDelayString = "${windfarm.journal.snapshot-interval:PT5M}",
+      fixedDelayString = "${windfarm.journal.snapshot-interval:PT5M}"
+  )
+  public void scheduledSnapshot() {
+    if (log == null) {
+      return;
+    }
+
+    try {
+      snapshot();
+    } catch (IOException e) {
+      logger.warn("Writing a journal snapshot failed, keeping the journal segments", e);
+    }
+  }
+
+  /**
+   * Write the current state of every park as a snapshot and delete the segments it replaces.
+   *
+   * @throws IOException if writing fails
+   */
+  public synchronized void snapshot() throws IOException {
+    long start = System.nanoTime();
+    // Every change published before the rotation is in the finished segment or an earlier one, and every later change
+    // is journaled in the next segment, so the snapshot taken now plus the segments after it cover everything
+    long segment = log.rotate();
+    Map<String, JournalState.ParkImage> parks = currentImages();
+    JournalState.write(parks, JournalFiles.snapshotFile(directory, segment));
+    JournalFiles.deleteObsolete(directory, segment);
+    logger.info("Wrote journal snapshot {} of {} parks in {}ms", segment, parks.size(), (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Close the journal, waiting for queued records to be written.
+   *
+   * @throws IOException if writing fails
+   */
+  @PreDestroy
+  public void close() throws IOException {
+    GroupCommitLog closing = log;
+    log = null;
+    if (closing != null) {
+      closing.close();
+    }
+  }
+
+  @Override
+  public void changed(String parkId, Map<String, FleetEntry> changes) {
+    GroupCommitLog current = log;
+    if (current != null) {
+      pendingFleetChange.set(current.append(new JournalRecord.FleetChanged(parkId, changes).encode()));
+    }
+  }
+
+  @Override
+  public void changesPublished() {
+    CompletableFuture<?> pending = pendingFleetChange.get();
+    if (pending != null) {
+      pendingFleetChange.remove();
+      await(pending);
+    }
+  }
+
+  /**
+   * Journal a changed market price or production target and wait until it is on disk. Changes to the fleet only are
+   * journaled by {@link #changed(String, Map)}. A state older than the last journaled one is covered by the record of
+   * the newer state, so that record is awaited instead.
+   *
+   * <p>A state published with a fleet change arrives while the index of its park is locked, e.g. for a park created by
+   * an import. Its record is then awaited in {@link #changesPublished()} together with the fleet change, as the listener
+   * must not block.
+   *
+   * @param parkId the park identifier
+   * @param state the new park state
+   */
+  private void stateChanged(String parkId, ParkState state) {
+    GroupCommitLog current = log;
+    if (current == null) {
+      return;
+    }
+
+    CompletableFuture<?>[] appended = new CompletableFuture<?>[1];
+    controls.compute(parkId, (k, last) -> {
+      if (last != null && last.version() >= state.version()) {
+        appended[0] = last.appended();
+        return last;
+      }
+      if (last == null || last.marketPrice() != state.marketPrice() || last.productionTarget() != state.productionTarget()) {
+        // Appended while the entry is locked, so records of a park reach the log in version order
+        appended[0] = current.append(new JournalRecord.ControlChanged(parkId, state.marketPrice(), state.productionTarget()).encode());
+        return new Control(state.version(), state.marketPrice(), state.productionTarget(), appended[0]);
+      }
+      return new Control(state.version(), state.marketPrice(), state.productionTarget(), last.appended());
+    });
+
+    if (appended[0] == null) {
+      return;
+    }
+    CompletableFuture<?> pending = pendingFleetChange.get();
+    if (pending != null) {
+      pendingFleetChange.set(CompletableFuture.allOf(pending, appended[0]));
+    } else {
+      await(appended[0]);
+    }
+  }
+
+  /**
+   * Reject a change to the market price or production target of a park once writing the journal failed, before it is
+   * applied, since it could not be made durable.
+   *
+   * @param parkId the park identifier
+   * @throws UncheckedIOException if writing the journal failed
+   */
+  private void checkWritable(String parkId) {
+    GroupCommitLog current = log;
+    IOException failure = current == null ? null : current.failure();
+    if (failure != null) {
+      throw new UncheckedIOException("Journal is not writable, change of park " + parkId + " rejected", failure);
+    }
+  }
+
+  private static void await(CompletableFuture<?> appended) {
+    try {
+      appended.join();
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw new UncheckedIOException("Journaling the change failed", cause);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Restore the parks and open the log after the last existing segment.
+   */
+  private void recover() throws IOException {
+    long start = System.nanoTime();
+    Files.createDirectories(directory);
+
+    List<Long> snapshots = JournalFiles.snapshots(directory);
+    long snapshot = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+    JournalState state = new JournalState();
+    if (!snapshots.isEmpty()) {
+      try {
+        state = JournalState.read(JournalFiles.snapshotFile(directory, snapshot));
+      } catch (IOException e) {
+        throw new IllegalStateException("Journal snapshot " + snapshot + " in " + directory + " is unreadable", e);
+      }
+    }
+
+    long last = snapshot;
+    int records = 0;
+    for (long segment : GroupCommitLog.segments(directory)) {
+      last = Math.max(last, segment);
+      if (segment <= snapshot) {
+        continue;
+      }
+      List<JournalRecord> replayed = new ArrayList<>();
+      boolean complete = GroupCommitLog.read(GroupCommitLog.segmentFile(directory, segment), bytes -> replayed.add(JournalRecord.decode(bytes)));
+      if (!complete) {
+        logger.warn("Journal segment {} ends in an incomplete record, which was dropped", segment);
+      }
+      replayed.forEach(state::apply);
+      records += replayed.size();
+    }
+
+    Map<String, JournalState.ParkImage> parks = state.parks();
+    int turbines = restoreTurbines(parks);
+    parks.forEach((parkId, park) -> {
+      if (fleetIndexManager.current(parkId) != null) {
+        parkService.restoreState(parkId, park.marketPrice(), park.productionTarget());
+      }
+    });
+
+    // The restored state may differ from the journal if the database already had turbines, so snapshot what is in memory
+    JournalState.write(currentImages(), JournalFiles.snapshotFile(directory, last));
+    JournalFiles.deleteObsolete(directory, last);
+
+    for (String parkId : fleetIndexManager.parkIds()) {
+      ParkState current = parkService.getState(parkId);
+      controls.put(parkId, new Control(current.version(), current.marketPrice(), current.productionTarget(), null));
+    }
+    log = new GroupCommitLog(directory, last + 1);
+
+    logger.info("Recovered {} parks with {} turbines from journal snapshot {} and {} records in {}ms",
+        parks.size(), turbines, snapshot, records, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Save the journaled turbines to the database if it has none.
+   *
+   * @return the number of restored turbines
+   */
+  private int restoreTurbines(Map<String, JournalState.ParkImage> parks) {
+    boolean empty = fleetIndexManager.parkIds().stream().allMatch(parkId -> fleetIndexManager.current(parkId).size() == 0);
+    if (!empty) {
+      logger.info("Database already holds turbines, restoring only market prices and production targets from the journal");
+      return 0;
+    }
+
+    return fleetIndexManager.runBatch(() -> {
+      int restored = 0;
+      List<WindTurbine> chunk = new ArrayList<>(RESTORE_CHUNK_SIZE);
+      for (Map.Entry<String, JournalState.ParkImage> park : parks.entrySet()) {
+        for (FleetEntry entry : park.getValue().turbines()) {
+          WindTurbine turbine = new WindTurbine(park.getKey(), entry.identifier(), entry.capacity(), entry.productionCost());
+          turbine.setAvailable(entry.available());
+          chunk.add(turbine);
+          if (chunk.size() == RESTORE_CHUNK_SIZE) {
+            restored += persist(chunk);
+          }
+        }
+      }
+      return restored + persist(chunk);
+    });
+  }
+
+  private int persist(List<WindTurbine> chunk) {
+    int size = chunk.size();
+    if (size > 0) {
+      transactionTemplate.executeWithoutResult(status -> {
+        chunk.forEach(entityManager::persist);
+        entityManager.flush();
+        entityManager.clear();
+      });
+      chunk.clear();
+    }
+    return size;
+  }
+
+  /**
+   * Get the journaled state of every park: its fleet as published and its last journaled controls.
+   */
+  private Map<String, JournalState.ParkImage> currentImages() {
+    Map<String, FleetIndex> fleets = fleetIndexManager.snapshot();
+    Map<String, JournalState.ParkImage> images = new LinkedHashMap<>();
+    fleets.forEach((parkId, fleet) -> {
+      Control control = controls.get(parkId);
+      if (control == null) {
+        ParkState state = parkService.getState(parkId);
+        control = new Control(state.version(), state.marketPrice(), state.productionTarget(), null);
+      }
+      images.put(parkId, new JournalState.ParkImage(control.marketPrice(), control.productionTarget(), Arrays.asList(fleet.entries())));
+    });
+    return images;
+  }
+}
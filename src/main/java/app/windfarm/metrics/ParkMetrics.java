@@ -0,0 +1,185 @@
+package app.windfarm.metrics;
+
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.planning.PlanStage;
+import app.windfarm.planning.PlanStageRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.EventType;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer instrumentation of the park, exposed through the Actuator Prometheus endpoint.
+ * All meters are registered up front, so recording on the hot path is a lookup by stage ordinal and never allocates.
+ *
+ * <p>Stage timings are also committed as {@link PlanStageEvent}s while a Java Flight Recorder recording has them enabled,
+ * e.g. one started by {@link PlanProfiler} or with {@code jcmd <pid> JFR.start}.
+ */
+@Component
+public class ParkMetrics implements PlanStageRecorder {
+
+  private static final EventType PLAN_STAGE_EVENT = EventType.getEventType(PlanStageEvent.class);
+
+  private final Timer[] stageTimers;
+  private final Counter marketPriceUpdates;
+  private final Counter productionTargetUpdates;
+  private final Counter validationRejections;
+  private final Counter acceptedPriceTicks;
+  private final Counter stalePriceTicks;
+  private final Counter malformedPriceTicks;
+  private final Counter writtenAuditRecords;
+  private final Counter droppedAuditRecords;
+
+  /**
+   * Constructor for the park metrics. Registers all meters.
+   *
+   * @param meterRegistry the meter registry
+   * @param fleetIndexManager the manager of the in-memory fleet index, read by the fleet gauges
+   */
+  public ParkMetrics(MeterRegistry meterRegistry, FleetIndexManager fleetIndexManager) {
+    PlanStage[] stages = PlanStage.values();
+    this.stageTimers = new Timer[stages.length];
+    for (PlanStage stage : stages) {
+      stageTimers[stage.ordinal()] = Timer.builder("windfarm.plan.stage")
+          .description("Time spent in each stage of computing the production plan")
+          .tag("stage", stage.tagValue())
+          .publishPercentileHistogram()
+          .register(meterRegistry);
+    }
+
+    this.marketPriceUpdates = Counter.builder("windfarm.market.price.updates")
+        .description("Number of market price updates")
+        .register(meterRegistry);
+    this.productionTargetUpdates = Counter.builder("windfarm.production.target.updates")
+        .description("Number of production target updates")
+        .register(meterRegistry);
+    this.validationRejections = Counter.builder("windfarm.validation.rejections")
+        .description("Number of requests rejected with 400 Bad Request")
+        .register(meterRegistry);
+    this.acceptedPriceTicks = priceTickCounter(meterRegistry, "accepted");
+    this.stalePriceTicks = priceTickCounter(meterRegistry, "stale");
+    this.malformedPriceTicks = priceTickCounter(meterRegistry, "malformed");
+    this.writtenAuditRecords = auditRecordCounter(meterRegistry, "written");
+    this.droppedAuditRecords = auditRecordCounter(meterRegistry, "dropped");
+
+    Gauge.builder("windfarm.parks", fleetIndexManager, manager -> manager.parkIds().size())
+        .description("Number of parks")
+        .register(meterRegistry);
+    Gauge.builder("windfarm.fleet.size", fleetIndexManager, manager -> sumOverParks(manager, FleetIndex::size))
+        .description("Number of turbines in all parks")
+        .register(meterRegistry);
+    Gauge.builder("windfarm.fleet.capacity", fleetIndexManager, manager -> sumOverParks(manager, FleetIndex::totalCapacity))
+        .description("Total capacity of all parks")
+        .baseUnit("MWh")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void record(PlanStage stage, long nanos) {
+    stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Record the time spent in a stage of planning a park state.
+   *
+   * @param stage the stage
+   * @param nanos the elapsed time in nanoseconds
+   * @param fleetSize the number of turbines in the fleet
+   * @param stateVersion the version of the park state
+   */
+  public void record(PlanStage stage, long nanos, int fleetSize, long stateVersion) {
+    record(stage, nanos);
+    if (PLAN_STAGE_EVENT.isEnabled()) {
+      PlanStageEvent event = new PlanStageEvent();
+      event.stage = stage.tagValue();
+      event.fleetSize = fleetSize;
+      event.stateVersion = stateVersion;
+      event.elapsed = nanos;
+      event.commit();
+    }
+  }
+
+  /**
+   * Get the recorder of the stages of planning a park state. While no flight recording is running this is the
+   * park metrics itself, so nothing is allocated per plan.
+   *
+   * @param fleetSize the number of turbines in the fleet
+   * @param stateVersion the version of the park state
+   * @return the stage recorder
+   */
+  public PlanStageRecorder recorder(int fleetSize, long stateVersion) {
+    if (!PLAN_STAGE_EVENT.isEnabled()) {
+      return this;
+    }
+    return (stage, nanos) -> record(stage, nanos, fleetSize, stateVersion);
+  }
+
+  /** Count a market price update. */
+  public void marketPriceUpdated() {
+    marketPriceUpdates.increment();
+  }
+
+  /** Count a production target update. */
+  public void productionTargetUpdated() {
+    productionTargetUpdates.increment();
+  }
+
+  /** Count a request rejected by validation. */
+  public void validationRejected() {
+    validationRejections.increment();
+  }
+
+  /**
+   * Count the ticks of an ingested market price feed.
+   *
+   * @param accepted the number of accepted ticks
+   * @param stale the number of ticks rejected as out of order
+   * @param malformed the number of lines that were not a valid tick
+   */
+  public void priceTicksIngested(long accepted, long stale, long malformed) {
+    acceptedPriceTicks.increment(accepted);
+    stalePriceTicks.increment(stale);
+    malformedPriceTicks.increment(malformed);
+  }
+
+  /** Count a dispatch decision written to the audit log. */
+  public void auditRecordWritten() {
+    writtenAuditRecords.increment();
+  }
+
+  /** Count a dispatch decision dropped because the audit buffer was full. */
+  public void auditRecordDropped() {
+    droppedAuditRecords.increment();
+  }
+
+  private static Counter priceTickCounter(MeterRegistry meterRegistry, String outcome) {
+    return Counter.builder("windfarm.market.price.ticks")
+        .description("Number of market price ticks received from the price feed")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  private static Counter auditRecordCounter(MeterRegistry meterRegistry, String outcome) {
+    return Counter.builder("windfarm.audit.records")
+        .description("Number of sampled dispatch decisions for the audit log")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Sum a property of the current fleet index over all parks.
+   */
+  private static double sumOverParks(FleetIndexManager fleetIndexManager, ToDoubleFunction<FleetIndex> property) {
+    double sum = 0;
+    for (String parkId : fleetIndexManager.parkIds()) {
+      sum += property.applyAsDouble(fleetIndexManager.current(parkId));
+    }
+    return sum;
+  }
+}
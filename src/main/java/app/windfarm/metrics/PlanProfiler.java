@@ -0,0 +1,194 @@
+package app.windfarm.metrics;
+
+import app.windfarm.dtos.PlanProfileDto;
+import app.windfarm.dtos.PlanStageProfileDto;
+import app.windfarm.dtos.ProfilerRecordingDto;
+import app.windfarm.planning.PlanStage;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Profiles the production plan stages of a live instance with a bounded Java Flight Recorder recording of
+ * {@link PlanStageEvent}s only. The recording stops on its own after its duration and never holds more than the
+ * configured size, and while none is running the stages are only timed by {@link ParkMetrics}.
+ */
+@Component
+public class PlanProfiler {
+
+  private static final Logger logger = LoggerFactory.getLogger(PlanProfiler.class);
+
+  private final Duration maxDuration;
+  private final DataSize maxSize;
+  private Recording recording; // guarded by this
+  private Instant startedAt;
+
+  /**
+   * Constructor for the plan profiler.
+   *
+   * @param maxDuration the longest a recording may run
+   * @param maxSize the most event data a recording keeps, older events are dropped beyond it
+   */
+  public PlanProfiler(@Value("${windfarm.profiler.max-duration:PT5M}") Duration maxDuration,
+                      @Value("${windfarm.profiler.max-size:64MB}") DataSize maxSize) {
+    this.maxDuration = maxDuration;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Start recording the plan stages. A recording that stopped on its own and was never summarized is discarded.
+   *
+   * @param duration how long to record for, at most the configured maximum
+   * @return the started recording, or empty if a recording is already running
+   * @throws IllegalArgumentException if the duration is not positive or above the maximum
+   */
+  public synchronized Optional<ProfilerRecordingDto> start(Duration duration) {
+    if (duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0) {
+      throw new IllegalArgumentException("Recording duration must be positive and at most " + maxDuration + ".");
+    }
+    if (recording != null) {
+      if (recording.getState() == RecordingState.RUNNING) {
+        return Optional.empty();
+      }
+      recording.close();
+    }
+
+    recording = new Recording();
+    recording.setName("windfarm-plan-profile");
+    recording.enable(PlanStageEvent.NAME).withoutStackTrace();
+    recording.setToDisk(true);
+    recording.setMaxSize(maxSize.toBytes());
+    recording.setDuration(duration);
+    recording.start();
+    startedAt = recording.getStartTime();
+    logger.info("Started recording plan stages for {}", duration);
+    return Optional.of(new ProfilerRecordingDto(startedAt, startedAt.plus(duration)));
+  }
+
+  /**
+   * Stop recording, if the recording did not stop on its own, and summarize the latency of each stage.
+   *
+   * @return the {@link PlanProfileDto}
+   * @throws NoSuchElementException if no recording was started since the last summary
+   * @throws UncheckedIOException if the recording cannot be read back
+   */
+  public synchronized PlanProfileDto stop() {
+    if (recording == null) {
+      throw new NoSuchElementException("No profiler recording was started.");
+    }
+
+    Path file = null;
+    try {
+      if (recording.getState() == RecordingState.RUNNING) {
+        recording.stop();
+      }
+      file = Files.createTempFile("windfarm-plan-profile", ".jfr");
+      recording.dump(file);
+      return new PlanProfileDto(startedAt, recording.getStopTime(), summarize(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the profiler recording.", e);
+    } finally {
+      recording.close();
+      recording = null;
+      if (file != null) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          logger.warn("Failed to delete the profiler recording {}", file, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Discard a recording that is still held on shutdown.
+   */
+  @PreDestroy
+  public synchronized void close() {
+    if (recording != null) {
+      recording.close();
+      recording = null;
+    }
+  }
+
+  /**
+   * Read the stage events of a recording file and summarize them per stage, in pipeline order.
+   */
+  private static List<PlanStageProfileDto> summarize(Path file) throws IOException {
+    PlanStage[] stages = PlanStage.values();
+    long[][] latencies = new long[stages.length][64];
+    int[] counts = new int[stages.length];
+    int[] maxFleetSizes = new int[stages.length];
+    long[] lastStateVersions = new long[stages.length];
+
+    try (RecordingFile recordingFile = new RecordingFile(file)) {
+      while (recordingFile.hasMoreEvents()) {
+        RecordedEvent event = recordingFile.readEvent();
+        if (!event.getEventType().getName().equals(PlanStageEvent.NAME)) {
+          continue;
+        }
+        int index = stageIndex(stages, event.getString("stage"));
+        if (index < 0) {
+          continue;
+        }
+        if (counts[index] == latencies[index].length) {
+          latencies[index] = Arrays.copyOf(latencies[index], 2 * counts[index]);
+        }
+        latencies[index][counts[index]++] = event.getLong("elapsed");
+        maxFleetSizes[index] = Math.max(maxFleetSizes[index], event.getInt("fleetSize"));
+        lastStateVersions[index] = Math.max(lastStateVersions[index], event.getLong("stateVersion"));
+      }
+    }
+
+    List<PlanStageProfileDto> summary = new ArrayList<>();
+    for (int index = 0; index < stages.length; index++) {
+      int count = counts[index];
+      if (count == 0) {
+        continue;
+      }
+      long[] sorted = Arrays.copyOf(latencies[index], count);
+      Arrays.sort(sorted);
+      long total = Arrays.stream(sorted).sum();
+      summary.add(new PlanStageProfileDto(stages[index].tagValue(), count, total / 1e6, total / 1e3 / count,
+          percentile(sorted, 0.5) / 1e3, percentile(sorted, 0.99) / 1e3, sorted[count - 1] / 1e3,
+          maxFleetSizes[index], lastStateVersions[index]));
+    }
+    return summary;
+  }
+
+  private static int stageIndex(PlanStage[] stages, String tagValue) {
+    for (PlanStage stage : stages) {
+      if (stage.tagValue().equals(tagValue)) {
+        return stage.ordinal();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get a percentile of sorted latencies by the nearest rank method.
+   */
+  private static long percentile(long[] sorted, double quantile) {
+    int rank = (int) Math.ceil(quantile * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+}
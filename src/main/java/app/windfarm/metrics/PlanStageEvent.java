@@ -0,0 +1,38 @@
+package app.windfarm.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event of one stage of computing a production plan. The stage is timed by the caller, so the
+ * elapsed time is a field rather than the duration of the event. Without stack traces, committing an event is cheap
+ * enough for the hot path, and while no recording has the event enabled it is not created at all.
+ */
+@Name(PlanStageEvent.NAME)
+@Label("Plan Stage")
+@Category({"Wind Farm", "Planning"})
+@Description("Time spent in a stage of computing a production plan")
+@StackTrace(false)
+final class PlanStageEvent extends Event {
+
+  static final String NAME = "app.windfarm.PlanStage";
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Fleet Size")
+  int fleetSize;
+
+  @Label("State Version")
+  @Description("Version of the park state the plan is computed for")
+  long stateVersion;
+
+  @Label("Elapsed")
+  @Timespan(Timespan.NANOSECONDS)
+  long elapsed;
+}
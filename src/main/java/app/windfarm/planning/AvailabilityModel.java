@@ -0,0 +1,34 @@
+package app.windfarm.planning;
+
+/**
+ * Distribution of the availability factor of each turbine, i.e. the share of its capacity the wind lets it produce.
+ *
+ * <p>In each scenario the whole park shares a wind level {@code w = mean + deviation * sqrt(correlation) * Z}, with a
+ * standard normal {@code Z}, clipped to [0, 1]. The factor of each turbine is drawn uniformly from
+ * {@code [w - h, w + h]} cut to [0, 1], where {@code h = sqrt(3 * (1 - correlation)) * deviation} gives the variation of
+ * each turbine the variance {@code deviation² * (1 - correlation)} before the cut. A uniform draw is far cheaper than a
+ * normal one, and cutting the range once per scenario spares clipping each draw.
+ *
+ * @param mean the mean availability factor, between 0 and 1
+ * @param deviation the standard deviation of the availability factor before clipping, not negative
+ * @param correlation the share of the variance that is common to all turbines, between 0 and 1
+ */
+public record AvailabilityModel(double mean, double deviation, double correlation) {
+
+  /**
+   * Constructor for the availability model.
+   *
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  public AvailabilityModel {
+    if (!(mean >= 0 && mean <= 1)) {
+      throw new IllegalArgumentException("Mean availability must be between 0 and 1.");
+    }
+    if (!(deviation >= 0 && deviation <= 1)) {
+      throw new IllegalArgumentException("Availability deviation must be between 0 and 1.");
+    }
+    if (!(correlation >= 0 && correlation <= 1)) {
+      throw new IllegalArgumentException("Availability correlation must be between 0 and 1.");
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package app.windfarm.planning;
+
+import app.windfarm.fleet.FleetIndex;
+
+import java.util.BitSet;
+
+/**
+ * Computes production plans that deliver as much of the production target as possible, instead of stopping at the
+ * first cheapest turbine that would overshoot it.
+ *
+ * <p>The plan is a subset-sum dynamic program over the capacities of the profitable turbines. The reachable
+ * production levels {@code 0..target} are kept in a bitset of {@code long} words, and adding a turbine shifts the
+ * bitset by its capacity and ORs it in, so each turbine costs {@code target / 64} word operations. Besides the
+ * bitset, the program keeps one {@code int} per production level: the rank of the turbine that first reached it.
+ * Turbines are added in cost order, so the plan is rebuilt from those ranks favouring cheap turbines. This is a
+ * tie-break towards low cost, not a guarantee of the cheapest subset among those with the same production.
+ *
+ * <p>If the greedy plan already delivers the target, or the program runs past its time budget or would need more
+ * than {@link #MAX_PRODUCTION_TARGET} levels, the greedy plan is returned. Only running past the time budget depends on
+ * timing, so only then is the greedy plan marked as a {@link ProductionPlan#fallback() fallback}.
+ */
+public final class OptimalFillPlanner {
+
+  /** The largest production target planned with the dynamic program, bounding its memory to about 16 MB. */
+  public static final int MAX_PRODUCTION_TARGET = 1 << 22;
+
+  private static final int TURBINES_PER_DEADLINE_CHECK = 64;
+  /** Returned by {@link #select} when the deadline passed, compared by identity. */
+  private static final BitSet DEADLINE_PASSED = new BitSet(0);
+
+  private OptimalFillPlanner() {}
+
+  /**
+   * Compute the production plan that delivers the most production without exceeding the target.
+   *
+   * @param fleet the fleet index
+   * @param marketPrice the market price
+   * @param productionTarget the production target
+   * @param budgetNanos the time budget in nanoseconds, after which the greedy plan is returned
+   * @return the production plan
+   */
+  public static ProductionPlan plan(FleetIndex fleet, int marketPrice, int productionTarget, long budgetNanos) {
+    return plan(fleet, marketPrice, productionTarget, budgetNanos, PlanStageRecorder.NOOP);
+  }
+
+  /**
+   * Compute the production plan that delivers the most production without exceeding the target, recording the time spent in each stage.
+   *
+   * @param fleet the fleet index
+   * @param marketPrice the market price
+   * @param productionTarget the production target
+   * @param budgetNanos the time budget in nanoseconds, after which the greedy plan is returned
+   * @param recorder the recorder of the stage timings
+   * @return the production plan
+   */
+  public static ProductionPlan plan(FleetIndex fleet, int marketPrice, int productionTarget, long budgetNanos, PlanStageRecorder recorder) {
+    long start = System.nanoTime();
+
+    int profitableTurbines = fleet.countCheaperThan(marketPrice);
+    long cutoffFound = System.nanoTime();
+    recorder.record(PlanStage.PRICE_CUTOFF, cutoffFound - start);
+
+    // The greedy plan is optimal if it hits the target or if it already runs every profitable turbine
+    ProductionPlan greedy = new ProductionPlan(fleet, fleet.countWithinCapacity(productionTarget, profitableTurbines));
+    BitSet selection = null;
+    if (greedy.totalProduction() < productionTarget
+        && fleet.cumulativeCapacity(profitableTurbines) > productionTarget
+        && productionTarget <= MAX_PRODUCTION_TARGET) {
+      selection = select(fleet, profitableTurbines, productionTarget, greedy.totalProduction(), start + budgetNanos);
+    }
+    recorder.record(PlanStage.ONLINE_SELECTION, System.nanoTime() - cutoffFound);
+
+    if (selection == DEADLINE_PASSED) {
+      return new ProductionPlan(fleet, greedy.onlineTurbines(), null, true);
+    }
+    return selection == null ? greedy : new ProductionPlan(fleet, selection.cardinality(), selection);
+  }
+
+  /**
+   * Run the subset-sum program over the turbines with ranks {@code [0, profitableTurbines)}.
+   *
+   * @param fleet the fleet index
+   * @param profitableTurbines the number of profitable turbines
+   * @param productionTarget the production target
+   * @param greedyProduction the production of the greedy plan
+   * @param deadline the value of {@link System#nanoTime()} after which to give up
+   * @return the ranks of the online turbines, null if the greedy plan is as good, or {@link #DEADLINE_PASSED}
+   */
+  private static BitSet select(FleetIndex fleet, int profitableTurbines, int productionTarget, long greedyProduction, long deadline) {
+    long[] reachable = new long[(productionTarget >>> 6) + 1];
+    int[] reachedBy = new int[productionTarget + 1];
+    long lastWordMask = -1L >>> (63 - (productionTarget & 63));
+    reachable[0] = 1L;
+    long reachableProduction = 0;
+
+    for (int rank = 0; rank < profitableTurbines; rank++) {
+      if (rank % TURBINES_PER_DEADLINE_CHECK == 0 && System.nanoTime() - deadline > 0) {
+        return DEADLINE_PASSED;
+      }
+
+      int capacity = fleet.capacityAt(rank);
+      if (capacity == 0 || capacity > productionTarget) {
+        continue;
+      }
+
+      // Only the words up to the highest level reachable so far can gain bits
+      reachableProduction = Math.min(reachableProduction + capacity, productionTarget);
+      int wordShift = capacity >>> 6;
+      int bitShift = capacity & 63;
+
+      // Walk the words from high to low so every word is shifted in before it is overwritten
+      for (int word = (int) (reachableProduction >>> 6); word >= wordShift; word--) {
+        long shifted = reachable[word - wordShift] << bitShift;
+        if (bitShift != 0 && word - wordShift > 0) {
+          shifted |= reachable[word - wordShift - 1] >>> (64 - bitShift);
+        }
+        if (word == reachable.length - 1) {
+          shifted &= lastWordMask;
+        }
+
+        long newlyReached = shifted & ~reachable[word];
+        if (newlyReached != 0) {
+          reachable[word] |= newlyReached;
+          for (long bits = newlyReached; bits != 0; bits &= bits - 1) {
+            reachedBy[(word << 6) + Long.numberOfTrailingZeros(bits)] = rank;
+          }
+        }
+      }
+
+      // The target cannot be beaten, and stopping early keeps the remaining, more expensive turbines offline
+      if ((reachable[reachable.length - 1] & (1L << (productionTarget & 63))) != 0) {
+        break;
+      }
+    }
+
+    int production = highestReachable(reachable);
+    if (production <= greedyProduction) {
+      return null;
+    }
+
+    // Each level was first reached by adding one turbine to a level reached by cheaper turbines only
+    BitSet selection = new BitSet(profitableTurbines);
+    for (int level = production; level > 0; level -= fleet.capacityAt(reachedBy[level])) {
+      selection.set(reachedBy[level]);
+    }
+    return selection;
+  }
+
+  /**
+   * Find the highest set bit of the bitset.
+   *
+   * @param reachable the reachable production levels
+   * @return the highest reachable production level
+   */
+  private static int highestReachable(long[] reachable) {
+    for (int word = reachable.length - 1; word >= 0; word--) {
+      if (reachable[word] != 0) {
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(reachable[word]);
+      }
+    }
+    return 0;
+  }
+}
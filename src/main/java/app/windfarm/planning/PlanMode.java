@@ -0,0 +1,9 @@
+package app.windfarm.planning;
+
+/** How the online turbines are chosen among the profitable ones. */
+public enum PlanMode {
+  /** Dispatch the cheapest turbines first and stop at the first one that would overshoot the target. */
+  GREEDY,
+  /** Choose the subset of profitable turbines that delivers the most production without exceeding the target. */
+  OPTIMAL_FILL
+}
@@ -0,0 +1,28 @@
+package app.windfarm.planning;
+
+/** Stages of computing a production plan, used to attribute the time spent. */
+public enum PlanStage {
+  /** Reading the consistent snapshot of price, target and fleet. */
+  FLEET_SNAPSHOT("fleet-snapshot"),
+  /** Finding the price cutoff among the cost-sorted turbines. */
+  PRICE_CUTOFF("price-cutoff"),
+  /** Finding where the greedy dispatch stops against the production target. */
+  ONLINE_SELECTION("online-selection"),
+  /** Mapping the plan to one output per turbine, or serializing it to JSON. */
+  OUTPUT_MAPPING("output-mapping");
+
+  private final String tagValue;
+
+  PlanStage(String tagValue) {
+    this.tagValue = tagValue;
+  }
+
+  /**
+   * Get the name of the stage as used in metric tags.
+   *
+   * @return the stage name
+   */
+  public String tagValue() {
+    return tagValue;
+  }
+}
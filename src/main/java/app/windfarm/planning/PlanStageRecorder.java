@@ -0,0 +1,17 @@
+package app.windfarm.planning;
+
+/** Receives the time spent in each {@link PlanStage}. Implementations must be cheap and must not allocate. */
+@FunctionalInterface
+public interface PlanStageRecorder {
+
+  /** Recorder that discards all timings. */
+  PlanStageRecorder NOOP = (stage, nanos) -> {};
+
+  /**
+   * Record the time spent in a stage.
+   *
+   * @param stage the stage
+   * @param nanos the elapsed time in nanoseconds
+   */
+  void record(PlanStage stage, long nanos);
+}
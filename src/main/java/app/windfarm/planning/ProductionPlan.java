@@ -0,0 +1,91 @@
+package app.windfarm.planning;
+
+import app.windfarm.fleet.FleetIndex;
+
+import java.util.BitSet;
+
+/**
+ * Compact production plan. A greedy plan always runs the cheapest turbines, so it is stored as the range of ranks
+ * {@code [0, onlineTurbines)} over the fleet it was computed for. Any other plan stores the ranks of its online
+ * turbines in a bitset, which must not be modified once the plan is created.
+ *
+ * @param fleet the fleet index the plan was computed for
+ * @param onlineTurbines the number of online turbines
+ * @param selection the ranks of the online turbines, or null if they are the {@code onlineTurbines} cheapest ones
+ * @param fallback true if this greedy plan stands in for an optimal fill plan that ran out of time, so the same
+ *                 state may get a better plan when computed again
+ */
+public record ProductionPlan(FleetIndex fleet, int onlineTurbines, BitSet selection, boolean fallback) {
+
+  /**
+   * Constructor for a plan that runs the cheapest turbines.
+   *
+   * @param fleet the fleet index the plan was computed for
+   * @param onlineTurbines the number of online turbines
+   */
+  public ProductionPlan(FleetIndex fleet, int onlineTurbines) {
+    this(fleet, onlineTurbines, null, false);
+  }
+
+  /**
+   * Constructor for a plan that runs the given turbines.
+   *
+   * @param fleet the fleet index the plan was computed for
+   * @param onlineTurbines the number of online turbines
+   * @param selection the ranks of the online turbines, or null if they are the {@code onlineTurbines} cheapest ones
+   */
+  public ProductionPlan(FleetIndex fleet, int onlineTurbines, BitSet selection) {
+    this(fleet, onlineTurbines, selection, false);
+  }
+
+  /**
+   * Check whether the turbine with the given rank is running.
+   *
+   * @param rank the position of the turbine in cost order
+   * @return true if the turbine is online
+   */
+  public boolean isOnlineAt(int rank) {
+    return selection == null ? rank < onlineTurbines : selection.get(rank);
+  }
+
+  /**
+   * Get the expected production of the turbine with the given ordinal.
+   *
+   * @param ordinal the position of the turbine in identifier order
+   * @return the expected production measured in MWh, 0 if not running
+   */
+  public int expectedProduction(int ordinal) {
+    int rank = fleet.rank(ordinal);
+    return isOnlineAt(rank) ? fleet.capacityAt(rank) : 0;
+  }
+
+  /**
+   * Get the expected production of the whole park.
+   *
+   * @return the sum of the expected production of all turbines measured in MWh
+   */
+  public long totalProduction() {
+    if (selection == null) {
+      return fleet.cumulativeCapacity(onlineTurbines);
+    }
+
+    long totalProduction = 0;
+    for (int rank = selection.nextSetBit(0); rank >= 0; rank = selection.nextSetBit(rank + 1)) {
+      totalProduction += fleet.capacityAt(rank);
+    }
+    return totalProduction;
+  }
+
+  /**
+   * Get the identifier of the marginal turbine, i.e., the most expensive turbine that is running.
+   *
+   * @return the identifier, or null if no turbine is running
+   */
+  public String marginalTurbine() {
+    if (onlineTurbines == 0) {
+      return null;
+    }
+    int rank = selection == null ? onlineTurbines - 1 : selection.length() - 1;
+    return fleet.identifier(fleet.ordinalAt(rank));
+  }
+}
@@ -0,0 +1,105 @@
+package app.windfarm.planning;
+
+import app.windfarm.fleet.FleetIndex;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo simulation of the production the greedy dispatch delivers when the wind lets each turbine produce only a
+ * share of its capacity, drawn from an {@link AvailabilityModel}.
+ *
+ * <p>Each scenario draws the availability of the profitable turbines in cost order and dispatches them as
+ * {@link ProductionPlanner} does, i.e. the longest run of cheapest turbines whose combined production stays within the
+ * target. Availabilities are only drawn until the dispatch stops, so a scenario costs at most one draw per turbine
+ * that runs. Scenarios are simulated in parallel on a fork/join pool, in ranges that each draw from their own split of
+ * the random generator, so the result depends on the seed but not on the number of threads.
+ */
+public final class ProductionSimulator {
+
+  /** Number of scenarios below which a range is simulated without splitting further. */
+  private static final int SCENARIOS_PER_TASK = 1 << 10;
+  /** Half-width of the uniform distribution with unit variance. */
+  private static final double UNIT_UNIFORM_HALF_WIDTH = Math.sqrt(3);
+
+  private ProductionSimulator() {}
+
+  /**
+   * Simulate the production of the greedy dispatch in the given number of scenarios.
+   *
+   * @param fleet the fleet index
+   * @param marketPrice the market price
+   * @param productionTarget the production target
+   * @param model the distribution of the availability factors
+   * @param scenarios the number of scenarios, positive
+   * @param seed the seed of the random generator
+   * @param pool the fork/join pool to simulate on
+   * @return the production of each scenario in MWh, at most the production target
+   */
+  public static double[] simulate(FleetIndex fleet, int marketPrice, int productionTarget, AvailabilityModel model,
+                                  int scenarios, long seed, ForkJoinPool pool) {
+    int[] capacities = new int[fleet.countCheaperThan(marketPrice)];
+    for (int rank = 0; rank < capacities.length; rank++) {
+      capacities[rank] = fleet.capacityAt(rank);
+    }
+
+    double[] production = new double[scenarios];
+    pool.invoke(new SimulateScenarios(capacities, productionTarget, model, production, 0, scenarios, new SplittableRandom(seed)));
+    return production;
+  }
+
+  /** Simulates a range of scenarios, splitting the range and the random generator in halves while it is large. */
+  private static final class SimulateScenarios extends RecursiveAction {
+
+    private final int[] capacities;
+    private final int productionTarget;
+    private final AvailabilityModel model;
+    private final double[] production;
+    private final int from;
+    private final int to;
+    private final SplittableRandom random;
+
+    SimulateScenarios(int[] capacities, int productionTarget, AvailabilityModel model, double[] production, int from, int to,
+                      SplittableRandom random) {
+      this.capacities = capacities;
+      this.productionTarget = productionTarget;
+      this.model = model;
+      this.production = production;
+      this.from = from;
+      this.to = to;
+      this.random = random;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > SCENARIOS_PER_TASK) {
+        int mid = (from + to) >>> 1;
+        SplittableRandom upper = random.split();
+        invokeAll(
+            new SimulateScenarios(capacities, productionTarget, model, production, from, mid, random),
+            new SimulateScenarios(capacities, productionTarget, model, production, mid, to, upper)
+        );
+        return;
+      }
+
+      double sharedDeviation = model.deviation() * Math.sqrt(model.correlation());
+      double halfWidth = model.deviation() * Math.sqrt(1 - model.correlation()) * UNIT_UNIFORM_HALF_WIDTH;
+      for (int scenario = from; scenario < to; scenario++) {
+        // Cut the range of the scenario to [0, 1] once, so the draws of the turbines need no clipping
+        double level = Math.min(1, Math.max(0, model.mean() + sharedDeviation * random.nextGaussian()));
+        double low = Math.max(0, level - halfWidth);
+        double width = Math.min(1, level + halfWidth) - low;
+        double sum = 0;
+        for (int capacity : capacities) {
+          double output = capacity * (low + width * random.nextDouble());
+          if (sum + output > productionTarget) {
+            break;
+          }
+          sum += output;
+        }
+        production[scenario] = sum;
+      }
+    }
+  }
+}
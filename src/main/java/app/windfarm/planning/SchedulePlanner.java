@@ -0,0 +1,103 @@
+package app.windfarm.planning;
+
+import app.windfarm.fleet.FleetIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes production plans for many intervals at once, e.g. the 96 quarter hours of a day-ahead schedule.
+ *
+ * <p>Intervals with the same market price and production target share one plan. The turbine × interval
+ * matrix is then filled in parallel on a fork/join pool, split into ranges of turbines.
+ */
+public final class SchedulePlanner {
+
+  /** Number of matrix cells below which a range of turbines is filled without splitting further. */
+  private static final int CELLS_PER_TASK = 1 << 16;
+
+  private SchedulePlanner() {}
+
+  /**
+   * Compute the number of online turbines for each interval, planning each distinct (price, target) pair once.
+   *
+   * @param fleet the fleet index
+   * @param marketPrices the market price of each interval
+   * @param productionTargets the production target of each interval
+   * @return the number of online turbines, i.e., the cost rank cutoff, of each interval
+   */
+  public static int[] planIntervals(FleetIndex fleet, int[] marketPrices, int[] productionTargets) {
+    Map<Long, Integer> distinctPlans = new HashMap<>();
+    int[] onlineTurbines = new int[marketPrices.length];
+
+    for (int interval = 0; interval < marketPrices.length; interval++) {
+      int marketPrice = marketPrices[interval];
+      int productionTarget = productionTargets[interval];
+      long key = ((long) marketPrice << 32) | (productionTarget & 0xFFFFFFFFL);
+      onlineTurbines[interval] = distinctPlans.computeIfAbsent(
+          key, k -> ProductionPlanner.plan(fleet, marketPrice, productionTarget).onlineTurbines()
+      );
+    }
+
+    return onlineTurbines;
+  }
+
+  /**
+   * Fill the turbine × interval matrix of expected production in parallel.
+   *
+   * @param fleet the fleet index
+   * @param onlineTurbines the number of online turbines of each interval
+   * @param pool the fork/join pool to fill the matrix on
+   * @return matrix with a row per turbine in identifier order and a column per interval, in MWh
+   */
+  public static int[][] expectedProduction(FleetIndex fleet, int[] onlineTurbines, ForkJoinPool pool) {
+    int[][] matrix = new int[fleet.size()][];
+    int turbinesPerTask = Math.max(1, CELLS_PER_TASK / Math.max(1, onlineTurbines.length));
+    pool.invoke(new FillRows(fleet, onlineTurbines, matrix, 0, fleet.size(), turbinesPerTask));
+    return matrix;
+  }
+
+  /** Fills the matrix rows of a range of turbines, splitting the range in halves while it is large. */
+  private static final class FillRows extends RecursiveAction {
+
+    private final FleetIndex fleet;
+    private final int[] onlineTurbines;
+    private final int[][] matrix;
+    private final int from;
+    private final int to;
+    private final int turbinesPerTask;
+
+    FillRows(FleetIndex fleet, int[] onlineTurbines, int[][] matrix, int from, int to, int turbinesPerTask) {
+      this.fleet = fleet;
+      this.onlineTurbines = onlineTurbines;
+      this.matrix = matrix;
+      this.from = from;
+      this.to = to;
+      this.turbinesPerTask = turbinesPerTask;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > turbinesPerTask) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new FillRows(fleet, onlineTurbines, matrix, from, mid, turbinesPerTask),
+            new FillRows(fleet, onlineTurbines, matrix, mid, to, turbinesPerTask)
+        );
+        return;
+      }
+
+      for (int ordinal = from; ordinal < to; ordinal++) {
+        int rank = fleet.rank(ordinal);
+        int capacity = fleet.capacityAt(rank);
+        int[] row = new int[onlineTurbines.length];
+        for (int interval = 0; interval < row.length; interval++) {
+          row[interval] = rank < onlineTurbines[interval] ? capacity : 0;
+        }
+        matrix[ordinal] = row;
+      }
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package app.windfarm.repository;
+
+/** Projection of the combined capacity of all turbines in a park with the same production cost. */
+public interface CostLevelCapacity {
+
+  /**
+   * Get the identifier of the park.
+   *
+   * @return the park identifier
+   */
+  String getParkId();
+
+  /**
+   * Get the production cost of the level.
+   *
+   * @return the production cost measured in €/MWh
+   */
+  int getProductionCost();
+
+  /**
+   * Get the combined capacity of the turbines at the level.
+   *
+   * @return the capacity measured in MWh
+   */
+  long getCapacity();
+}
@@ -0,0 +1,40 @@
+package app.windfarm.repository;
+
+/** Projection of the number and combined capacity of the turbines in a park with the same production cost and availability. */
+public interface CostLevelSummary {
+
+  /**
+   * Get the identifier of the park.
+   *
+   * @return the park identifier
+   */
+  String getParkId();
+
+  /**
+   * Get the production cost of the level.
+   *
+   * @return the production cost measured in €/MWh
+   */
+  int getProductionCost();
+
+  /**
+   * Check whether the turbines of the level are available for dispatch.
+   *
+   * @return true if they can be dispatched
+   */
+  boolean isAvailable();
+
+  /**
+   * Get the number of turbines at the level.
+   *
+   * @return the number of turbines
+   */
+  long getTurbines();
+
+  /**
+   * Get the combined capacity of the turbines at the level.
+   *
+   * @return the capacity measured in MWh
+   */
+  long getCapacity();
+}
@@ -1,9 +1,41 @@
 package app.windfarm.repository;
 
 import app.windfarm.entities.WindTurbine;
+import app.windfarm.entities.WindTurbineId;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 /** Repository for persisting {@link WindTurbine} objects in a database. */
 @Repository
-public interface WindTurbineRepository extends JpaRepository<WindTurbine, String> {}
+public interface WindTurbineRepository extends JpaRepository<WindTurbine, WindTurbineId> {
+
+  /**
+   * Sum the capacity of the turbines per park and production cost level in the database.
+   *
+   * @return list of {@link CostLevelCapacity}, one per park and production cost
+   */
+  @Query("select t.parkId as parkId, t.productionCost as productionCost, sum(t.capacity) as capacity "
+      + "from WindTurbine t group by t.parkId, t.productionCost")
+  List<CostLevelCapacity> sumCapacityByProductionCost();
+
+  /**
+   * Count the turbines and sum their capacity per park, production cost level and availability in the database.
+   *
+   * @return list of {@link CostLevelSummary}, one per park, production cost and availability
+   */
+  @Query("select t.parkId as parkId, t.productionCost as productionCost, t.available as available, "
+      + "count(t) as turbines, sum(t.capacity) as capacity "
+      + "from WindTurbine t group by t.parkId, t.productionCost, t.available")
+  List<CostLevelSummary> summarizeByProductionCost();
+
+  /**
+   * Find all turbines of a park.
+   *
+   * @param parkId the park identifier
+   * @return list of the turbines of the park
+   */
+  List<WindTurbine> findByParkId(String parkId);
+}
@@ -0,0 +1,108 @@
+package app.windfarm.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escapes strings for JSON output the way Jackson does, writing UTF-8 straight into a byte array, so every endpoint
+ * serializes the same identifier to the same bytes.
+ *
+ * <p>Quotes and backslashes are escaped with a backslash, control characters with their short escape where JSON has one
+ * and as {@code \}{@code u00XX} otherwise. Like Jackson, surrogates are escaped rather than encoded.
+ */
+public final class JsonStringEscaper {
+
+  private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  private JsonStringEscaper() {}
+
+  /**
+   * Count the bytes {@link #write(String, byte[], int)} writes for the given string.
+   *
+   * @param value the string, without quotes
+   * @return the length of the escaped, UTF-8 encoded string in bytes
+   */
+  public static int escapedLength(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c < 0x80) {
+        length += c == '"' || c == '\\' ? 2 : 1;
+      } else if (c < 0x20) {
+        length += shortEscape(c) == 0 ? 6 : 2;
+      } else if (c < 0x800) {
+        length += 2;
+      } else {
+        length += Character.isSurrogate(c) ? 6 : 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Write the given string escaped and UTF-8 encoded, without quotes.
+   *
+   * @param value the string
+   * @param buffer the array to write to, with room for {@link #escapedLength(String)} bytes at the offset
+   * @param offset the index to write the first byte at
+   * @return the index after the last byte written
+   */
+  public static int write(String value, byte[] buffer, int offset) {
+    int length = offset;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c < 0x80) {
+        if (c == '"' || c == '\\') {
+          buffer[length++] = '\\';
+        }
+        buffer[length++] = (byte) c;
+      } else if (c < 0x20) {
+        char shortEscape = shortEscape(c);
+        if (shortEscape == 0) {
+          length = writeUnicodeEscape(c, buffer, length);
+        } else {
+          buffer[length++] = '\\';
+          buffer[length++] = (byte) shortEscape;
+        }
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xC0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        length = writeUnicodeEscape(c, buffer, length);
+      } else {
+        buffer[length++] = (byte) (0xE0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Get the letter of the short escape of a control character.
+   *
+   * @return the letter, or 0 if the character has no short escape
+   */
+  private static char shortEscape(char c) {
+    return switch (c) {
+      case '\b' -> 'b';
+      case '\t' -> 't';
+      case '\n' -> 'n';
+      case '\f' -> 'f';
+      case '\r' -> 'r';
+      default -> 0;
+    };
+  }
+
+  /**
+   * Write the given char as {@code \}{@code uXXXX}.
+   */
+  private static int writeUnicodeEscape(char c, byte[] buffer, int offset) {
+    buffer[offset] = '\\';
+    buffer[offset + 1] = 'u';
+    buffer[offset + 2] = HEX_DIGITS[c >> 12];
+    buffer[offset + 3] = HEX_DIGITS[(c >> 8) & 0xF];
+    buffer[offset + 4] = HEX_DIGITS[(c >> 4) & 0xF];
+    buffer[offset + 5] = HEX_DIGITS[c & 0xF];
+    return offset + 6;
+  }
+}
@@ -0,0 +1,178 @@
+package app.windfarm.service;
+
+import app.windfarm.dtos.PriceFeedReportDto;
+import app.windfarm.metrics.ParkMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ingestion of market price ticks from a high-frequency feed.
+ *
+ * <p>Ticks only replace the pending price of their park, and a tick whose sequence number is not above the last
+ * accepted one of the park is rejected as stale. The pending prices are applied through {@link ParkService} once per
+ * coalescing window, so a burst of ticks causes a single state change, journal record and plan recomputation per park.
+ */
+@Service
+public class MarketPriceFeed {
+
+  private static final Logger logger = LoggerFactory.getLogger(MarketPriceFeed.class);
+
+  private final ParkService parkService;
+  private final ParkMetrics parkMetrics;
+  private final Map<String, AtomicReference<Tick>> ticks = new ConcurrentHashMap<>();
+
+  /**
+   * The last accepted tick of a park.
+   *
+   * @param sequence the sequence number of the tick
+   * @param price the market price of the tick
+   * @param pendingTicks the number of ticks accepted since the price was last applied, 0 if it is applied
+   */
+  private record Tick(long sequence, int price, int pendingTicks) {
+
+    Tick applied() {
+      return new Tick(sequence, price, 0);
+    }
+  }
+
+  /**
+   * Constructor for the market price feed.
+   *
+   * @param parkService the park service the prices are applied through
+   * @param parkMetrics the park metrics
+   */
+  public MarketPriceFeed(ParkService parkService, ParkMetrics parkMetrics) {
+    this.parkService = parkService;
+    this.parkMetrics = parkMetrics;
+  }
+
+  /**
+   * Offer a price tick. The tick becomes the pending price of the park if its sequence number is above that of every
+   * tick accepted before.
+   *
+   * @param parkId the park identifier
+   * @param sequence the sequence number of the tick, not negative
+   * @param price the market price, not negative
+   * @return true if the tick was accepted, false if it is stale
+   * @throws IllegalArgumentException if the sequence number or price is negative
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public boolean offer(String parkId, long sequence, int price) {
+    if (sequence < 0 || price < 0) {
+      throw new IllegalArgumentException("Sequence number and market price must be non-negative.");
+    }
+
+    AtomicReference<Tick> tick = ticks.computeIfAbsent(parkId, id -> {
+      parkService.getMarketPrice(id);
+      return new AtomicReference<>(new Tick(-1, 0, 0));
+    });
+    while (true) {
+      Tick current = tick.get();
+      if (sequence <= current.sequence()) {
+        return false;
+      }
+      if (tick.compareAndSet(current, new Tick(sequence, price, current.pendingTicks() + 1))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Read ticks of {@code sequence,price} per line, with an optional header line, and offer each to the park.
+   * Prices are applied on the coalescing window while the stream is still being read.
+   *
+   * @param parkId the park identifier
+   * @param input the stream of ticks, read until the end but not closed
+   * @return the {@link PriceFeedReportDto}
+   * @throws NoSuchElementException if the park does not exist
+   * @throws UncheckedIOException if reading the stream fails
+   */
+  public PriceFeedReportDto ingest(String parkId, InputStream input) {
+    parkService.getMarketPrice(parkId);
+    long start = System.nanoTime();
+    long accepted = 0;
+    long stale = 0;
+    long malformed = 0;
+    long lastSequence = -1;
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    try {
+      String line;
+      long lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.isBlank() || (lineNumber == 1 && line.trim().toLowerCase().startsWith("sequence"))) {
+          continue;
+        }
+
+        int comma = line.indexOf(',');
+        try {
+          if (comma < 0) {
+            throw new IllegalArgumentException("Expected 2 fields (sequence,price).");
+          }
+          long sequence = Long.parseLong(line.substring(0, comma).trim());
+          if (offer(parkId, sequence, Integer.parseInt(line.substring(comma + 1).trim()))) {
+            accepted++;
+            lastSequence = sequence;
+          } else {
+            stale++;
+          }
+        } catch (IllegalArgumentException e) {
+          malformed++;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read price feed input.", e);
+    }
+
+    parkMetrics.priceTicksIngested(accepted, stale, malformed);
+    long elapsedNanos = Math.max(1, System.nanoTime() - start);
+    double ticksPerSecond = (accepted + stale + malformed) * 1e9 / elapsedNanos;
+    return new PriceFeedReportDto(accepted, stale, malformed, lastSequence, elapsedNanos / 1_000_000, ticksPerSecond);
+  }
+
+  /**
+   * Apply the pending price of every park with ticks accepted since the last window.
+   */
+  @Scheduled(
+      initialDelayString = "${windfarm.price-feed.coalescing-window:PT0.1S}",
+      fixedRateString = "${windfarm.price-feed.coalescing-window:PT0.1S}"
+  )
+  public void flush() {
+    for (Map.Entry<String, AtomicReference<Tick>> park : ticks.entrySet()) {
+      AtomicReference<Tick> tick = park.getValue();
+      Tick current;
+      Tick applied;
+      do {
+        current = tick.get();
+        applied = current.applied();
+      } while (current.pendingTicks() > 0 && !tick.compareAndSet(current, applied));
+      if (current.pendingTicks() == 0) {
+        continue;
+      }
+
+      try {
+        parkService.setMarketPrice(park.getKey(), current.price());
+        logger.debug("Applied market price {}€ of park {} at sequence {}, coalescing {} ticks",
+            current.price(), park.getKey(), current.sequence(), current.pendingTicks());
+      } catch (RuntimeException e) {
+        // Keep the price pending unless a newer tick replaced it in the meantime
+        tick.compareAndSet(applied, current);
+        logger.warn("Applying the market price of park {} failed, retrying on the next window", park.getKey(), e);
+      }
+    }
+  }
+}
@@ -1,73 +1,241 @@
 package app.windfarm.service;
 
+import app.windfarm.dtos.DistributionDto;
+import app.windfarm.dtos.PlanScenarioDto;
+import app.windfarm.dtos.PlanSummaryDto;
+import app.windfarm.dtos.ScheduleDto;
+import app.windfarm.dtos.ScheduleRequestDto;
+import app.windfarm.dtos.SimulationDto;
+import app.windfarm.dtos.WindTurbineDto;
 import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.dtos.WindTurbinePatchDto;
 import app.windfarm.entities.WindTurbine;
+import app.windfarm.entities.WindTurbineId;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.AvailabilityModel;
+import app.windfarm.planning.OptimalFillPlanner;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.planning.PlanStage;
+import app.windfarm.planning.PlanStageRecorder;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.planning.ProductionSimulator;
+import app.windfarm.planning.SchedulePlanner;
 import app.windfarm.repository.WindTurbineRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
-/** Service layer for managing wind turbines and park operations. */
+/**
+ * Service layer for managing wind turbines and park operations.
+ *
+ * <p>Each park has its own {@link ParkState}, updated by compare-and-set, so plans and updates for
+ * different parks never contend. A park exists once the fleet index manager has an index for it.
+ */
 @Service
 public class ParkService {
 
+  private static final Logger logger = LoggerFactory.getLogger(ParkService.class);
+  private static final int MAX_SCENARIOS = 10_000;
+  private static final int MAX_INTERVALS = 1_000;
+  private static final int MAX_SIMULATED_SCENARIOS = 1_000_000;
+  private static final long DEFAULT_MAX_SIMULATED_DRAWS = 1_000_000_000;
+
   private final WindTurbineRepository windTurbineRepository;
-  private int marketPrice;
-  private int productionTarget;
+  private final ParkMetrics parkMetrics;
+  private final long optimalFillBudgetNanos;
+  private final ForkJoinPool simulationPool;
+  private final long maxSimulatedDraws;
+  private final Map<String, AtomicReference<ParkState>> parks = new ConcurrentHashMap<>();
+  private final List<BiConsumer<String, ParkState>> stateListeners = new CopyOnWriteArrayList<>();
+  private final List<Consumer<String>> controlGuards = new CopyOnWriteArrayList<>();
+
+  /**
+   * Constructor for the park service.
+   *
+   * @param windTurbineRepository the wind turbine repository
+   * @param fleetIndexManager the manager of the in-memory fleet index
+   * @param parkMetrics the park metrics
+   * @param optimalFillBudget the time an optimal fill plan may take before the greedy plan is used instead
+   */
+  public ParkService(WindTurbineRepository windTurbineRepository, FleetIndexManager fleetIndexManager, ParkMetrics parkMetrics,
+                     Duration optimalFillBudget) {
+    this(windTurbineRepository, fleetIndexManager, parkMetrics, optimalFillBudget, 0, DEFAULT_MAX_SIMULATED_DRAWS);
+  }
 
   /**
    * Constructor for the park service.
    *
    * @param windTurbineRepository the wind turbine repository
+   * @param fleetIndexManager the manager of the in-memory fleet index
+   * @param parkMetrics the park metrics
+   * @param optimalFillBudget the time an optimal fill plan may take before the greedy plan is used instead
+   * @param simulationParallelism the number of threads production simulations run on, apart from the common pool, or 0
+   *     for one per available processor
+   * @param maxSimulatedDraws the number of turbine availabilities a simulation may draw at most
+   * @throws IllegalArgumentException if the simulation parallelism is negative or the maximum draws are not positive
    */
-  public ParkService(WindTurbineRepository windTurbineRepository) {
+  @Autowired
+  public ParkService(WindTurbineRepository windTurbineRepository, FleetIndexManager fleetIndexManager, ParkMetrics parkMetrics,
+                     @Value("${windfarm.planning.optimal-fill-budget:PT0.05S}") Duration optimalFillBudget,
+                     @Value("${windfarm.simulation.parallelism:0}") int simulationParallelism,
+                     @Value("${windfarm.simulation.max-draws:" + DEFAULT_MAX_SIMULATED_DRAWS + "}") long maxSimulatedDraws) {
+    if (simulationParallelism < 0) {
+      throw new IllegalArgumentException("Simulation parallelism must be non-negative.");
+    }
+    if (maxSimulatedDraws < 1) {
+      throw new IllegalArgumentException("Simulations must be allowed to draw at least one availability.");
+    }
     this.windTurbineRepository = windTurbineRepository;
-    this.marketPrice = 0;
-    this.productionTarget = 0;
+    this.parkMetrics = parkMetrics;
+    this.optimalFillBudgetNanos = optimalFillBudget.toNanos();
+    this.simulationPool = new ForkJoinPool(simulationParallelism == 0 ? Runtime.getRuntime().availableProcessors() : simulationParallelism);
+    this.maxSimulatedDraws = maxSimulatedDraws;
+    fleetIndexManager.addListener(this::updateFleet);
   }
 
   /**
-   * Get the market price.
+   * Get a consistent snapshot of the market price, production target and fleet of a park.
    *
+   * @param parkId the park identifier
+   * @return the current park state
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public ParkState getState(String parkId) {
+    return state(parkId).get();
+  }
+
+  /**
+   * Get the market price of a park.
+   *
+   * @param parkId the park identifier
    * @return the market price
+   * @throws NoSuchElementException if the park does not exist
    */
-  public int getMarketPrice() {
-    return marketPrice;
+  public int getMarketPrice(String parkId) {
+    return state(parkId).get().marketPrice();
   }
 
   /**
-   * Set the market price to the given value.
+   * Set the market price of a park to the given value.
    *
+   * @param parkId the park identifier
    * @param marketPrice the market price
    * @throws IllegalArgumentException if given price is negative
+   * @throws NoSuchElementException if the park does not exist
    */
-  public void setMarketPrice(int marketPrice) {
+  public void setMarketPrice(String parkId, int marketPrice) {
     if (marketPrice < 0) {
       throw new IllegalArgumentException("Market price must be non-negative.");
     }
 
-    this.marketPrice = marketPrice;
+    checkControlGuards(parkId);
+    update(parkId, state(parkId), current -> current.withMarketPrice(marketPrice));
+    parkMetrics.marketPriceUpdated();
   }
 
 
   /**
-   * Get the production target.
+   * Get the production target of a park.
    *
+   * @param parkId the park identifier
    * @return the production target
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public int getProductionTarget(String parkId) {
+    return state(parkId).get().productionTarget();
+  }
+
+  /**
+   * Set the production target of a park to the given value.
+   *
+   * @param parkId the park identifier
+   * @param productionTarget the production target
+   * @throws IllegalArgumentException if the production target is negative or exceeds max capacity
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public void setProductionTarget(String parkId, int productionTarget) {
+    checkControlGuards(parkId);
+    update(parkId, state(parkId), current -> current.withProductionTarget(validateProductionTarget(productionTarget, current.fleet())));
+    parkMetrics.productionTargetUpdated();
+  }
+
+  /**
+   * Update the production target of a park by the given value. The update is applied atomically, so concurrent deltas are never lost.
+   * If turbines were taken offline or lost capacity since the target was set, it may exceed the maximum capacity, and
+   * then any delta that lowers it is accepted, even if it stays above the maximum capacity.
+   *
+   * @param parkId the park identifier
+   * @param delta the delta increase/decrease in production target
+   * @return the updated production target
+   * @throws IllegalArgumentException if the given delta causes the production target to become negative, or to exceed max capacity without lowering it
+   * @throws NoSuchElementException if the park does not exist
    */
-  public int getProductionTarget() {
-    return productionTarget;
+  public int updateProductionTarget(String parkId, int delta) {
+    checkControlGuards(parkId);
+    ParkState updated = update(parkId, state(parkId), current -> {
+      long productionTarget = (long) current.productionTarget() + delta;
+      if (delta <= 0 && productionTarget >= 0) {
+        return current.withProductionTarget((int) productionTarget);
+      }
+      return current.withProductionTarget(validateProductionTarget(productionTarget, current.fleet()));
+    });
+    parkMetrics.productionTargetUpdated();
+    return updated.productionTarget();
+  }
+
+  /**
+   * Restore the market price and production target of a park from durable storage. Unlike the setters, the production
+   * target is not checked against the fleet, since it may have been set before turbines were removed.
+   *
+   * @param parkId the park identifier
+   * @param marketPrice the market price
+   * @param productionTarget the production target
+   * @throws IllegalArgumentException if the market price or production target is negative
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public void restoreState(String parkId, int marketPrice, int productionTarget) {
+    if (marketPrice < 0 || productionTarget < 0) {
+      throw new IllegalArgumentException("Market price and production target must be non-negative.");
+    }
+
+    update(parkId, state(parkId), current -> current.marketPrice() == marketPrice && current.productionTarget() == productionTarget
+        ? current
+        : current.withMarketPrice(marketPrice).withProductionTarget(productionTarget));
   }
 
   /**
-   * Set the production target to the given value.
+   * Check that the production target is within the capacity of the fleet.
    *
    * @param productionTarget the production target
+   * @param fleet the fleet index
+   * @return the production target
    * @throws IllegalArgumentException if the production target is negative or exceeds max capacity
    */
-  public void setProductionTarget(int productionTarget) {
-    int maximumCapacity = computeMaximumCapacity();
+  private static int validateProductionTarget(long productionTarget, FleetIndex fleet) {
+    long maximumCapacity = computeMaximumCapacity(fleet);
 
     boolean targetTooLow = productionTarget < 0;
     boolean targetTooHigh = productionTarget > maximumCapacity;
@@ -77,104 +245,382 @@ public class ParkService {
       throw new IllegalArgumentException(errorMessage);
     }
 
-    this.productionTarget = productionTarget;
+    return (int) productionTarget;
   }
 
   /**
-   * Update the production target by the given value.
+   * Compute the maximum capacity, i.e., total power (MW) the park's available turbines can produce per hour.
    *
-   * @param delta the delta increase/decrease in production target
-   * @throws IllegalArgumentException if the given delta causes the production target to become negative or exceed max capacity
+   * @param fleet the fleet index
+   * @return the maximum capacity
    */
-  public void updateProductionTarget(int delta) {
-    setProductionTarget(productionTarget + delta);
+  private static long computeMaximumCapacity(FleetIndex fleet) {
+    return fleet.cumulativeCapacity(fleet.availableCount());
   }
 
   /**
-   * Compute the maximum capacity, i.e., total power (MW) the park's turbines can produce per hour.
+   * Get the state of a park.
    *
-   * @return the maximum capacity
+   * @param parkId the park identifier
+   * @return the state reference of the park
+   * @throws NoSuchElementException if the park does not exist
+   */
+  private AtomicReference<ParkState> state(String parkId) {
+    AtomicReference<ParkState> state = parks.get(parkId);
+    if (state == null) {
+      throw new NoSuchElementException(String.format("Park %s does not exist.", parkId));
+    }
+    return state;
+  }
+
+  /**
+   * Swap in a new fleet index for a park, unless a newer one has already been applied. The state of a new park starts
+   * with market price and production target 0.
+   *
+   * @param parkId the park identifier
+   * @param fleet the new fleet index
+   */
+  private void updateFleet(String parkId, FleetIndex fleet) {
+    AtomicReference<ParkState> state = parks.computeIfAbsent(parkId, k -> new AtomicReference<>(new ParkState(0, 0, 0, FleetIndex.empty())));
+    ParkState updated = update(parkId, state, current -> current.fleet().version() >= fleet.version() ? current : current.withFleet(fleet));
+    if (updated.fleet() == fleet && updated.productionTarget() > computeMaximumCapacity(fleet)) {
+      logger.warn("Production target {} of park {} exceeds the {}MWh its available turbines can produce, plans deliver at most that",
+          updated.productionTarget(), parkId, computeMaximumCapacity(fleet));
+    }
+  }
+
+  /**
+   * Register a listener that is called with the new state of a park after every change to its market price, production target or fleet.
+   * The listener is called on the thread that made the change, so it must return quickly. Concurrent changes may be
+   * reported out of order; the state version tells which is newer.
+   *
+   * @param listener the listener, called with the park identifier and its new state
+   */
+  public void addStateListener(BiConsumer<String, ParkState> listener) {
+    stateListeners.add(listener);
+  }
+
+  /**
+   * Register a guard that is called before every change to the market price or production target of a park is applied,
+   * and rejects the change by throwing, e.g. because it could no longer be made durable.
+   *
+   * @param guard the guard, called with the park identifier
+   */
+  public void addControlGuard(Consumer<String> guard) {
+    controlGuards.add(guard);
+  }
+
+  /**
+   * Call the control guards before a change to the market price or production target of a park.
    */
-  private int computeMaximumCapacity() {
-    return windTurbineRepository.findAll().stream().mapToInt(WindTurbine::getCapacity).sum();
+  private void checkControlGuards(String parkId) {
+    for (Consumer<String> guard : controlGuards) {
+      guard.accept(parkId);
+    }
   }
 
   /**
-   * Compute the production plan based on the market price and production target.
+   * Atomically update the state of a park and notify the state listeners if it changed.
    *
+   * @param parkId the park identifier
+   * @param state the state reference of the park
+   * @param update the function computing the next state, which may be applied more than once
+   * @return the updated state
+   */
+  private ParkState update(String parkId, AtomicReference<ParkState> state, UnaryOperator<ParkState> update) {
+    ParkState previous;
+    ParkState updated;
+    do {
+      previous = state.get();
+      updated = update.apply(previous);
+    } while (previous != updated && !state.compareAndSet(previous, updated));
+
+    if (previous != updated) {
+      for (BiConsumer<String, ParkState> listener : stateListeners) {
+        listener.accept(parkId, updated);
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Compute the production plan of a park based on its market price and production target.
+   *
+   * @param parkId the park identifier
    * @return list of {@link WindTurbineOutputDto}
+   * @throws NoSuchElementException if the park does not exist
    */
-  public List<WindTurbineOutputDto> computeProductionPlan() {
-    List<WindTurbine> allTurbines = getAllWindTurbines();
-    List<WindTurbine> sortedProfitableTurbines = filterAndSortTurbines(allTurbines);
-    Map<String, Integer> onlineTurbines = selectOnlineTurbines(sortedProfitableTurbines);
+  public List<WindTurbineOutputDto> computeProductionPlan(String parkId) {
+    return computeProductionPlan(parkId, PlanMode.GREEDY);
+  }
 
-    return getProductionPlan(allTurbines, onlineTurbines);
+  /**
+   * Compute the production plan of a park based on its market price and production target, in the given mode.
+   *
+   * @param parkId the park identifier
+   * @param mode how to choose the online turbines
+   * @return list of {@link WindTurbineOutputDto}
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public List<WindTurbineOutputDto> computeProductionPlan(String parkId, PlanMode mode) {
+    ParkState current = snapshot(parkId);
+    return getProductionPlan(current, planProduction(current, mode));
   }
 
   /**
-   * Get a list of all the wind turbines in the park.
+   * Compute the compact production plan of a park based on its market price and production target.
    *
-   * @return a list of all wind turbines
+   * @param parkId the park identifier
+   * @return the {@link ProductionPlan}
+   * @throws NoSuchElementException if the park does not exist
    */
-  public List<WindTurbine> getAllWindTurbines() {
-    return windTurbineRepository.findAll();
+  public ProductionPlan planProduction(String parkId) {
+    return planProduction(parkId, PlanMode.GREEDY);
+  }
+
+  /**
+   * Compute the compact production plan of a park based on its market price and production target, in the given mode.
+   * An optimal fill plan that runs past its time budget falls back to the greedy plan.
+   *
+   * @param parkId the park identifier
+   * @param mode how to choose the online turbines
+   * @return the {@link ProductionPlan}
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public ProductionPlan planProduction(String parkId, PlanMode mode) {
+    return planProduction(snapshot(parkId), mode);
+  }
+
+  /**
+   * Compute the compact production plan for a given snapshot of a park state, in the given mode.
+   *
+   * @param current the park state
+   * @param mode how to choose the online turbines
+   * @return the {@link ProductionPlan}
+   */
+  public ProductionPlan planProduction(ParkState current, PlanMode mode) {
+    PlanStageRecorder recorder = parkMetrics.recorder(current.fleet().size(), current.version());
+    return switch (mode) {
+      case GREEDY -> ProductionPlanner.plan(current.fleet(), current.marketPrice(), current.productionTarget(), recorder);
+      case OPTIMAL_FILL -> OptimalFillPlanner.plan(
+          current.fleet(), current.marketPrice(), current.productionTarget(), optimalFillBudgetNanos, recorder
+      );
+    };
+  }
+
+  /**
+   * Read the current state of a park, recording the time it takes.
+   */
+  private ParkState snapshot(String parkId) {
+    long start = System.nanoTime();
+    ParkState current = state(parkId).get();
+    parkMetrics.record(PlanStage.FLEET_SNAPSHOT, System.nanoTime() - start, current.fleet().size(), current.version());
+    return current;
   }
 
   /**
-   * Get a list of profitable turbines and sort them in ascending order by production cost.
+   * Compute the summary of the production plan for each of the given scenarios against the current fleet of a park.
+   * The live market price and production target are neither used nor changed.
+   * Each scenario costs two binary searches, so k scenarios take O(k log n) in total.
    *
-   * @param windTurbines the list of all wind turbines
-   * @return list of profitable turbines sorted in ascending order by production cost
+   * @param parkId the park identifier
+   * @param scenarios the candidate market prices and production targets
+   * @return list of {@link PlanSummaryDto}, in the order of the scenarios
+   * @throws IllegalArgumentException if there are too many scenarios, or a price or target is negative
+   * @throws NoSuchElementException if the park does not exist
    */
-  private List<WindTurbine> filterAndSortTurbines(List<WindTurbine> windTurbines) {
-    return windTurbines.stream()
-        // Requirement 1: Keep the turbine online only if you earn money on it
-        .filter(turbine -> turbine.getProductionCost() < marketPrice)
-        // Requirement 3: Prioritize the cheapest production first while still respecting the other requirements
-        .sorted(Comparator.comparingInt(WindTurbine::getProductionCost))
-        .toList();
+  public List<PlanSummaryDto> computePlanSummaries(String parkId, List<PlanScenarioDto> scenarios) {
+    if (scenarios.size() > MAX_SCENARIOS) {
+      throw new IllegalArgumentException(String.format("At most %d scenarios can be computed at once.", MAX_SCENARIOS));
+    }
+
+    FleetIndex fleet = state(parkId).get().fleet();
+    List<PlanSummaryDto> summaries = new ArrayList<>(scenarios.size());
+
+    for (PlanScenarioDto scenario : scenarios) {
+      if (scenario.marketPrice() < 0 || scenario.productionTarget() < 0) {
+        throw new IllegalArgumentException("Market price and production target must be non-negative.");
+      }
+
+      ProductionPlan plan = ProductionPlanner.plan(fleet, scenario.marketPrice(), scenario.productionTarget());
+      summaries.add(new PlanSummaryDto(
+          scenario.marketPrice(), scenario.productionTarget(), plan.onlineTurbines(), plan.totalProduction(), plan.marginalTurbine()
+      ));
+    }
+
+    return summaries;
   }
 
   /**
-   * Get a map of the turbines to run to meet the production target.
+   * Compute the expected production of every turbine in every interval of a schedule against the current fleet of a park.
+   * Intervals with the same market price and production target are planned once, and the result is filled in parallel.
+   * The live market price and production target are neither used nor changed.
    *
-   * @param windTurbines the list of wind turbines to select from
-   * @return map of turbines to run and their capacity
+   * @param parkId the park identifier
+   * @param schedule the market price and production target of each interval
+   * @return the {@link ScheduleDto}
+   * @throws IllegalArgumentException if the intervals are missing, differ in number or are too many, or a price or target is invalid
+   * @throws NoSuchElementException if the park does not exist
    */
-  private Map<String, Integer> selectOnlineTurbines(List<WindTurbine> windTurbines) {
-    Map<String, Integer> onlineTurbines = new HashMap<>();
-    int remainingProduction = productionTarget;
+  public ScheduleDto computeSchedule(String parkId, ScheduleRequestDto schedule) {
+    int[] marketPrices = schedule.marketPrices();
+    int[] productionTargets = schedule.productionTargets();
 
-    // Requirement 2: Run as many turbines as needed to reach the specified production target
-    for (WindTurbine turbine : windTurbines) {
-      int turbineCapacity = turbine.getCapacity();
-      boolean exceedsProductionTarget = remainingProduction - turbineCapacity < 0;
+    if (marketPrices == null || productionTargets == null || marketPrices.length != productionTargets.length) {
+      throw new IllegalArgumentException("Market prices and production targets must be given for the same intervals.");
+    }
+    if (marketPrices.length == 0 || marketPrices.length > MAX_INTERVALS) {
+      throw new IllegalArgumentException(String.format("Schedule must have between 1 and %d intervals.", MAX_INTERVALS));
+    }
 
-      if (exceedsProductionTarget) {
-        break;
-      } else {
-        onlineTurbines.put(turbine.getIdentifier(), turbineCapacity);
-        remainingProduction -= turbineCapacity;
+    FleetIndex fleet = state(parkId).get().fleet();
+    for (int interval = 0; interval < marketPrices.length; interval++) {
+      if (marketPrices[interval] < 0) {
+        throw new IllegalArgumentException("Market price must be non-negative.");
       }
+      validateProductionTarget(productionTargets[interval], fleet);
     }
 
-    return onlineTurbines;
+    int[] onlineTurbines = SchedulePlanner.planIntervals(fleet, marketPrices, productionTargets);
+    int[][] expectedProduction = SchedulePlanner.expectedProduction(fleet, onlineTurbines, ForkJoinPool.commonPool());
+
+    String[] identifiers = new String[fleet.size()];
+    Arrays.setAll(identifiers, fleet::identifier);
+
+    return new ScheduleDto(identifiers, marketPrices.length, expectedProduction);
+  }
+
+  /**
+   * Simulate the production the current greedy plan of a park delivers when the wind lets each turbine produce only a
+   * share of its capacity, and summarize the production and the shortfall against the target over all scenarios.
+   * The scenarios are simulated in parallel on a pool of their own, so a large simulation does not hold up schedules
+   * on the common pool, and the live market price and production target are not changed.
+   *
+   * @param parkId the park identifier
+   * @param scenarios the number of scenarios to simulate
+   * @param model the distribution of the availability of each turbine
+   * @param seed the seed of the random generator, or null for a random one
+   * @return the {@link SimulationDto}
+   * @throws IllegalArgumentException if the number of scenarios is out of range, or if they could draw the availability
+   *     of more turbines than allowed
+   * @throws NoSuchElementException if the park does not exist
+   */
+  public SimulationDto simulateProduction(String parkId, int scenarios, AvailabilityModel model, Long seed) {
+    if (scenarios <= 0 || scenarios > MAX_SIMULATED_SCENARIOS) {
+      throw new IllegalArgumentException(String.format("Simulation must have between 1 and %d scenarios.", MAX_SIMULATED_SCENARIOS));
+    }
+
+    long start = System.nanoTime();
+    ParkState current = state(parkId).get();
+    long draws = (long) scenarios * current.fleet().countCheaperThan(current.marketPrice());
+    if (draws > maxSimulatedDraws) {
+      throw new IllegalArgumentException(String.format(
+          "Simulation may draw at most %d turbine availabilities, but %d scenarios could draw %d.", maxSimulatedDraws, scenarios, draws));
+    }
+
+    long effectiveSeed = seed == null ? ThreadLocalRandom.current().nextLong() : seed;
+    double[] production = ProductionSimulator.simulate(current.fleet(), current.marketPrice(), current.productionTarget(), model,
+        scenarios, effectiveSeed, simulationPool);
+    // Tasks forked by a worker stay in its pool, so the sort does not use the common pool either
+    simulationPool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(production)));
+
+    // The shortfall falls as the production rises, so it is in ascending order when read backwards
+    double[] shortfall = new double[scenarios];
+    for (int scenario = 0; scenario < scenarios; scenario++) {
+      shortfall[scenario] = current.productionTarget() - production[scenarios - 1 - scenario];
+    }
+
+    long plannedProduction = ProductionPlanner.plan(current.fleet(), current.marketPrice(), current.productionTarget()).totalProduction();
+    return new SimulationDto(scenarios, effectiveSeed, current.marketPrice(), current.productionTarget(), plannedProduction,
+        distribution(production), distribution(shortfall), (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Stop the threads of the simulation pool once running simulations are done.
+   */
+  @PreDestroy
+  public void close() {
+    simulationPool.shutdown();
+  }
+
+  /**
+   * Change the capacity, production cost or availability of a turbine. The fleet index and the park state are updated
+   * when the change commits, before this method returns.
+   *
+   * @param parkId the park identifier
+   * @param identifier the turbine identifier
+   * @param patch the values to change, fields that are null are kept
+   * @return the turbine with the change applied
+   * @throws IllegalArgumentException if a value is negative or no value is given
+   * @throws NoSuchElementException if the turbine does not exist in the park
+   */
+  @Transactional
+  public WindTurbineDto updateTurbine(String parkId, String identifier, WindTurbinePatchDto patch) {
+    if (patch.capacity() == null && patch.productionCost() == null && patch.available() == null) {
+      throw new IllegalArgumentException("At least one of capacity, productionCost and available must be given.");
+    }
+    if (patch.capacity() != null && patch.capacity() < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative but is " + patch.capacity() + ".");
+    }
+    if (patch.productionCost() != null && patch.productionCost() < 0) {
+      throw new IllegalArgumentException("Production cost must not be negative but is " + patch.productionCost() + ".");
+    }
+
+    WindTurbine turbine = windTurbineRepository.findById(new WindTurbineId(parkId, identifier))
+        .orElseThrow(() -> new NoSuchElementException("Turbine " + identifier + " does not exist in park " + parkId + "."));
+    if (patch.capacity() != null) {
+      turbine.setCapacity(patch.capacity());
+    }
+    if (patch.productionCost() != null) {
+      turbine.setProductionCost(patch.productionCost());
+    }
+    if (patch.available() != null) {
+      turbine.setAvailable(patch.available());
+    }
+    return WindTurbineDto.of(turbine);
+  }
+
+  /**
+   * Get a list of all the wind turbines in the park.
+   *
+   * @return a list of all wind turbines
+   */
+  public List<WindTurbine> getAllWindTurbines() {
+    return windTurbineRepository.findAll();
+  }
+
+  /**
+   * Summarize values sorted in ascending order by their mean and percentiles, using the nearest rank method.
+   */
+  private static DistributionDto distribution(double[] sorted) {
+    double sum = 0;
+    for (double value : sorted) {
+      sum += value;
+    }
+    return new DistributionDto(sum / sorted.length, percentile(sorted, 0.01), percentile(sorted, 0.05), percentile(sorted, 0.5),
+        percentile(sorted, 0.95), percentile(sorted, 0.99));
+  }
+
+  private static double percentile(double[] sorted, double quantile) {
+    int rank = (int) Math.ceil(quantile * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
   }
 
   /**
    * Get a list of all turbines and their expected production.
    *
-   * @param allTurbines the list of all turbines in the park
-   * @param onlineTurbines the list of online turbines
+   * @param current the park state the plan is computed for
+   * @param productionPlan the production plan
    * @return list of {@link WindTurbineOutputDto}
    */
-  private List<WindTurbineOutputDto> getProductionPlan(List<WindTurbine> allTurbines, Map<String, Integer> onlineTurbines) {
-    return allTurbines.stream()
-        .map(turbine -> {
-          int expectedProduction = onlineTurbines.getOrDefault(turbine.getIdentifier(), 0); // 0 if not running
-          return new WindTurbineOutputDto(turbine.getIdentifier(), expectedProduction);
-        })
-        .collect(Collectors.toList());
+  private List<WindTurbineOutputDto> getProductionPlan(ParkState current, ProductionPlan productionPlan) {
+    long start = System.nanoTime();
+    FleetIndex fleet = productionPlan.fleet();
+    List<WindTurbineOutputDto> outputDtos = new ArrayList<>(fleet.size());
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      outputDtos.add(new WindTurbineOutputDto(fleet.identifier(ordinal), productionPlan.expectedProduction(ordinal)));
+    }
+    parkMetrics.record(PlanStage.OUTPUT_MAPPING, System.nanoTime() - start, fleet.size(), current.version());
+    return outputDtos;
   }
 }
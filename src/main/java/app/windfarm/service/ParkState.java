@@ -0,0 +1,45 @@
+package app.windfarm.service;
+
+import app.windfarm.fleet.FleetIndex;
+
+/**
+ * Immutable snapshot of the park control state. Every change produces a new snapshot with a higher version,
+ * so a reader holding a snapshot always sees a consistent market price, production target and fleet.
+ *
+ * @param version the state version, increased by every change
+ * @param marketPrice the market price
+ * @param productionTarget the production target
+ * @param fleet the fleet index
+ */
+public record ParkState(long version, int marketPrice, int productionTarget, FleetIndex fleet) {
+
+  /**
+   * Get a copy of this state with the given market price.
+   *
+   * @param marketPrice the new market price
+   * @return the next state
+   */
+  public ParkState withMarketPrice(int marketPrice) {
+    return new ParkState(version + 1, marketPrice, productionTarget, fleet);
+  }
+
+  /**
+   * Get a copy of this state with the given production target.
+   *
+   * @param productionTarget the new production target
+   * @return the next state
+   */
+  public ParkState withProductionTarget(int productionTarget) {
+    return new ParkState(version + 1, marketPrice, productionTarget, fleet);
+  }
+
+  /**
+   * Get a copy of this state with the given fleet.
+   *
+   * @param fleet the new fleet index
+   * @return the next state
+   */
+  public ParkState withFleet(FleetIndex fleet) {
+    return new ParkState(version + 1, marketPrice, productionTarget, fleet);
+  }
+}
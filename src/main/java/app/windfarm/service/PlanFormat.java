@@ -0,0 +1,81 @@
+package app.windfarm.service;
+
+import app.windfarm.planning.ProductionPlan;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/** Representations of a production plan, chosen by the {@code Accept} header of a request. */
+public enum PlanFormat {
+  /** JSON array with an {@code identifier} and {@code expectedProduction} object per turbine. */
+  JSON(MediaType.APPLICATION_JSON_VALUE),
+  /** JSON object with an {@code identifiers} array and an {@code expectedProduction} array in the same order. */
+  COLUMNAR(PlanFormat.COLUMNAR_VALUE),
+  /** Length-prefixed binary layout, read by {@link app.windfarm.client.ProductionPlanDecoder}. */
+  BINARY(PlanFormat.BINARY_VALUE);
+
+  /** Media type of the columnar JSON representation. */
+  public static final String COLUMNAR_VALUE = "application/vnd.windfarm.plan.columnar+json";
+  /** Media type of the binary representation. */
+  public static final String BINARY_VALUE = "application/vnd.windfarm.plan.binary";
+
+  private final MediaType mediaType;
+
+  PlanFormat(String mediaType) {
+    this.mediaType = MediaType.parseMediaType(mediaType);
+  }
+
+  /**
+   * Get the media type of the representation.
+   *
+   * @return the media type
+   */
+  public MediaType mediaType() {
+    return mediaType;
+  }
+
+  /**
+   * Serialize a production plan in this format.
+   *
+   * @param productionPlan the production plan
+   * @param onlineOnly true to leave out turbines without expected production, ignored by {@link #JSON}
+   * @return the serialized plan
+   */
+  public byte[] write(ProductionPlan productionPlan, boolean onlineOnly) {
+    return switch (this) {
+      case JSON -> ProductionPlanJsonWriter.write(productionPlan);
+      case COLUMNAR -> ProductionPlanJsonWriter.writeColumns(productionPlan, onlineOnly);
+      case BINARY -> ProductionPlanBinaryWriter.write(productionPlan, onlineOnly);
+    };
+  }
+
+  /**
+   * Choose the format for the given accepted media types, preferring higher quality values and, among formats
+   * accepted equally, the order of the formats. No accepted media types accept every format.
+   *
+   * @param acceptedMediaTypes the media types of the {@code Accept} header
+   * @return the format, or empty if no format is acceptable
+   */
+  public static Optional<PlanFormat> negotiate(List<MediaType> acceptedMediaTypes) {
+    if (acceptedMediaTypes.isEmpty()) {
+      return Optional.of(JSON);
+    }
+
+    List<MediaType> byQuality = new ArrayList<>(acceptedMediaTypes);
+    byQuality.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+    for (MediaType accepted : byQuality) {
+      if (accepted.getQualityValue() == 0) {
+        break;
+      }
+      for (PlanFormat format : values()) {
+        if (accepted.includes(format.mediaType)) {
+          return Optional.of(format);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+}
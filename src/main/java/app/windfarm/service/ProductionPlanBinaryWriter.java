@@ -0,0 +1,127 @@
+package app.windfarm.service;
+
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes a production plan to the binary layout documented and read by {@link app.windfarm.client.ProductionPlanDecoder}.
+ */
+public final class ProductionPlanBinaryWriter {
+
+  private static final int MAGIC = 0x5746504C;
+  private static final int VERSION = 1;
+  private static final int FLAG_ONLINE_ONLY = 1;
+  private static final int HEADER_SIZE = 14;
+
+  private ProductionPlanBinaryWriter() {}
+
+  /**
+   * Serialize the expected production of the turbines, in identifier order.
+   *
+   * @param productionPlan the production plan
+   * @param onlineOnly true to leave out turbines without expected production
+   * @return the serialized plan
+   */
+  public static byte[] write(ProductionPlan productionPlan, boolean onlineOnly) {
+    FleetIndex fleet = productionPlan.fleet();
+
+    // Measure first so the output is written into an array of the exact size, without encoding identifiers to separate arrays
+    long size = HEADER_SIZE;
+    int turbines = 0;
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      if (!onlineOnly || productionPlan.expectedProduction(ordinal) != 0) {
+        int identifierLength = utf8Length(fleet.identifier(ordinal));
+        size += varintLength(identifierLength) + identifierLength + varintLength(productionPlan.expectedProduction(ordinal));
+        turbines++;
+      }
+    }
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Production plan of " + fleet.size() + " turbines is too large to serialize.");
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) size)
+        .putInt(MAGIC)
+        .put((byte) VERSION)
+        .put((byte) (onlineOnly ? FLAG_ONLINE_ONLY : 0))
+        .putInt(fleet.size())
+        .putInt(turbines);
+
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      int expectedProduction = productionPlan.expectedProduction(ordinal);
+      if (!onlineOnly || expectedProduction != 0) {
+        String identifier = fleet.identifier(ordinal);
+        putVarint(utf8Length(identifier), buffer);
+        putUtf8(identifier, buffer);
+        putVarint(expectedProduction, buffer);
+      }
+    }
+
+    return buffer.array();
+  }
+
+  /**
+   * Count the bytes of the given string in UTF-8, with unpaired surrogates encoded as {@code ?} like {@link String#getBytes}.
+   */
+  private static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += Character.isSurrogate(c) ? 1 : 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Count the bytes of the given value as an unsigned varint.
+   */
+  private static int varintLength(int value) {
+    return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+  }
+
+  /**
+   * Write the given value as an unsigned varint: seven bits per byte, least significant first, with the high bit set on
+   * every byte but the last.
+   */
+  private static void putVarint(int value, ByteBuffer buffer) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  /**
+   * Write the given string in UTF-8, as counted by {@link #utf8Length(String)}.
+   */
+  private static void putUtf8(String value, ByteBuffer buffer) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.put((byte) (0xF0 | (codePoint >> 18)))
+            .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+            .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+            .put((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        buffer.put((byte) '?');
+      } else {
+        buffer.put((byte) (0xE0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3F))).put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+}
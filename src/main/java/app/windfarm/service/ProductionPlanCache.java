@@ -0,0 +1,153 @@
+package app.windfarm.service;
+
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.planning.PlanStage;
+import app.windfarm.planning.ProductionPlan;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Caches the production plan of each park, serialized in each requested mode and format, for the state it was computed for.
+ *
+ * <p>A plan depends only on the market price, the production target and the fleet version, so those identify a cached
+ * plan and, together with its representation, make up its entity tag. Each representation of a park keeps only its
+ * latest plan, and a plan is dropped as soon as a change to its park makes it stale.
+ *
+ * <p>A {@link ProductionPlan#fallback() fallback} plan depends on how long the optimal fill took, so it is never cached,
+ * and its entity tag is marked so that it does not match the tag of the plan a later request may compute in time.
+ */
+@Component
+public class ProductionPlanCache {
+
+  private final ParkService parkService;
+  private final ParkMetrics parkMetrics;
+  private final Map<String, Map<Representation, CachedPlan>> plansByPark = new ConcurrentHashMap<>();
+
+  // Fleet versions restart at every startup, so tags from an earlier run must not match
+  private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+
+  /**
+   * Constructor for the production plan cache. Registers for state changes of every park.
+   *
+   * @param parkService the park service
+   * @param parkMetrics the metrics to record the serialization time in
+   */
+  public ProductionPlanCache(ParkService parkService, ParkMetrics parkMetrics) {
+    this.parkService = parkService;
+    this.parkMetrics = parkMetrics;
+    parkService.addStateListener(this::evictStale);
+  }
+
+  /**
+   * Get the entity tag of the production plan for the given state, without computing the plan.
+   *
+   * @param state the park state
+   * @param mode how to choose the online turbines
+   * @param format the format to serialize the plan in
+   * @param onlineOnly true to leave out turbines without expected production, ignored by {@link PlanFormat#JSON}
+   * @return the entity tag, quoted
+   */
+  public String etag(ParkState state, PlanMode mode, PlanFormat format, boolean onlineOnly) {
+    return etag(state, Representation.of(mode, format, onlineOnly));
+  }
+
+  /**
+   * Get the production plan for the given state of a park, computing and caching it if it is not cached.
+   *
+   * @param parkId the park identifier
+   * @param state the park state
+   * @param mode how to choose the online turbines
+   * @param format the format to serialize the plan in
+   * @param onlineOnly true to leave out turbines without expected production, ignored by {@link PlanFormat#JSON}
+   * @return the cached plan
+   */
+  public CachedPlan get(String parkId, ParkState state, PlanMode mode, PlanFormat format, boolean onlineOnly) {
+    Representation representation = Representation.of(mode, format, onlineOnly);
+    Map<Representation, CachedPlan> plans = plansByPark.computeIfAbsent(parkId, k -> new ConcurrentHashMap<>());
+    CachedPlan cached = plans.get(representation);
+    if (cached != null && cached.isFor(state)) {
+      return cached;
+    }
+
+    ProductionPlan productionPlan = parkService.planProduction(state, mode);
+    String etag = etag(state, representation);
+    if (productionPlan.fallback()) {
+      return new CachedPlan(etag.substring(0, etag.length() - 1) + "-fallback\"", state, productionPlan,
+          serialize(state, productionPlan, representation), false);
+    }
+    CachedPlan computed = new CachedPlan(etag, state, productionPlan, serialize(state, productionPlan, representation), false);
+
+    // Keep whichever plan belongs to the newer state if another request computed one meanwhile
+    plans.merge(representation, computed.asCached(), (current, offered) -> offered.state().version() > current.state().version() ? offered : current);
+    return computed;
+  }
+
+  /**
+   * Drop the cached plans of a park that no longer match its state.
+   *
+   * @param parkId the park identifier
+   * @param state the new park state
+   */
+  private void evictStale(String parkId, ParkState state) {
+    Map<Representation, CachedPlan> plans = plansByPark.get(parkId);
+    if (plans != null) {
+      plans.values().removeIf(cached -> !cached.isFor(state));
+    }
+  }
+
+  private String etag(ParkState state, Representation representation) {
+    return String.format("\"%s-%d-%d-%d-%s-%s%s\"",
+        instanceId, state.fleet().version(), state.marketPrice(), state.productionTarget(),
+        representation.mode().name().toLowerCase(), representation.format().name().toLowerCase(), representation.onlineOnly() ? "-online" : "");
+  }
+
+  /**
+   * Serialize the production plan.
+   */
+  private byte[] serialize(ParkState state, ProductionPlan productionPlan, Representation representation) {
+    long start = System.nanoTime();
+    byte[] body = representation.format().write(productionPlan, representation.onlineOnly());
+    parkMetrics.record(PlanStage.OUTPUT_MAPPING, System.nanoTime() - start, state.fleet().size(), state.version());
+    return body;
+  }
+
+  /** How a plan is computed and serialized. */
+  private record Representation(PlanMode mode, PlanFormat format, boolean onlineOnly) {
+
+    static Representation of(PlanMode mode, PlanFormat format, boolean onlineOnly) {
+      return new Representation(mode, format, onlineOnly && format != PlanFormat.JSON);
+    }
+  }
+
+  /**
+   * A production plan with its serialization.
+   *
+   * @param etag the entity tag, quoted
+   * @param state the park state the plan was computed for
+   * @param productionPlan the compact production plan
+   * @param body the serialized plan
+   * @param fromCache true if the plan was served from the cache rather than computed for the request
+   */
+  public record CachedPlan(String etag, ParkState state, ProductionPlan productionPlan, byte[] body, boolean fromCache) {
+
+    /**
+     * Check whether the plan is still valid for the given state.
+     *
+     * @param other the park state
+     * @return true if the market price, production target and fleet are the same
+     */
+    public boolean isFor(ParkState other) {
+      return state.marketPrice() == other.marketPrice()
+          && state.productionTarget() == other.productionTarget()
+          && state.fleet().version() == other.fleet().version();
+    }
+
+    private CachedPlan asCached() {
+      return new CachedPlan(etag, state, productionPlan, body, true);
+    }
+  }
+}
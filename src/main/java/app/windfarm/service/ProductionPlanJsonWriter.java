@@ -0,0 +1,188 @@
+package app.windfarm.service;
+
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes a production plan to the same JSON array of {@code {"identifier":...,"expectedProduction":...}} objects
+ * that Jackson writes for a list of {@link app.windfarm.dtos.WindTurbineOutputDto}, byte for byte, or to the columnar
+ * JSON object that Jackson writes for a {@link app.windfarm.dtos.PlanColumnsDto}.
+ *
+ * <p>The exact length of the output is measured first, and the bytes are then written straight from the fleet index
+ * into an array of that length. The returned array is the only allocation, so nothing is allocated per turbine and no
+ * intermediate buffer has to grow or be copied.
+ */
+public final class ProductionPlanJsonWriter {
+
+  private static final byte[] TURBINE_PREFIX = "{\"identifier\":\"".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] PRODUCTION_PREFIX = "\",\"expectedProduction\":".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] FLEET_SIZE_PREFIX = "{\"fleetSize\":".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] IDENTIFIERS_PREFIX = ",\"identifiers\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] PRODUCTIONS_PREFIX = "],\"expectedProduction\":[".getBytes(StandardCharsets.UTF_8);
+
+  private final byte[] buffer;
+  private int length;
+
+  private ProductionPlanJsonWriter(byte[] buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Serialize the expected production of every turbine, in identifier order.
+   *
+   * @param productionPlan the production plan
+   * @return the UTF-8 encoded JSON array
+   */
+  public static byte[] write(ProductionPlan productionPlan) {
+    ProductionPlanJsonWriter writer = new ProductionPlanJsonWriter(new byte[measure(productionPlan)]);
+    writer.writeRows(productionPlan);
+    return writer.buffer;
+  }
+
+  /**
+   * Serialize the identifiers and the expected production of the turbines as two arrays, in identifier order.
+   * Without the repeated field names this is about half the size of {@link #write(ProductionPlan)}.
+   *
+   * @param productionPlan the production plan
+   * @param onlineOnly true to leave out turbines without expected production
+   * @return the UTF-8 encoded JSON object
+   */
+  public static byte[] writeColumns(ProductionPlan productionPlan, boolean onlineOnly) {
+    ProductionPlanJsonWriter writer = new ProductionPlanJsonWriter(new byte[measureColumns(productionPlan, onlineOnly)]);
+    writer.writeArrays(productionPlan, onlineOnly);
+    return writer.buffer;
+  }
+
+  /**
+   * Count the bytes of the serialized plan.
+   */
+  private static int measure(ProductionPlan productionPlan) {
+    FleetIndex fleet = productionPlan.fleet();
+    long size = 2 + Math.max(0, fleet.size() - 1);
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      size += TURBINE_PREFIX.length + JsonStringEscaper.escapedLength(fleet.identifier(ordinal)) + PRODUCTION_PREFIX.length
+          + intLength(productionPlan.expectedProduction(ordinal)) + 1;
+    }
+    return checkedSize(size, fleet);
+  }
+
+  /**
+   * Count the bytes of the serialized columns.
+   */
+  private static int measureColumns(ProductionPlan productionPlan, boolean onlineOnly) {
+    FleetIndex fleet = productionPlan.fleet();
+    long size = FLEET_SIZE_PREFIX.length + intLength(fleet.size()) + IDENTIFIERS_PREFIX.length + PRODUCTIONS_PREFIX.length + 2;
+    int turbines = 0;
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      int expectedProduction = productionPlan.expectedProduction(ordinal);
+      if (!onlineOnly || expectedProduction != 0) {
+        size += JsonStringEscaper.escapedLength(fleet.identifier(ordinal)) + 2 + intLength(expectedProduction);
+        turbines++;
+      }
+    }
+    // Separators in both arrays
+    size += 2L * Math.max(0, turbines - 1);
+    return checkedSize(size, fleet);
+  }
+
+  private static int checkedSize(long size, FleetIndex fleet) {
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Production plan of " + fleet.size() + " turbines is too large to serialize.");
+    }
+    return (int) size;
+  }
+
+  private void writeRows(ProductionPlan productionPlan) {
+    FleetIndex fleet = productionPlan.fleet();
+    buffer[length++] = '[';
+
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      if (ordinal > 0) {
+        buffer[length++] = ',';
+      }
+      writeBytes(TURBINE_PREFIX);
+      length = JsonStringEscaper.write(fleet.identifier(ordinal), buffer, length);
+      writeBytes(PRODUCTION_PREFIX);
+      writeInt(productionPlan.expectedProduction(ordinal));
+      buffer[length++] = '}';
+    }
+
+    buffer[length++] = ']';
+  }
+
+  private void writeArrays(ProductionPlan productionPlan, boolean onlineOnly) {
+    FleetIndex fleet = productionPlan.fleet();
+    writeBytes(FLEET_SIZE_PREFIX);
+    writeInt(fleet.size());
+
+    writeBytes(IDENTIFIERS_PREFIX);
+    boolean first = true;
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      if (!onlineOnly || productionPlan.expectedProduction(ordinal) != 0) {
+        if (!first) {
+          buffer[length++] = ',';
+        }
+        buffer[length++] = '"';
+        length = JsonStringEscaper.write(fleet.identifier(ordinal), buffer, length);
+        buffer[length++] = '"';
+        first = false;
+      }
+    }
+
+    writeBytes(PRODUCTIONS_PREFIX);
+    first = true;
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      int expectedProduction = productionPlan.expectedProduction(ordinal);
+      if (!onlineOnly || expectedProduction != 0) {
+        if (!first) {
+          buffer[length++] = ',';
+        }
+        writeInt(expectedProduction);
+        first = false;
+      }
+    }
+
+    buffer[length++] = ']';
+    buffer[length++] = '}';
+  }
+
+  /**
+   * Write the decimal digits of the given value.
+   */
+  private void writeInt(int value) {
+    long remaining = value;
+    if (remaining < 0) {
+      buffer[length++] = '-';
+      remaining = -remaining;
+    }
+
+    int digits = digitCount(remaining);
+    for (int position = length + digits - 1; position >= length; position--) {
+      buffer[position] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    length += digits;
+  }
+
+  /**
+   * Count the bytes {@link #writeInt(int)} writes for the given value.
+   */
+  private static int intLength(int value) {
+    return value < 0 ? 1 + digitCount(-(long) value) : digitCount(value);
+  }
+
+  private static int digitCount(long value) {
+    int digits = 1;
+    for (long bound = 10; bound <= value; bound *= 10) {
+      digits++;
+    }
+    return digits;
+  }
+
+  private void writeBytes(byte[] bytes) {
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+}
@@ -0,0 +1,226 @@
+package app.windfarm.service;
+
+import app.windfarm.dtos.ImportErrorDto;
+import app.windfarm.dtos.ImportReportDto;
+import app.windfarm.dtos.WindTurbineInputDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndexManager;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service layer for adding many turbines at once.
+ *
+ * <p>The input is read line by line and written in chunks, each in its own transaction, with the
+ * inserts sent to the database as JDBC batches. Only the current chunk is held in memory. The fleet
+ * index is refreshed once after the last chunk rather than after every chunk.
+ */
+@Service
+public class TurbineImportService {
+
+  /** Supported input formats. */
+  public enum Format {
+    /** One {@code identifier,capacity,productionCost} row per line, with an optional header line. */
+    CSV,
+    /** One JSON object with the fields of {@link WindTurbineInputDto} per line. */
+    NDJSON
+  }
+
+  private static final int MAX_CHUNK_SIZE = 100_000;
+  private static final int MAX_REPORTED_ERRORS = 100;
+  private static final Logger logger = LoggerFactory.getLogger(TurbineImportService.class);
+
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final FleetIndexManager fleetIndexManager;
+  private final ObjectMapper objectMapper;
+  private final int defaultChunkSize;
+
+  /**
+   * Constructor for the import service.
+   *
+   * @param entityManager the entity manager
+   * @param transactionTemplate the template for running each chunk in a transaction
+   * @param fleetIndexManager the manager of the in-memory fleet index
+   * @param objectMapper the object mapper for NDJSON rows
+   * @param defaultChunkSize the number of rows per chunk if not given per import
+   */
+  public TurbineImportService(EntityManager entityManager, TransactionTemplate transactionTemplate, FleetIndexManager fleetIndexManager,
+                              ObjectMapper objectMapper, @Value("${windfarm.import.chunk-size:1000}") int defaultChunkSize) {
+    this.entityManager = entityManager;
+    this.transactionTemplate = transactionTemplate;
+    this.fleetIndexManager = fleetIndexManager;
+    this.objectMapper = objectMapper;
+    this.defaultChunkSize = defaultChunkSize;
+  }
+
+  /**
+   * Import the turbines from the given stream into a park. The park is created if it does not exist yet.
+   *
+   * @param parkId the park identifier
+   * @param input the stream of rows, read until the end but not closed
+   * @param format the format of the rows
+   * @param chunkSize the number of rows per chunk, or null for the configured default
+   * @return the {@link ImportReportDto}
+   * @throws IllegalArgumentException if the chunk size is out of range
+   * @throws UncheckedIOException if reading the stream fails
+   */
+  public ImportReportDto importTurbines(String parkId, InputStream input, Format format, Integer chunkSize) {
+    int rowsPerChunk = chunkSize == null ? defaultChunkSize : chunkSize;
+    if (rowsPerChunk < 1 || rowsPerChunk > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException(String.format("Chunk size must be in range [1, %d] but is %d.", MAX_CHUNK_SIZE, rowsPerChunk));
+    }
+
+    ImportReportDto report = fleetIndexManager.runBatch(() -> new ImportRun(parkId, format, rowsPerChunk).run(input));
+
+    logger.info("Imported {} turbines into park {} in {} chunks ({} rejected) in {}ms, {} rows/s",
+        report.rowsImported(), parkId, report.chunks(), report.rowsRejected(), report.elapsedMillis(), Math.round(report.rowsPerSecond()));
+
+    return report;
+  }
+
+  /** State of a single import. */
+  private final class ImportRun {
+
+    private final String parkId;
+    private final Format format;
+    private final int rowsPerChunk;
+    private final List<WindTurbine> chunk;
+    private final List<ImportErrorDto> errors = new ArrayList<>();
+    private long chunkFirstLine;
+    private long rowsImported;
+    private long rowsRejected;
+    private int chunks;
+
+    ImportRun(String parkId, Format format, int rowsPerChunk) {
+      this.parkId = parkId;
+      this.format = format;
+      this.rowsPerChunk = rowsPerChunk;
+      this.chunk = new ArrayList<>(rowsPerChunk);
+    }
+
+    ImportReportDto run(InputStream input) {
+      long start = System.nanoTime();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+      long lineNumber = 0;
+
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          lineNumber++;
+          if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && isCsvHeader(line))) {
+            continue;
+          }
+
+          if (chunk.isEmpty()) {
+            chunkFirstLine = lineNumber;
+          }
+          try {
+            chunk.add(parse(line));
+          } catch (IllegalArgumentException e) {
+            rowsRejected++;
+            addError(new ImportErrorDto(chunks + 1, lineNumber, lineNumber, e.getMessage()));
+          }
+
+          if (chunk.size() == rowsPerChunk) {
+            writeChunk(lineNumber);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read import input.", e);
+      }
+      writeChunk(lineNumber);
+
+      long elapsedNanos = Math.max(1, System.nanoTime() - start);
+      double rowsPerSecond = (rowsImported + rowsRejected) * 1e9 / elapsedNanos;
+      return new ImportReportDto(rowsImported, rowsRejected, chunks, elapsedNanos / 1_000_000, rowsPerSecond, errors);
+    }
+
+    /**
+     * Write the current chunk in one transaction. If any row fails, the whole chunk is rolled back and reported.
+     */
+    private void writeChunk(long lastLine) {
+      if (chunk.isEmpty()) {
+        return;
+      }
+      chunks++;
+
+      try {
+        transactionTemplate.executeWithoutResult(status -> {
+          chunk.forEach(entityManager::persist);
+          entityManager.flush();
+          entityManager.clear();
+        });
+        rowsImported += chunk.size();
+      } catch (RuntimeException e) {
+        rowsRejected += chunk.size();
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        addError(new ImportErrorDto(chunks, chunkFirstLine, lastLine, message));
+      }
+
+      chunk.clear();
+    }
+
+    private WindTurbine parse(String line) {
+      WindTurbineInputDto input = switch (format) {
+        case CSV -> parseCsv(line);
+        case NDJSON -> parseNdjson(line);
+      };
+
+      if (input.identifier() == null || input.identifier().isBlank()) {
+        throw new IllegalArgumentException("Identifier must not be blank.");
+      }
+      if (input.capacity() < 0 || input.productionCost() < 0) {
+        throw new IllegalArgumentException("Capacity and production cost must be non-negative.");
+      }
+
+      return new WindTurbine(parkId, input.identifier(), input.capacity(), input.productionCost());
+    }
+
+    private WindTurbineInputDto parseCsv(String line) {
+      String[] fields = line.split(",", -1);
+      if (fields.length != 3) {
+        throw new IllegalArgumentException("Expected 3 fields (identifier,capacity,productionCost) but found " + fields.length + ".");
+      }
+      try {
+        return new WindTurbineInputDto(fields[0].trim(), Integer.parseInt(fields[1].trim()), Integer.parseInt(fields[2].trim()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Capacity and production cost must be integers.");
+      }
+    }
+
+    private WindTurbineInputDto parseNdjson(String line) {
+      try {
+        return objectMapper.readValue(line, WindTurbineInputDto.class);
+      } catch (JsonProcessingException e) {
+        throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+      }
+    }
+
+    private boolean isCsvHeader(String line) {
+      return line.trim().toLowerCase().startsWith("identifier");
+    }
+
+    private void addError(ImportErrorDto error) {
+      if (errors.size() < MAX_REPORTED_ERRORS) {
+        errors.add(error);
+      }
+    }
+  }
+}
@@ -0,0 +1,156 @@
+import app.windfarm.audit.DispatchAuditLog;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.repository.WindTurbineRepository;
+import app.windfarm.service.ParkState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Unit tests for the asynchronous audit log of dispatch decisions. */
+public class DispatchAuditLogTest {
+
+  @TempDir
+  Path directory;
+
+  private SimpleMeterRegistry meterRegistry;
+  private ParkMetrics parkMetrics;
+  private ParkState state;
+  private ProductionPlan productionPlan;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    parkMetrics = new ParkMetrics(meterRegistry, new FleetIndexManager(Mockito.mock(WindTurbineRepository.class)));
+    FleetIndex fleet = FleetIndex.of(1, List.of(new FleetEntry("A", 2, 15), new FleetEntry("B", 2, 5), new FleetEntry("C", 6, 1)));
+    state = new ParkState(7, 10, 8, fleet);
+    productionPlan = ProductionPlanner.plan(fleet, state.marketPrice(), state.productionTarget());
+  }
+
+  @Test
+  void writesOneLinePerDecisionWithTheDispatchedTurbinesInCostOrder() throws IOException {
+    DispatchAuditLog auditLog = new DispatchAuditLog(parkMetrics, true, directory, 1.0, 16,
+        DispatchAuditLog.Backpressure.DROP, DataSize.ofMegabytes(1), 3);
+    auditLog.record("north", state, PlanMode.GREEDY, productionPlan);
+    auditLog.close();
+
+    List<String> lines = lines();
+    assertThat(lines).hasSize(1);
+    assertThat(lines.get(0))
+        .matches("\\S+Z park=north version=7 price=10 target=8 mode=greedy online=2 production=8 dispatched=C:6,B:2");
+    assertThat(meterRegistry.get("windfarm.audit.records").tag("outcome", "written").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void waitingForRoomLosesNoDecisionOfConcurrentRequests() throws Exception {
+    DispatchAuditLog auditLog = new DispatchAuditLog(parkMetrics, true, directory, 1.0, 4,
+        DispatchAuditLog.Backpressure.WAIT, DataSize.ofMegabytes(1), 3);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String park = "park" + t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 500; i++) {
+          auditLog.record(park, state, PlanMode.GREEDY, productionPlan);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    auditLog.close();
+
+    List<String> lines = lines();
+    assertThat(lines).hasSize(2000);
+    for (int t = 0; t < 4; t++) {
+      String park = " park=park" + t + " ";
+      assertThat(lines.stream().filter(line -> line.contains(park))).hasSize(500);
+    }
+    assertThat(meterRegistry.get("windfarm.audit.records").tag("outcome", "dropped").counter().count()).isZero();
+  }
+
+  @Test
+  void rollsOverToNewFilesAndKeepsOnlyTheNewest() throws IOException {
+    DispatchAuditLog auditLog = new DispatchAuditLog(parkMetrics, true, directory, 1.0, 16,
+        DispatchAuditLog.Backpressure.WAIT, DataSize.ofBytes(200), 2);
+    for (int i = 0; i < 20; i++) {
+      auditLog.record("north", state, PlanMode.GREEDY, productionPlan);
+    }
+    auditLog.close();
+
+    // A later run starts a new file after the existing ones
+    DispatchAuditLog restarted = new DispatchAuditLog(parkMetrics, true, directory, 1.0, 16,
+        DispatchAuditLog.Backpressure.WAIT, DataSize.ofBytes(200), 2);
+    restarted.record("south", state, PlanMode.GREEDY, productionPlan);
+    restarted.close();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.count()).isEqualTo(2);
+    }
+    List<String> lines = lines();
+    assertThat(lines).isNotEmpty();
+    assertThat(lines.get(lines.size() - 1)).contains(" park=south ");
+  }
+
+  @Test
+  void rollsOverAtTheEncodedSizeOfTheLines() throws IOException {
+    // Each line holds about 130 bytes of ASCII and 300 bytes, but only 100 chars, of park identifier
+    String park = "風".repeat(100);
+    DispatchAuditLog auditLog = new DispatchAuditLog(parkMetrics, true, directory, 1.0, 16,
+        DispatchAuditLog.Backpressure.WAIT, DataSize.ofBytes(500), 10);
+    for (int i = 0; i < 6; i++) {
+      auditLog.record(park, state, PlanMode.GREEDY, productionPlan);
+    }
+    auditLog.close();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> sorted = files.sorted().toList();
+      assertThat(sorted).hasSize(3);
+      for (Path file : sorted) {
+        assertThat(Files.readAllLines(file)).hasSize(2);
+      }
+    }
+  }
+
+  @Test
+  void samplingNothingWritesNothing() throws IOException {
+    DispatchAuditLog auditLog = new DispatchAuditLog(parkMetrics, true, directory, 0.0, 16,
+        DispatchAuditLog.Backpressure.DROP, DataSize.ofMegabytes(1), 3);
+    auditLog.record("north", state, PlanMode.GREEDY, productionPlan);
+    auditLog.close();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.count()).isZero();
+    }
+  }
+
+  /**
+   * Read the lines of all audit files, oldest first.
+   */
+  private List<String> lines() throws IOException {
+    List<String> lines = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.sorted().toList()) {
+        lines.addAll(Files.readAllLines(file));
+      }
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,126 @@
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetImage;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.repository.CostLevelSummary;
+import app.windfarm.repository.WindTurbineRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Round trip tests of the memory-mapped fleet image and of loading the fleet index from it. */
+public class FleetImageTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void readsTheIndexesItWrote() throws Exception {
+    Random random = new Random(42);
+    Map<String, FleetIndex> fleets = new LinkedHashMap<>();
+    fleets.put(WindTurbine.DEFAULT_PARK_ID, FleetIndex.of(3, List.of(
+        new FleetEntry("A", 2, 15),
+        new FleetEntry("B", 2, 5, false),
+        new FleetEntry("vindmølle-🌬", 5, 3)
+    )));
+    fleets.put("empty", FleetIndex.empty());
+    for (int park = 0; park < 3; park++) {
+      List<FleetEntry> entries = new ArrayList<>();
+      for (int turbine = 0; turbine < 1 + random.nextInt(5000); turbine++) {
+        entries.add(new FleetEntry("T" + turbine + "x".repeat(random.nextInt(4)), random.nextInt(100), random.nextInt(20), random.nextInt(10) > 0));
+      }
+      fleets.put("park-" + park, FleetIndex.of(park + 1, entries));
+    }
+    Path file = directory.resolve("fleet.img");
+
+    FleetImage.write(fleets, file);
+    Map<String, FleetIndex> read = FleetImage.read(file);
+
+    assertThat(read.keySet()).containsExactlyElementsOf(fleets.keySet());
+    fleets.forEach((parkId, fleet) -> {
+      FleetIndex copy = read.get(parkId);
+      assertThat(copy.version()).isEqualTo(fleet.version());
+      assertThat(copy.entries()).containsExactly(fleet.entries());
+      assertThat(copy.capacity()).isEqualTo(fleet.capacity());
+      assertThat(copy.availableCount()).isEqualTo(fleet.availableCount());
+      for (int rank = 0; rank < fleet.size(); rank++) {
+        assertThat(copy.ordinalAt(rank)).isEqualTo(fleet.ordinalAt(rank));
+        assertThat(copy.cumulativeCapacity(rank + 1)).isEqualTo(fleet.cumulativeCapacity(rank + 1));
+      }
+    });
+  }
+
+  @Test
+  void rejectsCorruptImage() throws Exception {
+    Path file = directory.resolve("fleet.img");
+    FleetImage.write(Map.of("north", FleetIndex.of(1, List.of(new FleetEntry("A", 2, 15)))), file);
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length - 9] ^= 1;
+    Files.write(file, bytes);
+
+    assertThatThrownBy(() -> FleetImage.read(file)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void managerLoadsImageOnlyIfItMatchesTheDatabase() throws Exception {
+    Path file = directory.resolve("fleet.img");
+    FleetIndex north = FleetIndex.of(7, List.of(new FleetEntry("N1", 3, 2), new FleetEntry("N2", 5, 8)));
+    FleetImage.write(Map.of("north", north), file);
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.summarizeByProductionCost())
+        .thenReturn(List.of(new Summary("north", 2, true, 1, 3), new Summary("north", 8, true, 1, 5)));
+
+    FleetIndexManager fleetIndexManager = new FleetIndexManager(windTurbineRepository, true, file);
+
+    assertThat(fleetIndexManager.current("north").version()).isEqualTo(7);
+    assertThat(fleetIndexManager.current("north").entries()).containsExactly(north.entries());
+    assertThat(fleetIndexManager.current(WindTurbine.DEFAULT_PARK_ID).size()).isZero();
+    Mockito.verify(windTurbineRepository, Mockito.never()).findAll();
+    // The image is consumed, so a crash before the next shutdown falls back to the database
+    assertThat(file).doesNotExist();
+
+    fleetIndexManager.writeImage();
+    Mockito.when(windTurbineRepository.summarizeByProductionCost()).thenReturn(List.of(new Summary(WindTurbine.DEFAULT_PARK_ID, 15, true, 1, 2)));
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(new WindTurbine("A", 2, 15)));
+
+    FleetIndexManager reloaded = new FleetIndexManager(windTurbineRepository, true, file);
+
+    assertThat(reloaded.current("north")).isNull();
+    assertThat(reloaded.current(WindTurbine.DEFAULT_PARK_ID).size()).isEqualTo(1);
+  }
+
+  @Test
+  void managerLoadsFromTheDatabaseIfTurbinesChangedWithoutChangingTheirCount() throws Exception {
+    Path file = directory.resolve("fleet.img");
+    FleetImage.write(Map.of("north", FleetIndex.of(7, List.of(new FleetEntry("N1", 3, 2), new FleetEntry("N2", 5, 8)))), file);
+    WindTurbine unavailable = new WindTurbine("north", "N2", 5, 8);
+    unavailable.setAvailable(false);
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.summarizeByProductionCost())
+        .thenReturn(List.of(new Summary("north", 2, true, 1, 3), new Summary("north", 8, false, 1, 5)));
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(new WindTurbine("north", "N1", 3, 2), unavailable));
+
+    FleetIndexManager fleetIndexManager = new FleetIndexManager(windTurbineRepository, true, file);
+
+    assertThat(fleetIndexManager.current("north").version()).isEqualTo(1);
+    assertThat(fleetIndexManager.current("north").availableCount()).isEqualTo(1);
+    assertThat(file).doesNotExist();
+  }
+
+  /** Row of the turbine aggregate of the database. */
+  private record Summary(String getParkId, int getProductionCost, boolean isAvailable, long getTurbines, long getCapacity)
+      implements CostLevelSummary {}
+}
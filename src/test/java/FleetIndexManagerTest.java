@@ -0,0 +1,156 @@
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetCapacity;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.repository.WindTurbineRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/** Unit tests for the in-memory fleet index. */
+public class FleetIndexManagerTest {
+
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  private WindTurbineRepository windTurbineRepository;
+  private FleetIndexManager fleetIndexManager;
+
+  @BeforeEach
+  void setUp() {
+    windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(
+        new WindTurbine("C", 6, 5),
+        new WindTurbine("A", 2, 15),
+        new WindTurbine("B", 2, 5)
+    ));
+    fleetIndexManager = new FleetIndexManager(windTurbineRepository);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void initialIndexIsSortedByCostWithTiesInIdentifierOrder() {
+    FleetIndex fleet = fleetIndexManager.current(PARK);
+
+    assertThat(fleet.size()).isEqualTo(3);
+    assertThat(fleet.totalCapacity()).isEqualTo(10);
+    assertThat(fleet.identifier(0)).isEqualTo("A");
+    assertThat(fleet.identifier(fleet.ordinalAt(0))).isEqualTo("B");
+    assertThat(fleet.identifier(fleet.ordinalAt(1))).isEqualTo("C");
+    assertThat(fleet.identifier(fleet.ordinalAt(2))).isEqualTo("A");
+    assertThat(fleet.productionCostAt(2)).isEqualTo(15);
+    assertThat(fleet.rank(0)).isEqualTo(2);
+  }
+
+  @Test
+  void writesOutsideTransactionAreAppliedImmediately() {
+    long version = fleetIndexManager.current(PARK).version();
+
+    fleetIndexManager.turbineSaved(new WindTurbine("D", 4, 1));
+    fleetIndexManager.turbineRemoved(new WindTurbine("A", 2, 15));
+
+    FleetIndex fleet = fleetIndexManager.current(PARK);
+    assertThat(fleet.version()).isEqualTo(version + 2);
+    assertThat(fleet.size()).isEqualTo(3);
+    assertThat(fleet.identifier(fleet.ordinalAt(0))).isEqualTo("D");
+    assertThat(fleet.totalCapacity()).isEqualTo(12);
+  }
+
+  @Test
+  void capacityCountersFollowTurbineChanges() {
+    fleetIndexManager.turbineSaved(new WindTurbine("D", 4, 1));
+    fleetIndexManager.turbineSaved(new WindTurbine("C", 3, 15));
+    fleetIndexManager.turbineRemoved(new WindTurbine("B", 2, 5));
+
+    FleetCapacity capacity = fleetIndexManager.current(PARK).capacity();
+    assertThat(capacity.total()).isEqualTo(9);
+    assertThat(capacity.byProductionCost()).containsExactly(entry(1, 4L), entry(15, 5L));
+    assertThat(capacity).isEqualTo(FleetIndex.of(1, List.of(fleetIndexManager.current(PARK).entries())).capacity());
+  }
+
+  @Test
+  void writesToOneParkLeaveOtherParksUntouched() {
+    FleetIndex defaultFleet = fleetIndexManager.current(PARK);
+    List<String> notifiedParks = new ArrayList<>();
+    fleetIndexManager.addListener((parkId, fleet) -> notifiedParks.add(parkId));
+    notifiedParks.clear();
+
+    fleetIndexManager.turbineSaved(new WindTurbine("north", "A", 4, 1));
+    fleetIndexManager.turbineSaved(new WindTurbine("north", "B", 3, 2));
+
+    assertThat(fleetIndexManager.current(PARK)).isSameAs(defaultFleet);
+    assertThat(fleetIndexManager.parkIds()).containsExactlyInAnyOrder(PARK, "north");
+    assertThat(fleetIndexManager.current("north").version()).isEqualTo(2);
+    assertThat(fleetIndexManager.current("north").totalCapacity()).isEqualTo(7);
+    assertThat(notifiedParks).containsExactly("north", "north");
+  }
+
+  @Test
+  void writesInsideTransactionArePublishedOnceAfterCommit() {
+    FleetIndex before = fleetIndexManager.current(PARK);
+    TransactionSynchronizationManager.initSynchronization();
+
+    fleetIndexManager.turbineSaved(new WindTurbine("D", 4, 1));
+    fleetIndexManager.turbineSaved(new WindTurbine("B", 3, 5));
+    assertThat(fleetIndexManager.current(PARK)).isSameAs(before);
+
+    List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+    synchronizations.forEach(TransactionSynchronization::afterCommit);
+    synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+    FleetIndex after = fleetIndexManager.current(PARK);
+    assertThat(after.version()).isEqualTo(before.version() + 1);
+    assertThat(after.totalCapacity()).isEqualTo(15);
+  }
+
+  @Test
+  void writesInsideRolledBackTransactionAreDiscarded() {
+    FleetIndex before = fleetIndexManager.current(PARK);
+    TransactionSynchronizationManager.initSynchronization();
+
+    fleetIndexManager.turbineSaved(new WindTurbine("D", 4, 1));
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+    assertThat(fleetIndexManager.current(PARK)).isSameAs(before);
+    assertThat(TransactionSynchronizationManager.hasResource(fleetIndexManager)).isFalse();
+  }
+
+  @Test
+  void reloadPublishesOnlyParksThatDifferFromTheRepository() {
+    fleetIndexManager.turbineSaved(new WindTurbine("north", "A", 4, 1));
+    FleetIndex defaultFleet = fleetIndexManager.current(PARK);
+    List<String> notifiedParks = new ArrayList<>();
+    fleetIndexManager.addListener((parkId, fleet) -> notifiedParks.add(parkId));
+    notifiedParks.clear();
+    Mockito.when(windTurbineRepository.findByParkId(PARK)).thenReturn(List.of(
+        new WindTurbine("C", 6, 5),
+        new WindTurbine("A", 2, 15),
+        new WindTurbine("B", 2, 5)
+    ));
+    Mockito.when(windTurbineRepository.findByParkId("north")).thenReturn(List.of(new WindTurbine("north", "A", 5, 1)));
+
+    Set<String> reloaded = fleetIndexManager.reload(List.of(PARK, "north"));
+
+    assertThat(reloaded).containsExactly("north");
+    assertThat(fleetIndexManager.current(PARK)).isSameAs(defaultFleet);
+    assertThat(fleetIndexManager.current("north").version()).isEqualTo(2);
+    assertThat(fleetIndexManager.current("north").totalCapacity()).isEqualTo(5);
+    assertThat(notifiedParks).containsExactly("north");
+  }
+}
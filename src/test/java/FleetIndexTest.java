@@ -0,0 +1,108 @@
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests of deriving fleet indexes from changes, compared against indexes built from scratch. */
+public class FleetIndexTest {
+
+  @Test
+  void unavailableTurbinesAreRankedLastAndNeverCountedAsCheaper() {
+    FleetIndex fleet = FleetIndex.of(1, List.of(
+        new FleetEntry("A", 2, 15),
+        new FleetEntry("B", 2, 5, false),
+        new FleetEntry("C", 6, 1)
+    ));
+
+    assertThat(fleet.availableCount()).isEqualTo(2);
+    assertThat(fleet.identifier(fleet.ordinalAt(2))).isEqualTo("B");
+    assertThat(fleet.countCheaperThan(100)).isEqualTo(2);
+    assertThat(fleet.cumulativeCapacity(fleet.availableCount())).isEqualTo(8);
+    assertThat(fleet.totalCapacity()).isEqualTo(10);
+  }
+
+  @Test
+  void updatesLeaveThePreviousIndexUnchanged() {
+    FleetIndex fleet = FleetIndex.of(1, List.of(new FleetEntry("A", 2, 15), new FleetEntry("B", 2, 5)));
+
+    FleetIndex updated = fleet.apply(2, Map.of("A", new FleetEntry("A", 3, 1)));
+
+    assertThat(updated.version()).isEqualTo(2);
+    assertThat(updated.countCheaperThan(2)).isEqualTo(1);
+    assertThat(updated.identifier(updated.ordinalAt(0))).isEqualTo("A");
+    assertThat(fleet.identifier(fleet.ordinalAt(0))).isEqualTo("B");
+    assertThat(fleet.countCheaperThan(2)).isZero();
+  }
+
+  @Test
+  void randomChangesMatchRebuiltIndex() {
+    Random random = new Random(42);
+    Map<String, FleetEntry> expected = new TreeMap<>();
+    for (int i = 0; i < 2000; i++) {
+      FleetEntry entry = randomEntry(random, "T" + i);
+      expected.put(entry.identifier(), entry);
+    }
+    FleetIndex fleet = FleetIndex.of(1, expected.values());
+
+    for (int step = 0; step < 300; step++) {
+      Map<String, FleetEntry> changes = new LinkedHashMap<>();
+      List<String> identifiers = new ArrayList<>(expected.keySet());
+      for (int i = 0; i < 1 + random.nextInt(4); i++) {
+        String identifier = identifiers.get(random.nextInt(identifiers.size()));
+        changes.put(identifier, randomEntry(random, identifier));
+      }
+      // Every tenth step also adds or removes turbines, which takes the rebuild path
+      if (step % 10 == 9) {
+        changes.put("N" + step, randomEntry(random, "N" + step));
+        changes.put(identifiers.get(random.nextInt(identifiers.size())), null);
+      }
+      changes.forEach((identifier, entry) -> {
+        if (entry == null) {
+          expected.remove(identifier);
+        } else {
+          expected.put(identifier, entry);
+        }
+      });
+
+      fleet = fleet.apply(step + 2, changes);
+      assertSameIndex(fleet, FleetIndex.of(step + 2, expected.values()), random);
+    }
+  }
+
+  private static FleetEntry randomEntry(Random random, String identifier) {
+    return new FleetEntry(identifier, random.nextInt(10), random.nextInt(20), random.nextInt(5) > 0);
+  }
+
+  /**
+   * Compare the planning queries first, while a patched index only has its tree, then every accessor.
+   */
+  private static void assertSameIndex(FleetIndex actual, FleetIndex expected, Random random) {
+    assertThat(actual.availableCount()).isEqualTo(expected.availableCount());
+    for (int i = 0; i < 20; i++) {
+      int price = random.nextInt(22);
+      assertThat(actual.countCheaperThan(price)).isEqualTo(expected.countCheaperThan(price));
+      int rank = random.nextInt(expected.size() + 1);
+      assertThat(actual.cumulativeCapacity(rank)).isEqualTo(expected.cumulativeCapacity(rank));
+      long limit = random.nextInt(10 * expected.size());
+      assertThat(actual.countWithinCapacity(limit, rank)).isEqualTo(expected.countWithinCapacity(limit, rank));
+    }
+    assertThat(actual.entries()).containsExactly(expected.entries());
+    assertThat(actual.capacity()).isEqualTo(expected.capacity());
+
+    for (int rank = 0; rank < expected.size(); rank++) {
+      assertThat(actual.ordinalAt(rank)).isEqualTo(expected.ordinalAt(rank));
+      assertThat(actual.capacityAt(rank)).isEqualTo(expected.capacityAt(rank));
+      assertThat(actual.productionCostAt(rank)).isEqualTo(expected.productionCostAt(rank));
+      assertThat(actual.rank(expected.ordinalAt(rank))).isEqualTo(rank);
+    }
+    assertThat(actual.cumulativeCapacity(expected.size())).isEqualTo(expected.cumulativeCapacity(expected.size()));
+  }
+}
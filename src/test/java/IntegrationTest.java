@@ -1,19 +1,23 @@
 import app.windfarm.ParkApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /** Integration test of the full application. */
-@SpringBootTest(classes = ParkApplication.class)
+@SpringBootTest(classes = ParkApplication.class, properties = {"windfarm.journal.enabled=false", "windfarm.audit.enabled=false"})
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 public class IntegrationTest {
 
   @Autowired
@@ -32,6 +36,27 @@ public class IntegrationTest {
     verifyProductionPlan(resultActions);
   }
 
+  @Test
+  void reconcileCapacityFindsCountersConsistentWithDatabase() throws Exception {
+    mockMvc.perform(post("/api/admin/reconcile-capacity"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.consistent").value(true))
+        .andExpect(jsonPath("$.indexCapacity").value(21))
+        .andExpect(jsonPath("$.databaseCapacity").value(21));
+  }
+
+  @Test
+  void prometheusEndpointExposesPlanMetrics() throws Exception {
+    mockMvc.perform(get("/api/production-plan")).andExpect(status().isOk());
+
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("windfarm_plan_stage_seconds_count{stage=\"price-cutoff\"}")))
+        .andExpect(content().string(containsString("windfarm_plan_stage_seconds_bucket{stage=\"output-mapping\"")))
+        .andExpect(content().string(containsString("windfarm_fleet_size 5.0")))
+        .andExpect(content().string(containsString("windfarm_fleet_capacity_MWh 21.0")));
+  }
+
   private static void verifyProductionPlan(ResultActions resultActions) throws Exception {
     String[] expectedIds = {"A", "B", "C", "D", "E"};
     int[] expectedProductions = {0, 2, 0, 0, 5};
@@ -0,0 +1,110 @@
+import app.windfarm.ParkApplication;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.entities.WindTurbineId;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.journal.ParkJournal;
+import app.windfarm.repository.WindTurbineRepository;
+import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import app.windfarm.service.TurbineImportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Integration test of restoring the parks from the journal after a restart with an empty database. */
+public class JournalRecoveryIntegrationTest {
+
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  @TempDir
+  Path journal;
+
+  @Test
+  void restartRestoresControlsAndTurbinesInsteadOfSeeding() throws Exception {
+    try (ConfigurableApplicationContext context = start("journal1")) {
+      ParkService parkService = context.getBean(ParkService.class);
+      parkService.setMarketPrice(PARK, 7);
+      parkService.setProductionTarget(PARK, 12);
+
+      WindTurbineRepository repository = context.getBean(WindTurbineRepository.class);
+      repository.delete(repository.findById(new WindTurbineId(PARK, "A")).orElseThrow());
+      repository.save(new WindTurbine(PARK, "F", 4, 1));
+      context.getBean(TurbineImportService.class).importTurbines("north", csv("N1,3,2", "N2,5,8"), TurbineImportService.Format.CSV, null);
+      parkService.setMarketPrice("north", 9);
+    }
+
+    try (ConfigurableApplicationContext context = start("journal2")) {
+      assertRestored(context);
+
+      // A snapshot replaces the segments, and the changes after it are replayed on top of it
+      context.getBean(ParkJournal.class).snapshot();
+      context.getBean(ParkService.class).setProductionTarget(PARK, 13);
+    }
+
+    try (ConfigurableApplicationContext context = start("journal3")) {
+      assertThat(context.getBean(ParkService.class).getProductionTarget(PARK)).isEqualTo(13);
+    }
+  }
+
+  @Test
+  void incompleteRecordAtTheEndOfASegmentIsDropped() throws Exception {
+    try (ConfigurableApplicationContext context = start("journal4")) {
+      context.getBean(ParkService.class).setMarketPrice(PARK, 7);
+    }
+
+    // A write torn by a crash: the frame claims more bytes than follow
+    Path segment;
+    try (Stream<Path> files = Files.list(journal)) {
+      segment = files.filter(file -> file.getFileName().toString().endsWith(".log")).max(Path::compareTo).orElseThrow();
+    }
+    Files.write(segment, new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    try (ConfigurableApplicationContext context = start("journal5")) {
+      assertThat(context.getBean(ParkService.class).getMarketPrice(PARK)).isEqualTo(7);
+      assertThat(context.getBean(FleetIndexManager.class).current(PARK).size()).isEqualTo(5);
+    }
+  }
+
+  private static void assertRestored(ConfigurableApplicationContext context) {
+    ParkService parkService = context.getBean(ParkService.class);
+    ParkState state = parkService.getState(PARK);
+    assertThat(state.marketPrice()).isEqualTo(7);
+    assertThat(state.productionTarget()).isEqualTo(12);
+    assertThat(parkService.getMarketPrice("north")).isEqualTo(9);
+
+    FleetIndex fleet = context.getBean(FleetIndexManager.class).current(PARK);
+    List<String> identifiers = Stream.of(fleet.entries()).map(FleetEntry::identifier).sorted().toList();
+    assertThat(identifiers).containsExactly("B", "C", "D", "E", "F");
+    assertThat(context.getBean(FleetIndexManager.class).current("north").totalCapacity()).isEqualTo(8);
+    assertThat(context.getBean(WindTurbineRepository.class).count()).isEqualTo(7);
+  }
+
+  private ConfigurableApplicationContext start(String database) {
+    return new SpringApplicationBuilder(ParkApplication.class)
+        .web(WebApplicationType.NONE)
+        .run(
+            "--spring.datasource.url=jdbc:h2:mem:" + database,
+            "--windfarm.journal.directory=" + journal,
+            "--windfarm.audit.enabled=false",
+            "--logging.level.app.windfarm=WARN"
+        );
+  }
+
+  private static ByteArrayInputStream csv(String... rows) {
+    return new ByteArrayInputStream(String.join("\n", rows).getBytes(StandardCharsets.UTF_8));
+  }
+}
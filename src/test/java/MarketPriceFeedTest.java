@@ -0,0 +1,105 @@
+import app.windfarm.dtos.PriceFeedReportDto;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.service.MarketPriceFeed;
+import app.windfarm.service.ParkService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/** Unit tests for the coalescing market price feed. */
+public class MarketPriceFeedTest {
+
+  private static final String PARK = "north";
+
+  private ParkService parkService;
+  private ParkMetrics parkMetrics;
+  private MarketPriceFeed marketPriceFeed;
+
+  @BeforeEach
+  void setUp() {
+    parkService = Mockito.mock(ParkService.class);
+    parkMetrics = Mockito.mock(ParkMetrics.class);
+    marketPriceFeed = new MarketPriceFeed(parkService, parkMetrics);
+  }
+
+  @Test
+  void burstOfTicksIsAppliedOncePerWindow() {
+    for (int sequence = 1; sequence <= 1000; sequence++) {
+      assertThat(marketPriceFeed.offer(PARK, sequence, sequence % 50)).isTrue();
+    }
+
+    marketPriceFeed.flush();
+    marketPriceFeed.flush();
+
+    verify(parkService, times(1)).setMarketPrice(anyString(), anyInt());
+    verify(parkService).setMarketPrice(PARK, 0);
+  }
+
+  @Test
+  void ticksWithOldSequenceNumbersAreRejected() {
+    assertThat(marketPriceFeed.offer(PARK, 10, 7)).isTrue();
+    assertThat(marketPriceFeed.offer(PARK, 10, 8)).isFalse();
+    assertThat(marketPriceFeed.offer(PARK, 9, 9)).isFalse();
+    marketPriceFeed.flush();
+    assertThat(marketPriceFeed.offer(PARK, 5, 9)).isFalse();
+
+    marketPriceFeed.flush();
+
+    verify(parkService).setMarketPrice(PARK, 7);
+    verify(parkService, never()).setMarketPrice(PARK, 9);
+  }
+
+  @Test
+  void ingestCountsAcceptedStaleAndMalformedTicks() {
+    String csv = """
+        sequence,price
+        1,10
+        3,12
+        2,11
+        4
+        five,13
+        6,-1
+        7,14
+        """;
+
+    PriceFeedReportDto report = marketPriceFeed.ingest(PARK, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    marketPriceFeed.flush();
+
+    assertThat(report.ticksAccepted()).isEqualTo(3);
+    assertThat(report.ticksStale()).isEqualTo(1);
+    assertThat(report.ticksMalformed()).isEqualTo(3);
+    assertThat(report.lastSequence()).isEqualTo(7);
+    verify(parkService).setMarketPrice(PARK, 14);
+    verify(parkMetrics).priceTicksIngested(3, 1, 3);
+  }
+
+  @Test
+  void failedUpdateIsRetriedOnTheNextWindow() {
+    Mockito.doThrow(new IllegalStateException("journal failed")).doNothing().when(parkService).setMarketPrice(PARK, 7);
+    marketPriceFeed.offer(PARK, 1, 7);
+
+    marketPriceFeed.flush();
+    marketPriceFeed.flush();
+
+    verify(parkService, times(2)).setMarketPrice(PARK, 7);
+  }
+
+  @Test
+  void ticksForUnknownParkAreRejected() {
+    Mockito.when(parkService.getMarketPrice("south")).thenThrow(new NoSuchElementException("Park south does not exist."));
+
+    assertThatThrownBy(() -> marketPriceFeed.offer("south", 1, 7)).isInstanceOf(NoSuchElementException.class);
+  }
+}
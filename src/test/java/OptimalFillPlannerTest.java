@@ -0,0 +1,126 @@
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.OptimalFillPlanner;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Unit tests for the optimal fill plan engine, checked against a brute force search. */
+public class OptimalFillPlannerTest {
+
+  private static final long BUDGET_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  @Test
+  void fillsMoreOfTargetThanGreedyOnReadmeExample() {
+    FleetIndex fleet = FleetIndex.of(1, List.of(
+        new FleetEntry("A", 2, 15),
+        new FleetEntry("B", 2, 5),
+        new FleetEntry("C", 6, 5),
+        new FleetEntry("D", 6, 5),
+        new FleetEntry("E", 5, 3)
+    ));
+    ProductionPlan plan = OptimalFillPlanner.plan(fleet, 6, 10, BUDGET_NANOS);
+
+    assertThat(plan.totalProduction()).isEqualTo(8);
+    assertThat(plan.onlineTurbines()).isEqualTo(2);
+    assertThat(plan.marginalTurbine()).isEqualTo("C");
+    assertThat(List.of(0, 1, 2, 3, 4)).map(plan::expectedProduction).containsExactly(0, 2, 6, 0, 0);
+  }
+
+  @Test
+  void matchesBruteForceOnRandomFleets() {
+    Random random = new Random(11);
+
+    for (int fleetNumber = 0; fleetNumber < 300; fleetNumber++) {
+      List<FleetEntry> entries = randomFleet(random, random.nextInt(14), 100);
+      FleetIndex fleet = FleetIndex.of(1, entries);
+
+      for (int query = 0; query < 10; query++) {
+        int marketPrice = random.nextInt(25);
+        int productionTarget = random.nextInt((int) fleet.totalCapacity() + 1);
+        ProductionPlan plan = OptimalFillPlanner.plan(fleet, marketPrice, productionTarget, BUDGET_NANOS);
+        ProductionPlan greedy = ProductionPlanner.plan(fleet, marketPrice, productionTarget);
+
+        long production = 0;
+        int onlineTurbines = 0;
+        for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+          int rank = fleet.rank(ordinal);
+          if (plan.isOnlineAt(rank)) {
+            assertThat(fleet.productionCostAt(rank)).isLessThan(marketPrice);
+            onlineTurbines++;
+          }
+          production += plan.expectedProduction(ordinal);
+        }
+
+        assertThat(plan.totalProduction())
+            .as("price %d, target %d, fleet %s", marketPrice, productionTarget, entries)
+            .isEqualTo(production)
+            .isEqualTo(bestProduction(entries, marketPrice, productionTarget))
+            .isGreaterThanOrEqualTo(greedy.totalProduction());
+        assertThat(plan.onlineTurbines()).isEqualTo(onlineTurbines);
+      }
+    }
+  }
+
+  @Test
+  void staysWithinMillisecondsForLargeFleet() {
+    FleetIndex fleet = FleetIndex.of(1, randomFleet(new Random(5), 10_000, 100));
+    int productionTarget = (int) (fleet.totalCapacity() / 2) + 1;
+
+    long start = System.nanoTime();
+    ProductionPlan plan = OptimalFillPlanner.plan(fleet, 15, productionTarget, BUDGET_NANOS);
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertThat(plan.totalProduction()).isEqualTo(Math.min(productionTarget, fleet.cumulativeCapacity(fleet.countCheaperThan(15))));
+    assertThat(elapsedMillis).isLessThan(1_000);
+  }
+
+  @Test
+  void fallsBackToGreedyWhenBudgetIsExceeded() {
+    FleetIndex fleet = FleetIndex.of(1, randomFleet(new Random(5), 10_000, 100));
+    int productionTarget = (int) (fleet.totalCapacity() / 2) + 1;
+
+    ProductionPlan plan = OptimalFillPlanner.plan(fleet, 15, productionTarget, 0);
+    ProductionPlan greedy = ProductionPlanner.plan(fleet, 15, productionTarget);
+
+    assertThat(plan.fallback()).isTrue();
+    assertThat(plan.selection()).isNull();
+    assertThat(plan.onlineTurbines()).isEqualTo(greedy.onlineTurbines());
+    assertThat(greedy.fallback()).isFalse();
+  }
+
+
+  private static List<FleetEntry> randomFleet(Random random, int size, int maxCapacity) {
+    List<FleetEntry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new FleetEntry(String.format("T%07d", i), random.nextInt(maxCapacity), random.nextInt(20)));
+    }
+    return entries;
+  }
+
+  /** The most production of any subset of the profitable turbines that does not exceed the target. */
+  private static long bestProduction(List<FleetEntry> entries, int marketPrice, int productionTarget) {
+    List<FleetEntry> profitableTurbines = entries.stream().filter(turbine -> turbine.productionCost() < marketPrice).toList();
+
+    long bestProduction = 0;
+    for (int subset = 0; subset < 1 << profitableTurbines.size(); subset++) {
+      long production = 0;
+      for (int i = 0; i < profitableTurbines.size(); i++) {
+        if ((subset & (1 << i)) != 0) {
+          production += profitableTurbines.get(i).capacity();
+        }
+      }
+      if (production <= productionTarget) {
+        bestProduction = Math.max(bestProduction, production);
+      }
+    }
+    return bestProduction;
+  }
+}
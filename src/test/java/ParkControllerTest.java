@@ -1,22 +1,53 @@
+import app.windfarm.api.ControllerExceptionHandler;
 import app.windfarm.api.ParkController;
+import app.windfarm.audit.DispatchAuditLog;
+import app.windfarm.client.ProductionPlanDecoder;
+import app.windfarm.dtos.PlanScenarioDto;
+import app.windfarm.dtos.PlanSummaryDto;
+import app.windfarm.dtos.PriceFeedReportDto;
+import app.windfarm.dtos.DistributionDto;
+import app.windfarm.dtos.SimulationDto;
 import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.AvailabilityModel;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.service.MarketPriceFeed;
 import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import app.windfarm.service.PlanFormat;
+import app.windfarm.service.ProductionPlanCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -26,19 +57,41 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ContextConfiguration(classes = ParkControllerTest.Config.class)
 public class ParkControllerTest {
 
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
   @Autowired
   private MockMvc mockMvc;
 
   @MockitoBean
   private ParkService parkService;
 
+  @MockitoBean
+  private ParkMetrics parkMetrics;
+
+  @MockitoBean
+  private MarketPriceFeed marketPriceFeed;
+
+  @MockitoBean
+  private DispatchAuditLog dispatchAuditLog;
+
   @Test
   void setMarketPriceWithValidInputReturnsOk() throws Exception {
     mockMvc.perform(post("/api/set-market-price").param("marketPrice", "6"))
         .andExpect(status().isOk());
 
     // verify that the request happened with the specified input
-    verify(parkService).setMarketPrice(6);
+    verify(parkService).setMarketPrice(PARK, 6);
+  }
+
+  @Test
+  void ingestPriceTicksStreamsBodyToFeed() throws Exception {
+    when(marketPriceFeed.ingest(Mockito.eq("north"), Mockito.any()))
+        .thenReturn(new PriceFeedReportDto(2, 1, 0, 3, 1, 3000));
+
+    mockMvc.perform(post("/api/parks/north/market-price/ticks").contentType("text/csv").content("1,5\n3,6\n2,7\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.ticksAccepted").value(2))
+        .andExpect(jsonPath("$.lastSequence").value(3));
   }
 
   @Test
@@ -46,30 +99,260 @@ public class ParkControllerTest {
     mockMvc.perform(post("/api/update-production-target").param("delta", "10"))
         .andExpect(status().isOk());
 
-    verify(parkService).updateProductionTarget(10);
+    verify(parkService).updateProductionTarget(PARK, 10);
   }
 
   @Test
   void getProductionPlan() throws Exception {
-    List<WindTurbineOutputDto> dummyPlan = List.of(
-        new WindTurbineOutputDto("A", 2)
-    );
-    when(parkService.computeProductionPlan()).thenReturn(dummyPlan);
+    ParkState state = getParkState();
+    when(parkService.getState(PARK)).thenReturn(state);
+    when(parkService.planProduction(state, PlanMode.GREEDY)).thenReturn(new ProductionPlan(state.fleet(), 1));
 
     mockMvc.perform(get("/api/production-plan"))
         .andExpect(status().isOk())
         .andExpect(content().contentType("application/json"))
+        .andExpect(header().exists("ETag"))
         .andExpect(jsonPath("$[0].identifier").value("A"))
         .andExpect(jsonPath("$[0].expectedProduction").value(2));
 
-    verify(parkService).computeProductionPlan();
+    verify(parkService).planProduction(state, PlanMode.GREEDY);
+  }
+
+  @Test
+  void getProductionPlanIsCachedAndHonorsIfNoneMatch() throws Exception {
+    ParkState state = getParkState();
+    when(parkService.getState(PARK)).thenReturn(state);
+    when(parkService.planProduction(state, PlanMode.GREEDY)).thenReturn(new ProductionPlan(state.fleet(), 1));
+
+    String etag = mockMvc.perform(get("/api/production-plan"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader("ETag");
+
+    mockMvc.perform(get("/api/production-plan"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", etag))
+        .andExpect(jsonPath("$[0].expectedProduction").value(2));
+
+    // Only the computed plan is audited, the cached one is the same decision
+    verify(dispatchAuditLog, times(1)).record(Mockito.eq(PARK), Mockito.eq(state), Mockito.eq(PlanMode.GREEDY), Mockito.any());
+
+    mockMvc.perform(get("/api/production-plan").header("If-None-Match", etag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    // A new market price changes the tag
+    ParkState changed = state.withMarketPrice(7);
+    when(parkService.getState(PARK)).thenReturn(changed);
+    when(parkService.planProduction(changed, PlanMode.GREEDY)).thenReturn(new ProductionPlan(changed.fleet(), 1));
+    mockMvc.perform(get("/api/production-plan").header("If-None-Match", etag))
+        .andExpect(status().isOk());
+
+    verify(parkService, times(1)).planProduction(state, PlanMode.GREEDY);
+  }
+
+  @Test
+  void getProductionPlanInOptimalFillMode() throws Exception {
+    ParkState state = getParkState();
+    when(parkService.getState(PARK)).thenReturn(state);
+    when(parkService.planProduction(state, PlanMode.OPTIMAL_FILL)).thenReturn(new ProductionPlan(state.fleet(), 1));
+
+    mockMvc.perform(get("/api/production-plan").param("mode", "OPTIMAL_FILL"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].expectedProduction").value(2));
+
+    verify(parkService).planProduction(state, PlanMode.OPTIMAL_FILL);
+  }
+
+  @Test
+  void getProductionPlanNegotiatesFormat() throws Exception {
+    ParkState state = new ParkState(1, 6, 3, FleetIndex.of(1, List.of(new FleetEntry("A", 2, 15), new FleetEntry("B", 2, 5))));
+    when(parkService.getState(PARK)).thenReturn(state);
+    when(parkService.planProduction(state, PlanMode.GREEDY)).thenReturn(ProductionPlanner.plan(state.fleet(), 6, 3));
+
+    mockMvc.perform(get("/api/production-plan").header("Accept", PlanFormat.COLUMNAR_VALUE).param("onlineOnly", "true"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(PlanFormat.COLUMNAR_VALUE))
+        .andExpect(header().string("Vary", "Accept"))
+        .andExpect(content().string("{\"fleetSize\":2,\"identifiers\":[\"B\"],\"expectedProduction\":[2]}"));
+
+    byte[] binary = mockMvc.perform(get("/api/production-plan").header("Accept", "application/json;q=0.5, " + PlanFormat.BINARY_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(PlanFormat.BINARY_VALUE))
+        .andReturn().getResponse().getContentAsByteArray();
+    ProductionPlanDecoder.DecodedPlan decoded = ProductionPlanDecoder.decode(binary);
+    assertThat(decoded.identifiers()).containsExactly("A", "B");
+    assertThat(decoded.expectedProduction()).containsExactly(0, 2);
+
+    mockMvc.perform(get("/api/production-plan").header("Accept", "*/*"))
+        .andExpect(content().contentType("application/json"))
+        .andExpect(jsonPath("$[1].expectedProduction").value(2));
+
+    mockMvc.perform(get("/api/production-plan").header("Accept", "text/csv"))
+        .andExpect(status().isNotAcceptable());
+
+    // Once per representation
+    verify(parkService, times(3)).planProduction(state, PlanMode.GREEDY);
+  }
+
+  @Test
+  void parkPathSelectsPark() throws Exception {
+    mockMvc.perform(post("/api/parks/north/set-market-price").param("marketPrice", "5"))
+        .andExpect(status().isOk());
+
+    verify(parkService).setMarketPrice("north", 5);
+  }
+
+  @Test
+  void unknownParkReturnsNotFound() throws Exception {
+    when(parkService.getState("south")).thenThrow(new NoSuchElementException("Park south does not exist."));
+
+    mockMvc.perform(get("/api/parks/south/production-plan"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Park south does not exist."));
+  }
+
+  @Test
+  void computePlanSummariesReturnsSummaryPerScenario() throws Exception {
+    List<PlanScenarioDto> scenarios = List.of(new PlanScenarioDto(6, 10));
+    when(parkService.computePlanSummaries(PARK, scenarios)).thenReturn(List.of(new PlanSummaryDto(6, 10, 2, 7, "B")));
+
+    mockMvc.perform(post("/api/production-plan/what-if")
+            .contentType("application/json")
+            .content("[{\"marketPrice\":6,\"productionTarget\":10}]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].onlineTurbines").value(2))
+        .andExpect(jsonPath("$[0].totalProduction").value(7))
+        .andExpect(jsonPath("$[0].marginalTurbine").value("B"));
+  }
+
+  @Test
+  void simulateProductionPassesAvailabilityModel() throws Exception {
+    AvailabilityModel model = new AvailabilityModel(0.6, 0.1, 0.5);
+    when(parkService.simulateProduction(PARK, 1000, model, 42L)).thenReturn(new SimulationDto(
+        1000, 42, 6, 10, 7, new DistributionDto(5.5, 3, 4, 5.5, 7, 7), new DistributionDto(4.5, 3, 3, 4.5, 6, 7), 12));
+
+    mockMvc.perform(get("/api/production-plan/simulation")
+            .param("scenarios", "1000").param("meanAvailability", "0.6").param("availabilityDeviation", "0.1").param("seed", "42"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.production.p50").value(5.5))
+        .andExpect(jsonPath("$.shortfall.p99").value(7.0));
+
+    mockMvc.perform(get("/api/production-plan/simulation").param("meanAvailability", "1.5"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void streamProductionPlanWritesOneTurbinePerLine() throws Exception {
+    stubStreamedPlan(getCompactProductionPlan());
+
+    MvcResult result = mockMvc.perform(get("/api/production-plan/stream"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType("application/x-ndjson"))
+        .andExpect(header().doesNotExist("X-Next-Cursor"))
+        .andExpect(content().string(
+            "{\"identifier\":\"A\",\"expectedProduction\":0}\n"
+                + "{\"identifier\":\"B\",\"expectedProduction\":2}\n"
+                + "{\"identifier\":\"C\",\"expectedProduction\":0}\n"));
+  }
+
+  @Test
+  void streamProductionPlanEscapesIdentifiersLikeJackson() throws Exception {
+    FleetIndex fleet = FleetIndex.of(1, List.of(
+        new FleetEntry("quote\"back\\slash", 1, 1),
+        new FleetEntry("tab\tnew\nline\u0000\u001f", 2, 2),
+        new FleetEntry("vindmølle-風力-🌬", 3, 3),
+        new FleetEntry("unpaired-\ud83c", 4, 4)
+    ));
+    ProductionPlan productionPlan = ProductionPlanner.plan(fleet, 10, 3);
+    stubStreamedPlan(productionPlan);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      expected.write(new ObjectMapper().writeValueAsBytes(
+          new WindTurbineOutputDto(fleet.identifier(ordinal), productionPlan.expectedProduction(ordinal))));
+      expected.write('\n');
+    }
+
+    MvcResult result = mockMvc.perform(get("/api/production-plan/stream"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(content().bytes(expected.toByteArray()));
+  }
+
+  @Test
+  void streamProductionPlanPagesWithCursor() throws Exception {
+    stubStreamedPlan(getCompactProductionPlan());
+
+    MvcResult result = mockMvc.perform(get("/api/production-plan/stream").param("cursor", "7-1").param("limit", "1"))
+        .andExpect(request().asyncStarted())
+        .andExpect(header().string("X-Next-Cursor", "7-2"))
+        .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(content().string("{\"identifier\":\"B\",\"expectedProduction\":2}\n"));
+  }
+
+  @Test
+  void streamProductionPlanRejectsCursorOfOlderState() throws Exception {
+    stubStreamedPlan(getCompactProductionPlan());
+
+    mockMvc.perform(get("/api/production-plan/stream").param("cursor", "6-1"))
+        .andExpect(status().isConflict());
+
+    verify(parkService, times(0)).planProduction(Mockito.any(ParkState.class), Mockito.any());
+  }
+
+  @Test
+  void streamProductionPlanWithMalformedCursorReturnsBadRequest() throws Exception {
+    mockMvc.perform(get("/api/production-plan/stream").param("cursor", "1"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/api/production-plan/stream").param("cursor", "7--1"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void streamProductionPlanWithInvalidLimitReturnsBadRequest() throws Exception {
+    mockMvc.perform(get("/api/production-plan/stream").param("limit", "0"))
+        .andExpect(status().isBadRequest());
+
+    verify(parkMetrics).validationRejected();
+  }
+
+  private static ParkState getParkState() {
+    FleetIndex fleet = FleetIndex.of(1, List.of(new FleetEntry("A", 2, 15)));
+    return new ParkState(1, 6, 3, fleet);
+  }
+
+  private void stubStreamedPlan(ProductionPlan productionPlan) {
+    ParkState state = new ParkState(7, 6, 3, productionPlan.fleet());
+    when(parkService.getState(PARK)).thenReturn(state);
+    when(parkService.planProduction(state, PlanMode.GREEDY)).thenReturn(productionPlan);
+  }
+
+  private static ProductionPlan getCompactProductionPlan() {
+    FleetIndex fleet = FleetIndex.of(1, List.of(
+        new FleetEntry("A", 2, 15),
+        new FleetEntry("B", 2, 5),
+        new FleetEntry("C", 6, 5)
+    ));
+    return ProductionPlanner.plan(fleet, 6, 3);
   }
 
   /** Test config instead of using application. */
   @Configuration
+  @Import(ProductionPlanCache.class)
   @ComponentScan(
       basePackages = "app.windfarm.api",
-      includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ParkController.class)
+      useDefaultFilters = false,
+      includeFilters = @ComponentScan.Filter(
+          type = FilterType.ASSIGNABLE_TYPE,
+          classes = {ParkController.class, ControllerExceptionHandler.class}
+      )
   )
   static class Config {}
 }
@@ -1,12 +1,30 @@
+import app.windfarm.dtos.PlanScenarioDto;
+import app.windfarm.dtos.PlanSummaryDto;
+import app.windfarm.dtos.ScheduleDto;
+import app.windfarm.dtos.ScheduleRequestDto;
 import app.windfarm.dtos.WindTurbineOutputDto;
 import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.AvailabilityModel;
 import app.windfarm.repository.WindTurbineRepository;
 import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -14,6 +32,9 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 /** Unit tests for the service layer. */
 public class ParkServiceTest {
 
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  private final List<ParkService> parkServices = new ArrayList<>();
   private ParkService parkService;
 
   @BeforeEach
@@ -21,49 +42,227 @@ public class ParkServiceTest {
     WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
     List<WindTurbine> windTurbines = getWindTurbines();
     Mockito.when(windTurbineRepository.findAll()).thenReturn(windTurbines);
-    parkService = new ParkService(windTurbineRepository);
+    parkService = newParkService(windTurbineRepository);
+  }
+
+  @AfterEach
+  void tearDown() {
+    parkServices.forEach(ParkService::close);
   }
 
   @Test
   void settingMarketPriceWithValidInputUpdatesValueCorrectly() {
-    parkService.setMarketPrice(1);
-    assertThat(parkService.getMarketPrice()).isEqualTo(1);
+    parkService.setMarketPrice(PARK, 1);
+    assertThat(parkService.getMarketPrice(PARK)).isEqualTo(1);
   }
 
   @Test
   void settingMarketPriceWithInvalidInputThrowsException() {
-    assertThatThrownBy(() -> parkService.setMarketPrice(-1))
+    assertThatThrownBy(() -> parkService.setMarketPrice(PARK, -1))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessage("Market price must be non-negative.");
   }
 
   @Test
   void updateProductionTargetWithValidDeltaUpdatesValueCorrectly() {
-    parkService.updateProductionTarget(3);
-    assertThat(parkService.getProductionTarget()).isEqualTo(3);
+    parkService.updateProductionTarget(PARK, 3);
+    assertThat(parkService.getProductionTarget(PARK)).isEqualTo(3);
 
-    parkService.updateProductionTarget(-1);
-    assertThat(parkService.getProductionTarget()).isEqualTo(2);
+    parkService.updateProductionTarget(PARK, -1);
+    assertThat(parkService.getProductionTarget(PARK)).isEqualTo(2);
   }
 
   @Test
   void updateProductionTargetWithInvalidDeltaThrowsException() {
-    assertThatThrownBy(() -> parkService.updateProductionTarget(25))
+    assertThatThrownBy(() -> parkService.updateProductionTarget(PARK, 25))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("Production target must be in range");
   }
 
   @Test
   void computesCorrectProductionPlan() {
-    parkService.setMarketPrice(6);
-    parkService.updateProductionTarget(10);
-    List<WindTurbineOutputDto> outputDtos = parkService.computeProductionPlan();
+    parkService.setMarketPrice(PARK, 6);
+    parkService.updateProductionTarget(PARK, 10);
+    List<WindTurbineOutputDto> outputDtos = parkService.computeProductionPlan(PARK);
 
     assertThat(outputDtos).hasSize(5);
     assertThat(outputDtos.get(0).identifier()).isEqualTo("A");
     assertThat(outputDtos.get(0).expectedProduction()).isEqualTo(0);
   }
 
+  @Test
+  void computesPlanSummariesWithoutChangingState() {
+    parkService.setMarketPrice(PARK, 1);
+    long version = parkService.getState(PARK).version();
+
+    List<PlanSummaryDto> summaries = parkService.computePlanSummaries(PARK, List.of(
+        new PlanScenarioDto(6, 10),
+        new PlanScenarioDto(4, 20),
+        new PlanScenarioDto(16, 20),
+        new PlanScenarioDto(3, 20)
+    ));
+
+    assertThat(summaries).containsExactly(
+        new PlanSummaryDto(6, 10, 2, 7, "B"),
+        new PlanSummaryDto(4, 20, 1, 5, "E"),
+        new PlanSummaryDto(16, 20, 4, 19, "D"),
+        new PlanSummaryDto(3, 20, 0, 0, null)
+    );
+    assertThat(parkService.getMarketPrice(PARK)).isEqualTo(1);
+    assertThat(parkService.getState(PARK).version()).isEqualTo(version);
+  }
+
+  @Test
+  void computePlanSummariesWithNegativePriceThrowsException() {
+    assertThatThrownBy(() -> parkService.computePlanSummaries(PARK, List.of(new PlanScenarioDto(-1, 0))))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void computesScheduleMatchingSinglePlanPerInterval() {
+    int[] marketPrices = {6, 6, 16, 4, 6};
+    int[] productionTargets = {10, 10, 20, 20, 0};
+    ScheduleDto schedule = parkService.computeSchedule(PARK, new ScheduleRequestDto(marketPrices, productionTargets));
+
+    assertThat(schedule.identifiers()).containsExactly("A", "B", "C", "D", "E");
+    assertThat(schedule.intervals()).isEqualTo(5);
+
+    for (int interval = 0; interval < marketPrices.length; interval++) {
+      parkService.setMarketPrice(PARK, marketPrices[interval]);
+      parkService.setProductionTarget(PARK, productionTargets[interval]);
+      List<WindTurbineOutputDto> plan = parkService.computeProductionPlan(PARK);
+
+      for (int ordinal = 0; ordinal < plan.size(); ordinal++) {
+        assertThat(schedule.expectedProduction()[ordinal][interval]).isEqualTo(plan.get(ordinal).expectedProduction());
+      }
+    }
+  }
+
+  @Test
+  void computeScheduleWithMismatchedIntervalsThrowsException() {
+    assertThatThrownBy(() -> parkService.computeSchedule(PARK, new ScheduleRequestDto(new int[] {1, 2}, new int[] {1})))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Market prices and production targets must be given for the same intervals.");
+  }
+
+  @Test
+  void concurrentProductionTargetUpdatesAreNeverLost() throws Exception {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(new WindTurbine("A", 1_000_000, 1)));
+    ParkService service = newParkService(windTurbineRepository);
+
+    int threads = 8;
+    int updatesPerThread = 5_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < updatesPerThread; i++) {
+          service.updateProductionTarget(PARK, 2);
+          service.updateProductionTarget(PARK, -1);
+          service.setMarketPrice(PARK, thread);
+        }
+        return null;
+      }));
+    }
+
+    // Every snapshot a reader sees must be newer than the previous one
+    futures.add(executor.submit(() -> {
+      start.await();
+      long previousVersion = -1;
+      for (int i = 0; i < updatesPerThread; i++) {
+        ParkState state = service.getState(PARK);
+        assertThat(state.version()).isGreaterThanOrEqualTo(previousVersion);
+        previousVersion = state.version();
+      }
+      return null;
+    }));
+
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertThat(service.getProductionTarget(PARK)).isEqualTo(threads * updatesPerThread);
+    assertThat(service.getState(PARK).version()).isEqualTo(1L + 3L * threads * updatesPerThread);
+  }
+
+  @Test
+  void parksHaveIndependentState() {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(
+        new WindTurbine("A", 2, 15),
+        new WindTurbine("north", "A", 4, 1),
+        new WindTurbine("north", "B", 3, 2)
+    ));
+    ParkService service = newParkService(windTurbineRepository);
+
+    service.setMarketPrice("north", 6);
+    service.updateProductionTarget("north", 7);
+
+    assertThat(service.computeProductionPlan("north"))
+        .containsExactly(new WindTurbineOutputDto("A", 4), new WindTurbineOutputDto("B", 3));
+    assertThat(service.getMarketPrice(PARK)).isZero();
+    assertThat(service.getProductionTarget(PARK)).isZero();
+    assertThatThrownBy(() -> service.updateProductionTarget(PARK, 3))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Production target must be in range [0, 2] but is 3.");
+  }
+
+  @Test
+  void simulationThatCouldDrawTooManyAvailabilitiesThrowsException() {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    List<WindTurbine> windTurbines = new ArrayList<>();
+    for (int i = 0; i < 1_001; i++) {
+      windTurbines.add(new WindTurbine("T" + i, 1, 1));
+    }
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(windTurbines);
+    ParkService largeParkService = newParkService(windTurbineRepository);
+    largeParkService.setMarketPrice(PARK, 2);
+
+    assertThatThrownBy(() -> largeParkService.simulateProduction(PARK, 1_000_000, new AvailabilityModel(0.8, 0.2, 0.5), 42L))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("at most 1000000000 turbine availabilities");
+    assertThat(largeParkService.simulateProduction(PARK, 10_000, new AvailabilityModel(0.8, 0.2, 0.5), 42L).scenarios())
+        .isEqualTo(10_000);
+  }
+
+  @Test
+  void simulationOfHundredThousandScenariosOfTenThousandTurbinesIsAccepted() {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    List<WindTurbine> windTurbines = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      windTurbines.add(new WindTurbine("T" + i, 1, 1));
+    }
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(windTurbines);
+    ParkService largeParkService = newParkService(windTurbineRepository);
+    largeParkService.setMarketPrice(PARK, 2);
+
+    // Without a production target each scenario stops after its first draw, so the size is checked but not paid for
+    assertThat(largeParkService.simulateProduction(PARK, 100_000, new AvailabilityModel(0.8, 0.2, 0.5), 42L).scenarios())
+        .isEqualTo(100_000);
+  }
+
+  @Test
+  void unknownParkThrowsException() {
+    assertThatThrownBy(() -> parkService.setMarketPrice("south", 1))
+        .isInstanceOf(NoSuchElementException.class)
+        .hasMessage("Park south does not exist.");
+  }
+
+
+  private ParkService newParkService(WindTurbineRepository windTurbineRepository) {
+    FleetIndexManager fleetIndexManager = new FleetIndexManager(windTurbineRepository);
+    ParkMetrics parkMetrics = new ParkMetrics(new SimpleMeterRegistry(), fleetIndexManager);
+    ParkService service = new ParkService(windTurbineRepository, fleetIndexManager, parkMetrics, Duration.ofMillis(50));
+    parkServices.add(service);
+    return service;
+  }
 
   private List<WindTurbine> getWindTurbines() {
     return List.of(
@@ -0,0 +1,224 @@
+import app.windfarm.api.PlanEventBroadcaster;
+import app.windfarm.dtos.PlanDeltaDto;
+import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.repository.WindTurbineRepository;
+import app.windfarm.service.ParkService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Unit tests for the server-sent events of production plan changes. */
+public class PlanEventBroadcasterTest {
+
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  private FleetIndexManager fleetIndexManager;
+  private ParkService parkService;
+  private PlanEventBroadcaster broadcaster;
+
+  @BeforeEach
+  void setUp() {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(
+        new WindTurbine("A", 2, 15),
+        new WindTurbine("B", 2, 5),
+        new WindTurbine("C", 6, 5),
+        new WindTurbine("D", 6, 5),
+        new WindTurbine("E", 5, 3)
+    ));
+    fleetIndexManager = new FleetIndexManager(windTurbineRepository);
+    parkService = new ParkService(windTurbineRepository, fleetIndexManager,
+        new ParkMetrics(new SimpleMeterRegistry(), fleetIndexManager), Duration.ofMillis(50));
+    broadcaster = new PlanEventBroadcaster(parkService);
+  }
+
+  @AfterEach
+  void tearDown() {
+    broadcaster.shutdown();
+    parkService.close();
+  }
+
+  @Test
+  void sendsSnapshotThenOnlyChangedTurbines() throws Exception {
+    CapturingEmitter emitter = new CapturingEmitter(null);
+    broadcaster.subscribe(PARK, emitter);
+
+    PlanDeltaDto snapshot = emitter.next();
+    assertThat(snapshot.snapshot()).isTrue();
+    assertThat(snapshot.turbines()).hasSize(5).allMatch(turbine -> turbine.expectedProduction() == 0);
+
+    parkService.setMarketPrice(PARK, 6);
+    parkService.updateProductionTarget(PARK, 10);
+    PlanDeltaDto delta = emitter.nextWithVersion(parkService.getState(PARK).version());
+    assertThat(delta.snapshot()).isFalse();
+    assertThat(delta.turbines()).containsExactly(new WindTurbineOutputDto("B", 2), new WindTurbineOutputDto("E", 5));
+
+    parkService.updateProductionTarget(PARK, -4);
+    delta = emitter.nextWithVersion(parkService.getState(PARK).version());
+    assertThat(delta.turbines()).containsExactly(new WindTurbineOutputDto("B", 0));
+
+    fleetIndexManager.turbineSaved(new WindTurbine("F", 1, 1));
+    snapshot = emitter.nextWithVersion(parkService.getState(PARK).version());
+    assertThat(snapshot.snapshot()).isTrue();
+    assertThat(snapshot.turbines()).isEqualTo(parkService.computeProductionPlan(PARK));
+  }
+
+  @Test
+  void changingExistingTurbinesSendsOnlyChangedTurbines() throws Exception {
+    CapturingEmitter emitter = new CapturingEmitter(null);
+    broadcaster.subscribe(PARK, emitter);
+    emitter.next();
+    parkService.setMarketPrice(PARK, 6);
+    parkService.updateProductionTarget(PARK, 10);
+    emitter.nextWithVersion(parkService.getState(PARK).version());
+
+    // The change of A, which is never profitable, changes no production and sends nothing, then C fits the target next
+    // to E and B
+    fleetIndexManager.turbineSaved(new WindTurbine("A", 4, 15));
+    fleetIndexManager.turbineSaved(new WindTurbine("C", 3, 5));
+    PlanDeltaDto delta = emitter.nextWithVersion(parkService.getState(PARK).version());
+    assertThat(delta.snapshot()).isFalse();
+    assertThat(delta.turbines()).containsExactly(new WindTurbineOutputDto("C", 3));
+
+    // Taking E offline moves every other turbine one rank up, which leaves D just above the target
+    WindTurbine maintained = new WindTurbine("E", 5, 3);
+    maintained.setAvailable(false);
+    fleetIndexManager.turbineSaved(maintained);
+    delta = emitter.nextWithVersion(parkService.getState(PARK).version());
+    assertThat(delta.snapshot()).isFalse();
+    assertThat(delta.turbines()).containsExactly(new WindTurbineOutputDto("E", 0));
+  }
+
+  @Test
+  void steadilyServedSubscriberIsNotDropped() throws Exception {
+    broadcaster.shutdown();
+    broadcaster = new PlanEventBroadcaster(parkService, false, 2, Duration.ofMillis(200));
+    CapturingEmitter emitter = new CapturingEmitter(null, 20);
+    broadcaster.subscribe(PARK, emitter);
+
+    // Every added turbine needs a new snapshot, so the send task keeps sending for far longer than the maximum lag
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    for (int i = 0; System.nanoTime() < end; i++) {
+      fleetIndexManager.turbineSaved(new WindTurbine("F" + i, 1, 1));
+      Thread.sleep(2);
+    }
+
+    assertThat(broadcaster.subscriberCount(PARK)).isEqualTo(1);
+  }
+
+  @Test
+  void slowSubscriberReceivesCoalescedEvents() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CapturingEmitter emitter = new CapturingEmitter(release);
+    broadcaster.subscribe(PARK, emitter);
+    parkService.setMarketPrice(PARK, 6);
+
+    for (int i = 0; i <= 1_000; i++) {
+      parkService.updateProductionTarget(PARK, i % 2 == 0 ? 10 : -10);
+    }
+    release.countDown();
+
+    // Events that leave the plan as it was are not sent, so apply events until the plan is the final one
+    Map<String, Integer> expected = toMap(parkService.computeProductionPlan(PARK));
+    Map<String, Integer> plan = new HashMap<>();
+    int events = 0;
+    while (!plan.equals(expected)) {
+      emitter.next().turbines().forEach(turbine -> plan.put(turbine.identifier(), turbine.expectedProduction()));
+      events++;
+    }
+
+    assertThat(events).isLessThanOrEqualTo(3);
+    assertThat(broadcaster.subscriberCount(PARK)).isEqualTo(1);
+  }
+
+  @Test
+  void subscriberThatFallsBehindIsDroppedWithoutHoldingUpOthers() throws Exception {
+    broadcaster.shutdown();
+    broadcaster = new PlanEventBroadcaster(parkService, false, 2, Duration.ofMillis(50));
+    CountDownLatch release = new CountDownLatch(1);
+    CapturingEmitter stalled = new CapturingEmitter(release);
+    CapturingEmitter reading = new CapturingEmitter(null);
+    broadcaster.subscribe(PARK, stalled);
+    broadcaster.subscribe(PARK, reading);
+    reading.next();
+    Thread.sleep(100);
+
+    parkService.setMarketPrice(PARK, 6);
+    assertThat(broadcaster.subscriberCount(PARK)).isEqualTo(1);
+
+    parkService.updateProductionTarget(PARK, 10);
+    PlanDeltaDto delta = reading.nextWithVersion(parkService.getState(PARK).version());
+    assertThat(delta.turbines()).containsExactly(new WindTurbineOutputDto("B", 2), new WindTurbineOutputDto("E", 5));
+    release.countDown();
+  }
+
+  private static Map<String, Integer> toMap(List<WindTurbineOutputDto> plan) {
+    Map<String, Integer> map = new HashMap<>();
+    plan.forEach(turbine -> map.put(turbine.identifier(), turbine.expectedProduction()));
+    return map;
+  }
+
+  /** Emitter that records the sent plan changes, optionally blocking every send until released. */
+  private static final class CapturingEmitter extends SseEmitter {
+
+    private final BlockingQueue<PlanDeltaDto> events = new LinkedBlockingQueue<>();
+    private final CountDownLatch release;
+    private final long sendMillis;
+
+    CapturingEmitter(CountDownLatch release) {
+      this(release, 0);
+    }
+
+    CapturingEmitter(CountDownLatch release, long sendMillis) {
+      this.release = release;
+      this.sendMillis = sendMillis;
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) {
+      try {
+        if (release != null) {
+          release.await();
+        }
+        Thread.sleep(sendMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      builder.build().stream()
+          .map(data -> data.getData())
+          .filter(PlanDeltaDto.class::isInstance)
+          .forEach(data -> events.add((PlanDeltaDto) data));
+    }
+
+    PlanDeltaDto next() throws InterruptedException {
+      PlanDeltaDto event = events.poll(5, TimeUnit.SECONDS);
+      assertThat(event).as("event").isNotNull();
+      return event;
+    }
+
+    PlanDeltaDto nextWithVersion(long version) throws InterruptedException {
+      PlanDeltaDto event;
+      do {
+        event = next();
+      } while (event.version() < version);
+      return event;
+    }
+  }
+}
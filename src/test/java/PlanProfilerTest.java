@@ -0,0 +1,79 @@
+import app.windfarm.dtos.PlanProfileDto;
+import app.windfarm.dtos.PlanStageProfileDto;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.metrics.PlanProfiler;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.repository.WindTurbineRepository;
+import app.windfarm.service.ParkService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Unit tests for the flight recording of the production plan stages. */
+public class PlanProfilerTest {
+
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  private ParkService parkService;
+  private PlanProfiler planProfiler;
+
+  @BeforeEach
+  void setUp() {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(new WindTurbine("A", 2, 15), new WindTurbine("B", 2, 5)));
+    FleetIndexManager fleetIndexManager = new FleetIndexManager(windTurbineRepository);
+    ParkMetrics parkMetrics = new ParkMetrics(new SimpleMeterRegistry(), fleetIndexManager);
+    parkService = new ParkService(windTurbineRepository, fleetIndexManager, parkMetrics, Duration.ofMillis(50));
+    planProfiler = new PlanProfiler(Duration.ofMinutes(1), DataSize.ofMegabytes(16));
+  }
+
+  @AfterEach
+  void tearDown() {
+    planProfiler.close();
+    parkService.close();
+  }
+
+  @Test
+  void summarizesTheStagesOfPlansComputedWhileRecording() {
+    parkService.computeProductionPlan(PARK);
+
+    assertThat(planProfiler.start(Duration.ofSeconds(30))).isPresent();
+    assertThat(planProfiler.start(Duration.ofSeconds(30))).isEmpty();
+    parkService.setMarketPrice(PARK, 10);
+    for (int i = 0; i < 5; i++) {
+      parkService.computeProductionPlan(PARK, PlanMode.GREEDY);
+    }
+    PlanProfileDto profile = planProfiler.stop();
+
+    assertThat(profile.stages()).extracting(PlanStageProfileDto::stage)
+        .containsExactly("fleet-snapshot", "price-cutoff", "online-selection", "output-mapping");
+    for (PlanStageProfileDto stage : profile.stages()) {
+      assertThat(stage.count()).isEqualTo(5);
+      assertThat(stage.maxFleetSize()).isEqualTo(2);
+      assertThat(stage.lastStateVersion()).isEqualTo(parkService.getState(PARK).version());
+      assertThat(stage.p50Micros()).isLessThanOrEqualTo(stage.p99Micros()).isLessThanOrEqualTo(stage.maxMicros());
+    }
+    assertThat(profile.stoppedAt()).isAfterOrEqualTo(profile.startedAt());
+
+    // Each recording is summarized once
+    assertThatThrownBy(planProfiler::stop).isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void rejectsDurationsOutsideTheBound() {
+    assertThatThrownBy(() -> planProfiler.start(Duration.ZERO)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> planProfiler.start(Duration.ofMinutes(2))).isInstanceOf(IllegalArgumentException.class);
+  }
+}
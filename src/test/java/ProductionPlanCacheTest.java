@@ -0,0 +1,117 @@
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.metrics.ParkMetrics;
+import app.windfarm.planning.PlanMode;
+import app.windfarm.repository.WindTurbineRepository;
+import app.windfarm.service.ParkService;
+import app.windfarm.service.ParkState;
+import app.windfarm.service.PlanFormat;
+import app.windfarm.service.ProductionPlanCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Unit tests for the cache of serialized production plans. */
+public class ProductionPlanCacheTest {
+
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  private FleetIndexManager fleetIndexManager;
+  private ParkMetrics parkMetrics;
+  private ParkService parkService;
+  private ProductionPlanCache cache;
+
+  @BeforeEach
+  void setUp() {
+    WindTurbineRepository windTurbineRepository = Mockito.mock(WindTurbineRepository.class);
+    Mockito.when(windTurbineRepository.findAll()).thenReturn(List.of(new WindTurbine("A", 2, 15), new WindTurbine("B", 2, 5)));
+    fleetIndexManager = new FleetIndexManager(windTurbineRepository);
+    parkMetrics = new ParkMetrics(new SimpleMeterRegistry(), fleetIndexManager);
+    parkService = new ParkService(windTurbineRepository, fleetIndexManager, parkMetrics, Duration.ofMillis(50));
+    cache = new ProductionPlanCache(parkService, parkMetrics);
+  }
+
+  @AfterEach
+  void tearDown() {
+    parkService.close();
+  }
+
+  @Test
+  void servesSamePlanUntilStateChanges() {
+    parkService.setMarketPrice(PARK, 6);
+    parkService.setProductionTarget(PARK, 2);
+    ParkState state = parkService.getState(PARK);
+
+    ProductionPlanCache.CachedPlan computed = cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.JSON, false);
+    ProductionPlanCache.CachedPlan cached = cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.JSON, false);
+    assertThat(computed.fromCache()).isFalse();
+    assertThat(cached.fromCache()).isTrue();
+    assertThat(cached.body()).isSameAs(computed.body());
+    assertThat(new String(cached.body(), StandardCharsets.UTF_8))
+        .isEqualTo("[{\"identifier\":\"A\",\"expectedProduction\":0},{\"identifier\":\"B\",\"expectedProduction\":2}]");
+
+    // Changes that keep price, target and fleet keep the plan
+    parkService.setMarketPrice(PARK, 6);
+    assertThat(cache.get(PARK, parkService.getState(PARK), PlanMode.GREEDY, PlanFormat.JSON, false).fromCache()).isTrue();
+
+    fleetIndexManager.turbineSaved(new WindTurbine("C", 1, 1));
+    ParkState changed = parkService.getState(PARK);
+    ProductionPlanCache.CachedPlan recomputed = cache.get(PARK, changed, PlanMode.GREEDY, PlanFormat.JSON, false);
+    assertThat(recomputed.fromCache()).isFalse();
+    assertThat(recomputed.etag()).isNotEqualTo(computed.etag()).isEqualTo(cache.etag(changed, PlanMode.GREEDY, PlanFormat.JSON, false));
+  }
+
+  @Test
+  void modesAreCachedSeparately() {
+    ParkState state = parkService.getState(PARK);
+
+    assertThat(cache.etag(state, PlanMode.GREEDY, PlanFormat.JSON, false)).isNotEqualTo(cache.etag(state, PlanMode.OPTIMAL_FILL, PlanFormat.JSON, false));
+    assertThat(cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.JSON, false).fromCache()).isFalse();
+    assertThat(cache.get(PARK, state, PlanMode.OPTIMAL_FILL, PlanFormat.JSON, false).fromCache()).isFalse();
+    assertThat(cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.JSON, false).fromCache()).isTrue();
+  }
+
+  @Test
+  void formatsAreCachedSeparately() {
+    ParkState state = parkService.getState(PARK);
+
+    assertThat(cache.etag(state, PlanMode.GREEDY, PlanFormat.COLUMNAR, false))
+        .isNotEqualTo(cache.etag(state, PlanMode.GREEDY, PlanFormat.COLUMNAR, true))
+        .isNotEqualTo(cache.etag(state, PlanMode.GREEDY, PlanFormat.BINARY, false));
+    // The default JSON array always lists every turbine
+    assertThat(cache.etag(state, PlanMode.GREEDY, PlanFormat.JSON, true)).isEqualTo(cache.etag(state, PlanMode.GREEDY, PlanFormat.JSON, false));
+
+    assertThat(cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.COLUMNAR, true).fromCache()).isFalse();
+    assertThat(cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.BINARY, true).fromCache()).isFalse();
+    assertThat(cache.get(PARK, state, PlanMode.GREEDY, PlanFormat.COLUMNAR, true).fromCache()).isTrue();
+
+    parkService.setMarketPrice(PARK, 100);
+    assertThat(cache.get(PARK, parkService.getState(PARK), PlanMode.GREEDY, PlanFormat.COLUMNAR, true).fromCache()).isFalse();
+  }
+
+  @Test
+  void optimalFillPlanThatRanOutOfTimeIsNotCached() {
+    ParkService outOfTime = new ParkService(Mockito.mock(WindTurbineRepository.class), fleetIndexManager, parkMetrics, Duration.ZERO);
+    ProductionPlanCache outOfTimeCache = new ProductionPlanCache(outOfTime, parkMetrics);
+    outOfTime.setMarketPrice(PARK, 20);
+    outOfTime.setProductionTarget(PARK, 3);
+    ParkState state = outOfTime.getState(PARK);
+
+    ProductionPlanCache.CachedPlan first = outOfTimeCache.get(PARK, state, PlanMode.OPTIMAL_FILL, PlanFormat.JSON, false);
+    ProductionPlanCache.CachedPlan second = outOfTimeCache.get(PARK, state, PlanMode.OPTIMAL_FILL, PlanFormat.JSON, false);
+
+    assertThat(first.productionPlan().fallback()).isTrue();
+    assertThat(first.productionPlan().totalProduction()).isEqualTo(2);
+    assertThat(second.fromCache()).isFalse();
+    assertThat(first.etag()).isNotEqualTo(outOfTimeCache.etag(state, PlanMode.OPTIMAL_FILL, PlanFormat.JSON, false)).endsWith("-fallback\"");
+    outOfTime.close();
+  }
+}
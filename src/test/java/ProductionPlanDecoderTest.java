@@ -0,0 +1,77 @@
+import app.windfarm.client.ProductionPlanDecoder;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.service.ProductionPlanBinaryWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Round trip tests of the binary production plan format and its client decoder. */
+public class ProductionPlanDecoderTest {
+
+  private static final FleetIndex FLEET = FleetIndex.of(1, List.of(
+      new FleetEntry("A", 2, 15),
+      new FleetEntry("B", 2, 5),
+      new FleetEntry("C", 6, 5),
+      new FleetEntry("D", 6, 5),
+      new FleetEntry("vindmølle-🌬", 5, 3)
+  ));
+
+  @Test
+  void decodesWhatTheServerWrites() throws Exception {
+    ProductionPlan productionPlan = ProductionPlanner.plan(FLEET, 6, 10);
+
+    ProductionPlanDecoder.DecodedPlan all = ProductionPlanDecoder.decode(new ByteArrayInputStream(ProductionPlanBinaryWriter.write(productionPlan, false)));
+    assertThat(all.fleetSize()).isEqualTo(5);
+    assertThat(all.identifiers()).containsExactly("A", "B", "C", "D", "vindmølle-🌬");
+    assertThat(all.expectedProduction()).containsExactly(0, 2, 0, 0, 5);
+
+    ProductionPlanDecoder.DecodedPlan online = ProductionPlanDecoder.decode(ProductionPlanBinaryWriter.write(productionPlan, true));
+    assertThat(online.fleetSize()).isEqualTo(5);
+    assertThat(online.identifiers()).containsExactly("B", "vindmølle-🌬");
+    assertThat(online.expectedProduction()).containsExactly(2, 5);
+  }
+
+  @Test
+  void decodesMultiByteNumbers() {
+    int[] capacities = {0, 127, 128, 16_384, Integer.MAX_VALUE};
+    FleetIndex fleet = FleetIndex.of(1, Arrays.stream(capacities).mapToObj(capacity -> new FleetEntry("T" + capacity, capacity, 1)).toList());
+    ProductionPlan productionPlan = new ProductionPlan(fleet, fleet.size());
+
+    ProductionPlanDecoder.DecodedPlan decoded = ProductionPlanDecoder.decode(ProductionPlanBinaryWriter.write(productionPlan, false));
+
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      assertThat(decoded.identifiers()[ordinal]).isEqualTo(fleet.identifier(ordinal));
+      assertThat(decoded.expectedProduction()[ordinal]).isEqualTo(productionPlan.expectedProduction(ordinal));
+    }
+  }
+
+  @Test
+  void decodesEmptyPlan() {
+    ProductionPlanDecoder.DecodedPlan decoded = ProductionPlanDecoder.decode(ProductionPlanBinaryWriter.write(ProductionPlanner.plan(FleetIndex.empty(), 6, 10), false));
+
+    assertThat(decoded.fleetSize()).isZero();
+    assertThat(decoded.identifiers()).isEmpty();
+  }
+
+  @Test
+  void rejectsTruncatedOrForeignInput() {
+    byte[] bytes = ProductionPlanBinaryWriter.write(ProductionPlanner.plan(FLEET, 6, 10), false);
+
+    for (int length : new int[] {0, 13, 14, 20, bytes.length - 1}) {
+      assertThatThrownBy(() -> ProductionPlanDecoder.decode(Arrays.copyOf(bytes, length)))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessage("Binary production plan is truncated.");
+    }
+    assertThatThrownBy(() -> ProductionPlanDecoder.decode("[{\"identifier\":\"A\"}]".getBytes()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Not a binary production plan.");
+  }
+}
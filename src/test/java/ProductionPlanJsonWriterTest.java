@@ -0,0 +1,86 @@
+import app.windfarm.dtos.PlanColumnsDto;
+import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.OptimalFillPlanner;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.service.ProductionPlanJsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests that the allocation-free plan serializer writes exactly what Jackson writes, in both layouts. */
+public class ProductionPlanJsonWriterTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void writesSameBytesAsJacksonForReadmeExample() throws Exception {
+    FleetIndex fleet = FleetIndex.of(1, List.of(
+        new FleetEntry("A", 2, 15),
+        new FleetEntry("B", 2, 5),
+        new FleetEntry("C", 6, 5),
+        new FleetEntry("D", 6, 5),
+        new FleetEntry("E", 5, 3)
+    ));
+
+    assertSameAsJackson(ProductionPlanner.plan(fleet, 6, 10));
+    assertSameAsJackson(OptimalFillPlanner.plan(fleet, 6, 10, Long.MAX_VALUE));
+    assertSameAsJackson(ProductionPlanner.plan(FleetIndex.empty(), 6, 10));
+  }
+
+  @Test
+  void escapesIdentifiersLikeJackson() throws Exception {
+    FleetIndex fleet = FleetIndex.of(1, List.of(
+        new FleetEntry("quote\"back\\slash/", 1, 1),
+        new FleetEntry("tab\tnew\nline\r\b\f\u0000\u001f\u007f", 20, 2),
+        new FleetEntry("vindmølle-Ærø", 300, 3),
+        new FleetEntry("風力-€-🌬", Integer.MAX_VALUE, 4),
+        new FleetEntry("unpaired-\ud83c-\udf2c", 5, 5)
+    ));
+
+    assertSameAsJackson(ProductionPlanner.plan(fleet, 10, 0));
+    assertSameAsJackson(ProductionPlanner.plan(fleet, 10, Integer.MAX_VALUE));
+  }
+
+  @Test
+  void writesSameBytesAsJacksonForLargeRandomFleets() throws Exception {
+    Random random = new Random(15);
+    for (int round = 0; round < 20; round++) {
+      int size = random.nextInt(5_000);
+      List<FleetEntry> entries = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        entries.add(new FleetEntry("T" + i, random.nextInt(1_000_000), random.nextInt(100)));
+      }
+      FleetIndex fleet = FleetIndex.of(round, entries);
+
+      assertSameAsJackson(ProductionPlanner.plan(fleet, random.nextInt(100), random.nextInt(Integer.MAX_VALUE)));
+    }
+  }
+
+  private void assertSameAsJackson(ProductionPlan productionPlan) throws Exception {
+    FleetIndex fleet = productionPlan.fleet();
+    List<WindTurbineOutputDto> outputDtos = new ArrayList<>(fleet.size());
+    for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+      outputDtos.add(new WindTurbineOutputDto(fleet.identifier(ordinal), productionPlan.expectedProduction(ordinal)));
+    }
+
+    assertThat(ProductionPlanJsonWriter.write(productionPlan)).isEqualTo(objectMapper.writeValueAsBytes(outputDtos));
+
+    for (boolean onlineOnly : new boolean[] {false, true}) {
+      List<WindTurbineOutputDto> columns = outputDtos.stream().filter(dto -> !onlineOnly || dto.expectedProduction() != 0).toList();
+      PlanColumnsDto columnsDto = new PlanColumnsDto(
+          fleet.size(),
+          columns.stream().map(WindTurbineOutputDto::identifier).toArray(String[]::new),
+          columns.stream().mapToInt(WindTurbineOutputDto::expectedProduction).toArray()
+      );
+      assertThat(ProductionPlanJsonWriter.writeColumns(productionPlan, onlineOnly)).isEqualTo(objectMapper.writeValueAsBytes(columnsDto));
+    }
+  }
+}
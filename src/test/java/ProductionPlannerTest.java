@@ -0,0 +1,146 @@
+import app.windfarm.dtos.WindTurbineOutputDto;
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.ProductionPlan;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.planning.SchedulePlanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Unit tests for the binary search plan engine, checked against the original greedy algorithm, and the schedule planner. */
+public class ProductionPlannerTest {
+
+  @Test
+  void matchesGreedyOnReadmeExample() {
+    List<FleetEntry> entries = List.of(
+        new FleetEntry("A", 2, 15),
+        new FleetEntry("B", 2, 5),
+        new FleetEntry("C", 6, 5),
+        new FleetEntry("D", 6, 5),
+        new FleetEntry("E", 5, 3)
+    );
+    ProductionPlan plan = ProductionPlanner.plan(FleetIndex.of(1, entries), 6, 10);
+
+    assertThat(plan.onlineTurbines()).isEqualTo(2);
+    assertThat(plan.totalProduction()).isEqualTo(7);
+    assertThat(toOutputDtos(plan)).isEqualTo(greedyProductionPlan(entries, 6, 10));
+  }
+
+  @Test
+  void matchesGreedyOnRandomFleets() {
+    Random random = new Random(42);
+
+    for (int fleetNumber = 0; fleetNumber < 500; fleetNumber++) {
+      List<FleetEntry> entries = randomFleet(random, random.nextInt(60));
+      FleetIndex fleet = FleetIndex.of(1, entries);
+
+      for (int query = 0; query < 20; query++) {
+        int marketPrice = random.nextInt(25);
+        int productionTarget = random.nextInt((int) fleet.totalCapacity() + 1);
+        ProductionPlan plan = ProductionPlanner.plan(fleet, marketPrice, productionTarget);
+
+        assertThat(toOutputDtos(plan))
+            .as("price %d, target %d, fleet %s", marketPrice, productionTarget, entries)
+            .isEqualTo(greedyProductionPlan(entries, marketPrice, productionTarget));
+      }
+    }
+  }
+
+  @Test
+  void matchesLinearScanOfCostOrderForLargeFleet() {
+    Random random = new Random(7);
+    FleetIndex fleet = FleetIndex.of(1, randomFleet(random, 1_000_000));
+
+    for (int i = 0; i < 50; i++) {
+      int marketPrice = random.nextInt(25);
+      int productionTarget = random.nextInt((int) fleet.totalCapacity() + 1);
+
+      // Walk the fleet in cost order like the original algorithm, without a sort since the index keeps that order
+      int expected = 0;
+      long production = 0;
+      while (expected < fleet.availableCount() && fleet.productionCostAt(expected) < marketPrice
+          && production + fleet.capacityAt(expected) <= productionTarget) {
+        production += fleet.capacityAt(expected++);
+      }
+
+      assertThat(ProductionPlanner.plan(fleet, marketPrice, productionTarget).onlineTurbines())
+          .as("price %d, target %d", marketPrice, productionTarget)
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void scheduleMatchesSinglePlanPerInterval() {
+    Random random = new Random(3);
+    FleetIndex fleet = FleetIndex.of(1, randomFleet(random, 20_000));
+
+    int intervals = 96;
+    int[] marketPrices = new int[intervals];
+    int[] productionTargets = new int[intervals];
+    for (int interval = 0; interval < intervals; interval++) {
+      // Repeat every fourth pair to exercise the deduplication
+      marketPrices[interval] = interval % 4 == 0 ? 10 : random.nextInt(25);
+      productionTargets[interval] = interval % 4 == 0 ? 1_000 : random.nextInt((int) fleet.totalCapacity() + 1);
+    }
+
+    int[] onlineTurbines = SchedulePlanner.planIntervals(fleet, marketPrices, productionTargets);
+    int[][] matrix = SchedulePlanner.expectedProduction(fleet, onlineTurbines, ForkJoinPool.commonPool());
+
+    int[][] expected = new int[fleet.size()][intervals];
+    for (int interval = 0; interval < intervals; interval++) {
+      ProductionPlan plan = ProductionPlanner.plan(fleet, marketPrices[interval], productionTargets[interval]);
+      for (int ordinal = 0; ordinal < fleet.size(); ordinal++) {
+        expected[ordinal][interval] = plan.expectedProduction(ordinal);
+      }
+    }
+    assertThat(matrix).isDeepEqualTo(expected);
+  }
+
+
+  private static List<FleetEntry> randomFleet(Random random, int size) {
+    List<FleetEntry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new FleetEntry(String.format("T%07d", i), random.nextInt(10), random.nextInt(20)));
+    }
+    return entries;
+  }
+
+  private static List<WindTurbineOutputDto> toOutputDtos(ProductionPlan plan) {
+    List<WindTurbineOutputDto> outputDtos = new ArrayList<>();
+    for (int ordinal = 0; ordinal < plan.fleet().size(); ordinal++) {
+      outputDtos.add(new WindTurbineOutputDto(plan.fleet().identifier(ordinal), plan.expectedProduction(ordinal)));
+    }
+    return outputDtos;
+  }
+
+  /** The original filter, sort and greedy selection, used as the reference. Entries must be in identifier order. */
+  private static List<WindTurbineOutputDto> greedyProductionPlan(List<FleetEntry> entries, int marketPrice, int productionTarget) {
+    List<FleetEntry> sortedProfitableTurbines = entries.stream()
+        .filter(turbine -> turbine.productionCost() < marketPrice)
+        .sorted(Comparator.comparingInt(FleetEntry::productionCost))
+        .toList();
+
+    Map<String, Integer> onlineTurbines = new HashMap<>();
+    int remainingProduction = productionTarget;
+    for (FleetEntry turbine : sortedProfitableTurbines) {
+      if (remainingProduction - turbine.capacity() < 0) {
+        break;
+      }
+      onlineTurbines.put(turbine.identifier(), turbine.capacity());
+      remainingProduction -= turbine.capacity();
+    }
+
+    return entries.stream()
+        .map(turbine -> new WindTurbineOutputDto(turbine.identifier(), onlineTurbines.getOrDefault(turbine.identifier(), 0)))
+        .toList();
+  }
+}
@@ -0,0 +1,76 @@
+import app.windfarm.fleet.FleetEntry;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.planning.AvailabilityModel;
+import app.windfarm.planning.ProductionPlanner;
+import app.windfarm.planning.ProductionSimulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests of the Monte Carlo simulation of the delivered production. */
+public class ProductionSimulatorTest {
+
+  @Test
+  void fullAvailabilityDeliversThePlannedProduction() {
+    FleetIndex fleet = randomFleet(500, new Random(42));
+    long planned = ProductionPlanner.plan(fleet, 10, 700).totalProduction();
+
+    double[] production = ProductionSimulator.simulate(fleet, 10, 700, new AvailabilityModel(1, 0, 0), 3000, 7, ForkJoinPool.commonPool());
+
+    assertThat(production).hasSize(3000).containsOnly((double) planned);
+  }
+
+  @Test
+  void lowerAvailabilityDispatchesTheNextCheapestTurbines() {
+    FleetIndex fleet = FleetIndex.of(1, List.of(new FleetEntry("A", 4, 1), new FleetEntry("B", 4, 2), new FleetEntry("C", 4, 30)));
+
+    // At full capacity only A fits the target, at half capacity A and B do, and C is never profitable
+    double[] production = ProductionSimulator.simulate(fleet, 10, 4, new AvailabilityModel(0.5, 0, 0), 10, 7, ForkJoinPool.commonPool());
+
+    assertThat(ProductionPlanner.plan(fleet, 10, 4).totalProduction()).isEqualTo(4);
+    assertThat(production).containsOnly(4.0);
+  }
+
+  @Test
+  void resultDependsOnTheSeedButNotOnTheNumberOfThreads() {
+    FleetIndex fleet = randomFleet(2000, new Random(42));
+    AvailabilityModel model = new AvailabilityModel(0.7, 0.25, 0.4);
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool parallel = new ForkJoinPool(4);
+    try {
+      double[] first = ProductionSimulator.simulate(fleet, 12, 3000, model, 10_000, 99, single);
+      double[] second = ProductionSimulator.simulate(fleet, 12, 3000, model, 10_000, 99, parallel);
+      double[] other = ProductionSimulator.simulate(fleet, 12, 3000, model, 10_000, 100, parallel);
+
+      assertThat(second).containsExactly(first);
+      assertThat(other).isNotEqualTo(first);
+      assertThat(Arrays.stream(first).max().orElseThrow()).isLessThanOrEqualTo(3000);
+      assertThat(Arrays.stream(first).average().orElseThrow()).isGreaterThan(0);
+    } finally {
+      single.shutdown();
+      parallel.shutdown();
+    }
+  }
+
+  @Test
+  void rejectsAvailabilityOutsideItsRange() {
+    assertThatThrownBy(() -> new AvailabilityModel(1.2, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AvailabilityModel(0.5, -0.1, 0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AvailabilityModel(0.5, 0.1, Double.NaN)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static FleetIndex randomFleet(int size, Random random) {
+    List<FleetEntry> entries = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      entries.add(new FleetEntry("T" + i, random.nextInt(10), random.nextInt(20)));
+    }
+    return FleetIndex.of(1, entries);
+  }
+}
@@ -0,0 +1,190 @@
+import app.windfarm.ParkApplication;
+import app.windfarm.entities.WindTurbine;
+import app.windfarm.fleet.FleetIndex;
+import app.windfarm.fleet.FleetIndexManager;
+import app.windfarm.service.ParkService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** Integration test of the bulk turbine import, of turbine updates and of parks created by an import, run against its own database. */
+@SpringBootTest(classes = ParkApplication.class, properties = {"spring.datasource.url=jdbc:h2:mem:importtest", "windfarm.journal.enabled=false",
+    "windfarm.audit.enabled=false"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class TurbineImportIntegrationTest {
+
+  private static final String PARK = WindTurbine.DEFAULT_PARK_ID;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private FleetIndexManager fleetIndexManager;
+
+  @Autowired
+  private ParkService parkService;
+
+  @Test
+  void importCsvWritesChunksReportsErrorsAndRefreshesIndexOnce() throws Exception {
+    FleetIndex before = fleetIndexManager.current(PARK);
+    String csv = """
+        identifier,capacity,productionCost
+        F,3,1
+        G,4,2
+        H,not-a-number,2
+        I,1,1
+        A,9,9
+        J,2,4
+        """;
+
+    mockMvc.perform(post("/api/turbines/import").param("chunkSize", "2").contentType("text/csv").content(csv))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.rowsImported").value(3))
+        .andExpect(jsonPath("$.rowsRejected").value(3))
+        .andExpect(jsonPath("$.chunks").value(3))
+        .andExpect(jsonPath("$.errors[0].firstLine").value(4))
+        .andExpect(jsonPath("$.errors[0].message").value("Capacity and production cost must be integers."))
+        .andExpect(jsonPath("$.errors[1].chunk").value(2))
+        .andExpect(jsonPath("$.errors[1].firstLine").value(5))
+        .andExpect(jsonPath("$.errors[1].lastLine").value(6));
+
+    FleetIndex after = fleetIndexManager.current(PARK);
+    assertThat(after.version()).isEqualTo(before.version() + 1);
+    assertThat(after.size()).isEqualTo(8);
+    assertThat(after.totalCapacity()).isEqualTo(before.totalCapacity() + 9);
+  }
+
+  @Test
+  void importNdjsonWritesAllRows() throws Exception {
+    String ndjson = """
+        {"identifier":"F","capacity":3,"productionCost":1}
+        {"identifier":"G","capacity":4,"productionCost":2}
+        """;
+
+    mockMvc.perform(post("/api/turbines/import").contentType("application/x-ndjson").content(ndjson))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.rowsImported").value(2))
+        .andExpect(jsonPath("$.rowsRejected").value(0))
+        .andExpect(jsonPath("$.chunks").value(1));
+
+    assertThat(fleetIndexManager.current(PARK).size()).isEqualTo(7);
+    mockMvc.perform(post("/api/admin/reconcile-capacity"))
+        .andExpect(jsonPath("$.consistent").value(true));
+  }
+
+  @Test
+  void importIntoNewParkCreatesParkWithIndependentState() throws Exception {
+    FleetIndex defaultFleet = fleetIndexManager.current(PARK);
+
+    mockMvc.perform(post("/api/parks/north/set-market-price").param("marketPrice", "6"))
+        .andExpect(status().isNotFound());
+
+    mockMvc.perform(post("/api/parks/north/turbines/import").contentType("text/csv").content("A,4,1\nB,3,2\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.rowsImported").value(2));
+
+    mockMvc.perform(post("/api/parks/north/set-market-price").param("marketPrice", "6"))
+        .andExpect(status().isOk());
+    mockMvc.perform(post("/api/parks/north/update-production-target").param("delta", "5"))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(get("/api/parks/north/production-plan"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].identifier").value("A"))
+        .andExpect(jsonPath("$[0].expectedProduction").value(4))
+        .andExpect(jsonPath("$[1].expectedProduction").value(0));
+
+    assertThat(fleetIndexManager.current(PARK)).isSameAs(defaultFleet);
+    mockMvc.perform(get("/api/production-plan"))
+        .andExpect(jsonPath("$[4].expectedProduction").value(0));
+    mockMvc.perform(post("/api/admin/reconcile-capacity"))
+        .andExpect(jsonPath("$.consistent").value(true))
+        .andExpect(jsonPath("$.databaseCapacity").value(28));
+  }
+
+  @Test
+  void patchUpdatesTurbineInPlaceAndTakesUnavailableTurbinesOutOfThePlan() throws Exception {
+    FleetIndex before = fleetIndexManager.current(PARK);
+
+    mockMvc.perform(patch("/api/turbines/E").contentType("application/json").content("{\"available\":false}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.identifier").value("E"))
+        .andExpect(jsonPath("$.capacity").value(5))
+        .andExpect(jsonPath("$.available").value(false));
+    mockMvc.perform(patch("/api/turbines/D").contentType("application/json").content("{\"productionCost\":20}"))
+        .andExpect(status().isOk());
+
+    FleetIndex after = fleetIndexManager.current(PARK);
+    assertThat(after.version()).isEqualTo(before.version() + 2);
+    assertThat(after.availableCount()).isEqualTo(4);
+    assertThat(after.totalCapacity()).isEqualTo(before.totalCapacity());
+
+    // Only the available capacity of 16 can be dispatched, cheapest first: B and C, then A, never E
+    mockMvc.perform(post("/api/set-market-price").param("marketPrice", "30"))
+        .andExpect(status().isOk());
+    mockMvc.perform(post("/api/update-production-target").param("delta", "17"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(post("/api/update-production-target").param("delta", "10"))
+        .andExpect(status().isOk());
+    mockMvc.perform(get("/api/production-plan"))
+        .andExpect(jsonPath("$[0].expectedProduction").value(2))
+        .andExpect(jsonPath("$[1].expectedProduction").value(2))
+        .andExpect(jsonPath("$[2].expectedProduction").value(6))
+        .andExpect(jsonPath("$[3].expectedProduction").value(0))
+        .andExpect(jsonPath("$[4].expectedProduction").value(0));
+
+    mockMvc.perform(post("/api/admin/reconcile-capacity"))
+        .andExpect(jsonPath("$.consistent").value(true));
+  }
+
+  @Test
+  void targetAboveCapacityLeftByPatchCanBeLoweredStepByStep() throws Exception {
+    // All 21MWh, then E goes offline and only 16MWh remain
+    mockMvc.perform(post("/api/update-production-target").param("delta", "21"))
+        .andExpect(status().isOk());
+    mockMvc.perform(patch("/api/turbines/E").contentType("application/json").content("{\"available\":false}"))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(post("/api/update-production-target").param("delta", "1"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(post("/api/update-production-target").param("delta", "-1"))
+        .andExpect(status().isOk());
+    assertThat(parkService.getProductionTarget(PARK)).isEqualTo(20);
+    mockMvc.perform(post("/api/update-production-target").param("delta", "-21"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(post("/api/update-production-target").param("delta", "-4"))
+        .andExpect(status().isOk());
+    assertThat(parkService.getProductionTarget(PARK)).isEqualTo(16);
+    mockMvc.perform(post("/api/update-production-target").param("delta", "1"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void patchRejectsUnknownTurbinesAndInvalidValues() throws Exception {
+    mockMvc.perform(patch("/api/turbines/Z").contentType("application/json").content("{\"capacity\":1}"))
+        .andExpect(status().isNotFound());
+    mockMvc.perform(patch("/api/parks/north/turbines/A").contentType("application/json").content("{\"capacity\":1}"))
+        .andExpect(status().isNotFound());
+    mockMvc.perform(patch("/api/turbines/A").contentType("application/json").content("{\"capacity\":-1}"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(patch("/api/turbines/A").contentType("application/json").content("{}"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void importWithInvalidChunkSizeReturnsBadRequest() throws Exception {
+    mockMvc.perform(post("/api/turbines/import").param("chunkSize", "0").contentType("text/csv").content("F,1,1"))
+        .andExpect(status().isBadRequest());
+  }
+}